@@ -0,0 +1 @@
+alert("hello world");
\ No newline at end of file
@@ -0,0 +1,4 @@
+package de.neuland.pug4j.benchmark.jmh_generated;
+public class ExpressionHandlerBenchmark_jmhType extends ExpressionHandlerBenchmark_jmhType_B3 {
+}
+
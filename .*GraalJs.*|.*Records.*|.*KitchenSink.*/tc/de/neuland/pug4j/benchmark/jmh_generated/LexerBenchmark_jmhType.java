@@ -0,0 +1,4 @@
+package de.neuland.pug4j.benchmark.jmh_generated;
+public class LexerBenchmark_jmhType extends LexerBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package de.neuland.pug4j.benchmark.jmh_generated;
+public class ParserBenchmark_jmhType extends ParserBenchmark_jmhType_B3 {
+}
+
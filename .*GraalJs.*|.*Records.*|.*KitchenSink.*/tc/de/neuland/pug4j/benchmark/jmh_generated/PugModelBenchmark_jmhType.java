@@ -0,0 +1,4 @@
+package de.neuland.pug4j.benchmark.jmh_generated;
+public class PugModelBenchmark_jmhType extends PugModelBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package de.neuland.pug4j.benchmark.jmh_generated;
+public class TemplateBenchmark_jmhType extends TemplateBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package de.neuland.pug4j.compiler.jmh_generated;
+public class AttributesCompilerBenchmark_jmhType extends AttributesCompilerBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package de.neuland.pug4j.compiler.jmh_generated;
+public class HtmlEscapingBenchmark_jmhType extends HtmlEscapingBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,7 @@
+var STRING_SUBSTITUTIONS = {    // table of character substitutions
+  '\t': '\\t',
+  '\r': '\\r',
+  '\n': '\\n',
+  '"' : '\\"',
+  '\\': '\\\\'
+};
\ No newline at end of file
@@ -0,0 +1 @@
+var x = '\n here is some \n new lined text';
@@ -110,15 +110,22 @@ public class PugConfiguration {
     if (caching) {
 
       long lastModified = templateLoader.getLastModified(name);
-      return cache.get(
-          getKeyValue(name, lastModified),
-          value -> {
-            try {
-              return createTemplate(name);
-            } catch (IOException e) {
-              throw new UncheckedIOException(e);
-            }
-          });
+      String key = getKeyValue(name, lastModified);
+      PugTemplate template =
+          cache.get(
+              key,
+              value -> {
+                try {
+                  return createTemplate(name);
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              });
+      if (template.hasModifiedDependencies(templateLoader)) {
+        template = createTemplate(name);
+        cache.put(key, template);
+      }
+      return template;
     }
 
     return createTemplate(name);
@@ -155,6 +162,7 @@ public class PugConfiguration {
     Parser parser = new Parser(name, templateLoader, expressionHandler);
     Node root = parser.parse();
     PugTemplate template = new PugTemplate(root, getMode());
+    template.setDependencies(parser.getDependencies());
     return template;
   }
 
@@ -2,7 +2,14 @@ package de.neuland.pug4j;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import de.neuland.pug4j.compiler.CompilationMode;
 import de.neuland.pug4j.compiler.Compiler;
+import de.neuland.pug4j.compiler.CountingCompiler;
+import de.neuland.pug4j.compiler.CountingWriter;
+import de.neuland.pug4j.compiler.ProfilingCompiler;
+import de.neuland.pug4j.compiler.RenderProfile;
+import de.neuland.pug4j.compiler.Utf8Writer;
 import de.neuland.pug4j.exceptions.PugCompilerException;
 import de.neuland.pug4j.exceptions.PugException;
 import de.neuland.pug4j.expression.ExpressionHandler;
@@ -12,19 +19,25 @@ import de.neuland.pug4j.filter.CssFilter;
 import de.neuland.pug4j.filter.Filter;
 import de.neuland.pug4j.filter.JsFilter;
 import de.neuland.pug4j.model.PugModel;
+import de.neuland.pug4j.parser.ExpressionPrecompiler;
 import de.neuland.pug4j.parser.Parser;
 import de.neuland.pug4j.parser.node.Node;
 import de.neuland.pug4j.template.FileTemplateLoader;
+import de.neuland.pug4j.template.ModificationCheck;
 import de.neuland.pug4j.template.PugTemplate;
 import de.neuland.pug4j.template.TemplateLoader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 public class PugEngine {
 
@@ -36,15 +49,47 @@ public class PugEngine {
   private final TemplateLoader templateLoader;
   private final ExpressionHandler expressionHandler;
   private final boolean caching;
+  private final CompilationMode compilationMode;
   private final Map<String, Filter> filters;
   private final Cache<String, PugTemplate> cache;
+  private final long templateUpdateDelayNanos;
+  private final Map<String, TemplateCheck> templateChecks = new ConcurrentHashMap<>();
+  private final PugEngineListener listener;
+  // the template loader if it watches for changes, otherwise null
+  private final FileTemplateLoader watchingLoader;
 
   private PugEngine(Builder builder) {
     this.templateLoader = builder.templateLoader;
     this.expressionHandler = builder.expressionHandler;
     this.caching = builder.caching;
+    this.compilationMode = builder.compilationMode;
     this.filters = Collections.unmodifiableMap(new HashMap<>(builder.filters));
-    this.cache = Caffeine.newBuilder().maximumSize(builder.maxCacheSize).build();
+    this.listener = builder.listener;
+    Caffeine<Object, Object> cacheBuilder = Caffeine.newBuilder().maximumSize(builder.maxCacheSize);
+    if (listener == PugEngineListener.NONE) {
+      this.cache = cacheBuilder.build();
+    } else {
+      this.cache =
+          cacheBuilder
+              .recordStats()
+              // report evictions on the thread that loaded the template
+              .executor(Runnable::run)
+              .<String, PugTemplate>evictionListener(
+                  (key, template, cause) -> {
+                    if (template != null) {
+                      listener.templateEvicted(template.getName());
+                    }
+                  })
+              .build();
+    }
+    this.templateUpdateDelayNanos = toNanos(builder.templateUpdateDelay);
+    if (templateLoader instanceof FileTemplateLoader
+        && ((FileTemplateLoader) templateLoader).getModificationCheck()
+            == ModificationCheck.WATCH) {
+      this.watchingLoader = (FileTemplateLoader) templateLoader;
+    } else {
+      this.watchingLoader = null;
+    }
   }
 
   /**
@@ -80,7 +125,7 @@ public class PugEngine {
 
   /**
    * Loads and parses a template by name. If caching is enabled, returns a cached template if
-   * available and the template file has not been modified.
+   * available and neither the template file nor any file it includes or extends has been modified.
    *
    * @param name the template name/path
    * @return the parsed template
@@ -89,23 +134,53 @@ public class PugEngine {
    */
   public PugTemplate getTemplate(String name) throws IOException, PugException {
     if (caching) {
+      long now = templateUpdateDelayNanos > 0 ? System.nanoTime() : 0;
+      // read before the template is checked, so a change during the check is seen next time
+      long generation = watchingLoader != null ? watchingLoader.getGeneration() : 0;
+      boolean checksRecorded = templateUpdateDelayNanos > 0 || watchingLoader != null;
+      if (checksRecorded) {
+        TemplateCheck check = templateChecks.get(name);
+        if (check != null && isUpToDate(check, now, generation)) {
+          PugTemplate template = cache.getIfPresent(check.cacheKey);
+          if (template != null) {
+            listener.templateCacheHit(name);
+            return template;
+          }
+        }
+      }
+
       long lastModified = templateLoader.getLastModified(name);
       String cacheKey = getCacheKey(name, lastModified);
 
-      return cache.get(
-          cacheKey,
-          key -> {
-            try {
-              return createTemplate(name);
-            } catch (IOException e) {
-              throw new UncheckedIOException(e);
-            }
-          });
+      TemplateLoad load = new TemplateLoad(name);
+      PugTemplate template = cache.get(cacheKey, load);
+      // a template that was just parsed read its dependencies itself
+      if (!load.loaded) {
+        if (template.hasModifiedDependencies(templateLoader)) {
+          template = createMissingTemplate(name);
+          cache.put(cacheKey, template);
+        } else {
+          listener.templateCacheHit(name);
+        }
+      }
+      if (checksRecorded) {
+        templateChecks.put(name, new TemplateCheck(cacheKey, now, generation));
+      }
+      return template;
     }
 
     return createTemplate(name);
   }
 
+  /**
+   * Returns whether a cached template can be used without checking its files, because no template
+   * file changed since the last check or the template update delay has not passed yet.
+   */
+  private boolean isUpToDate(TemplateCheck check, long now, long generation) {
+    return (watchingLoader != null && check.generation == generation)
+        || (templateUpdateDelayNanos > 0 && now - check.checkedAt < templateUpdateDelayNanos);
+  }
+
   /**
    * Checks whether a template with the given name exists and can be loaded.
    *
@@ -127,6 +202,28 @@ public class PugEngine {
   public void clearCache() {
     expressionHandler.clearCache();
     cache.invalidateAll();
+    templateChecks.clear();
+  }
+
+  /**
+   * Returns the statistics of the template cache. They are only recorded if a {@link
+   * PugEngineListener} is registered, otherwise all counts are zero.
+   *
+   * @return the cache statistics
+   * @since 3.1.0
+   */
+  public CacheStats getCacheStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Returns the listener that receives the metrics of this engine.
+   *
+   * @return the listener, {@link PugEngineListener#NONE} if none is registered
+   * @since 3.1.0
+   */
+  public PugEngineListener getListener() {
+    return listener;
   }
 
   /**
@@ -156,6 +253,26 @@ public class PugEngine {
     return caching;
   }
 
+  /**
+   * Returns how long a cached template is used without checking whether its files were modified.
+   *
+   * @return the template update delay
+   * @since 3.1.0
+   */
+  public Duration getTemplateUpdateDelay() {
+    return Duration.ofNanos(templateUpdateDelayNanos);
+  }
+
+  /**
+   * Returns how templates are executed when they are rendered.
+   *
+   * @return the compilation mode
+   * @since 3.1.0
+   */
+  public CompilationMode getCompilationMode() {
+    return compilationMode;
+  }
+
   /**
    * Returns an unmodifiable map of all registered filters.
    *
@@ -211,20 +328,77 @@ public class PugEngine {
       throw new IllegalArgumentException("writer cannot be null");
     }
 
-    // Create PugModel with global variables from context
-    PugModel pugModel = new PugModel(context.getGlobalVariables());
-
-    // Add all filters from the engine
-    for (Map.Entry<String, Filter> entry : filters.entrySet()) {
-      pugModel.addFilter(entry.getKey(), entry.getValue());
+    // Layer filters, global variables and user model data by reference; the model copies a
+    // variable only when the template assigns to it
+    PugModel pugModel = new PugModel(null);
+    pugModel.addFilters(filters);
+    pugModel.addLayer(context.getGlobalVariables());
+    pugModel.addLayer(model);
+
+    // Compile and render, measuring every node if the render is profiled and counting expressions
+    // and output only for a listener or a flight recording
+    RenderProfile profile = context.getProfile();
+    TemplateRenderEvent event = new TemplateRenderEvent();
+    if (listener == PugEngineListener.NONE && !event.isEnabled()) {
+      Compiler compiler =
+          profile == null
+              ? new Compiler(template, context, this)
+              : new ProfilingCompiler(template, context, this, profile);
+      compiler.compile(pugModel, writer);
+      return;
     }
 
-    // Add user model data
-    pugModel.putAll(model);
+    event.begin();
+    long start = System.nanoTime();
+    CountingCompiler compiler =
+        profile == null
+            ? new CountingCompiler(template, context, this)
+            : new ProfilingCompiler(template, context, this, profile);
+    CountingWriter output = new CountingWriter(writer);
+    compiler.compile(pugModel, output);
+    listener.templateRendered(
+        template.getName(),
+        System.nanoTime() - start,
+        output.getCount(),
+        compiler.getExpressionCount());
+    if (event.shouldCommit()) {
+      event.template = template.getName();
+      event.charsWritten = output.getCount();
+      event.commit();
+    }
+  }
 
-    // Compile and render
-    Compiler compiler = new Compiler(template, context, this);
-    compiler.compile(pugModel, writer);
+  /**
+   * Renders a template with the given model and render context, writing UTF-8 encoded output to an
+   * OutputStream. Static markup of compiled templates and of static tags is written as bytes that
+   * are encoded once per template, and runs of ASCII characters in evaluated values are copied
+   * without a charset encoder. The output is buffered and flushed to the stream at the end; the
+   * stream is not closed.
+   *
+   * @param template the template to render
+   * @param model the model data
+   * @param context the render context with settings like prettyPrint and defaultMode
+   * @param outputStream the stream to write the rendered HTML to
+   * @throws PugCompilerException if rendering fails
+   * @throws UncheckedIOException if the output cannot be written
+   * @since 3.1.0
+   */
+  public void render(
+      PugTemplate template,
+      Map<String, Object> model,
+      RenderContext context,
+      OutputStream outputStream)
+      throws PugCompilerException {
+    if (outputStream == null) {
+      throw new IllegalArgumentException("outputStream cannot be null");
+    }
+    Utf8Writer writer = new Utf8Writer(outputStream);
+    render(template, model, context, writer);
+    try {
+      writer.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
   /**
@@ -258,23 +432,95 @@ public class PugEngine {
     return render(template, model, RenderContext.defaults());
   }
 
+  // Parses a template that is not in the cache or was modified.
+  private PugTemplate createMissingTemplate(String name) throws PugException, IOException {
+    listener.templateCacheMiss(name);
+    TemplateCacheMissEvent event = new TemplateCacheMissEvent();
+    event.begin();
+    PugTemplate template = createTemplate(name);
+    if (event.shouldCommit()) {
+      event.template = name;
+      event.commit();
+    }
+    return template;
+  }
+
   private PugTemplate createTemplate(String name) throws PugException, IOException {
+    TemplateParseEvent event = new TemplateParseEvent();
+    event.begin();
+    long start = System.nanoTime();
     Parser parser = new Parser(name, templateLoader, expressionHandler);
+    long loaded = System.nanoTime();
     Node root = parser.parse();
-    return new PugTemplate(root);
+    long parsed = System.nanoTime();
+    ExpressionPrecompiler.precompile(root, expressionHandler, parser.getCompiledExpressions());
+    PugTemplate template = new PugTemplate(root);
+    template.setName(name);
+    template.setDependencies(parser.getDependencies());
+    listener.templateParsed(name, loaded - start, parsed - loaded, System.nanoTime() - parsed);
+    if (event.shouldCommit()) {
+      event.template = name;
+      event.nodeCount = TemplateParseEvent.countNodes(root);
+      event.includeCount = template.getDependencies().size();
+      event.commit();
+    }
+    return template;
   }
 
   private String getCacheKey(String name, long lastModified) {
     return name + "-" + lastModified;
   }
 
+  private static long toNanos(Duration duration) {
+    // durations beyond about 292 years, like ChronoUnit.FOREVER, mean never check again
+    return duration.compareTo(Duration.ofNanos(Long.MAX_VALUE)) >= 0
+        ? Long.MAX_VALUE
+        : duration.toNanos();
+  }
+
+  /** When the files of a template were last checked for modifications, and its cache key. */
+  private static final class TemplateCheck {
+    private final String cacheKey;
+    private final long checkedAt;
+    private final long generation;
+
+    private TemplateCheck(String cacheKey, long checkedAt, long generation) {
+      this.cacheKey = cacheKey;
+      this.checkedAt = checkedAt;
+      this.generation = generation;
+    }
+  }
+
+  /** Parses a template that is not in the cache, and remembers whether it was called. */
+  private final class TemplateLoad implements Function<String, PugTemplate> {
+    private final String name;
+    private boolean loaded;
+
+    private TemplateLoad(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public PugTemplate apply(String cacheKey) {
+      loaded = true;
+      try {
+        return createMissingTemplate(name);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
   /** Builder for creating PugEngine instances. */
   public static class Builder {
     private TemplateLoader templateLoader = new FileTemplateLoader();
     private ExpressionHandler expressionHandler = new JexlExpressionHandler();
     private boolean caching = true;
     private long maxCacheSize = DEFAULT_MAX_CACHE_ENTRIES;
+    private CompilationMode compilationMode = CompilationMode.NONE;
+    private Duration templateUpdateDelay = Duration.ZERO;
     private Map<String, Filter> filters = new HashMap<>();
+    private PugEngineListener listener = PugEngineListener.NONE;
 
     private Builder() {
       // Add default filters
@@ -343,6 +589,48 @@ public class PugEngine {
       return this;
     }
 
+    /**
+     * Sets how long a cached template is used without asking the template loader whether the
+     * template or one of the files it includes or extends was modified. The default, {@link
+     * Duration#ZERO}, checks on every {@link PugEngine#getTemplate(String)} call. A duration of
+     * {@code ChronoUnit.FOREVER.getDuration()} checks only when a template is loaded the first
+     * time. Only applies when caching is enabled.
+     *
+     * @param templateUpdateDelay the time between modification checks of a template
+     * @return this builder for method chaining
+     * @throws IllegalArgumentException if templateUpdateDelay is negative
+     * @since 3.1.0
+     */
+    public Builder templateUpdateDelay(Duration templateUpdateDelay) {
+      if (templateUpdateDelay == null) {
+        throw new IllegalArgumentException("templateUpdateDelay cannot be null");
+      }
+      if (templateUpdateDelay.isNegative()) {
+        throw new IllegalArgumentException("templateUpdateDelay cannot be negative");
+      }
+      this.templateUpdateDelay = templateUpdateDelay;
+      return this;
+    }
+
+    /**
+     * Sets how templates are executed when they are rendered. The default, {@link
+     * CompilationMode#NONE}, walks the parsed node tree on every render. {@link
+     * CompilationMode#RENDER_PLAN} flattens each template once per output variant into a list of
+     * render instructions and {@link CompilationMode#BYTECODE} additionally compiles that list into
+     * a generated class, which pays off for templates that are cached and rendered many times.
+     *
+     * @param compilationMode the compilation mode
+     * @return this builder for method chaining
+     * @since 3.1.0
+     */
+    public Builder compilationMode(CompilationMode compilationMode) {
+      if (compilationMode == null) {
+        throw new IllegalArgumentException("compilationMode cannot be null");
+      }
+      this.compilationMode = compilationMode;
+      return this;
+    }
+
     /**
      * Registers a filter with the specified name.
      *
@@ -375,6 +663,23 @@ public class PugEngine {
       return this;
     }
 
+    /**
+     * Registers a listener for the metrics of the engine: template loads, parse times, cache hits,
+     * misses and evictions, and render times, output sizes and expression counts. Without a
+     * listener, the engine does not measure anything.
+     *
+     * @param listener the listener
+     * @return this builder for method chaining
+     * @since 3.1.0
+     */
+    public Builder listener(PugEngineListener listener) {
+      if (listener == null) {
+        throw new IllegalArgumentException("listener cannot be null");
+      }
+      this.listener = listener;
+      return this;
+    }
+
     /**
      * Builds a new PugEngine instance with the configured settings.
      *
@@ -0,0 +1,65 @@
+package de.neuland.pug4j;
+
+/**
+ * Receives metrics of a {@link PugEngine}: how templates are loaded, parsed and cached, and how
+ * long they take to render. Register a listener with {@link
+ * PugEngine.Builder#listener(PugEngineListener)}.
+ *
+ * <p>All methods do nothing by default, so implementations only override the events they are
+ * interested in. Methods are called on the thread that loads or renders the template and should
+ * return quickly. Without a registered listener the engine neither measures nor counts anything.
+ *
+ * @since 3.1.0
+ */
+public interface PugEngineListener {
+
+  /** The listener of engines without a registered listener, which ignores all events. */
+  PugEngineListener NONE = new PugEngineListener() {};
+
+  /**
+   * Called when {@link PugEngine#getTemplate(String)} returns a cached template.
+   *
+   * @param name the template name
+   */
+  default void templateCacheHit(String name) {}
+
+  /**
+   * Called when {@link PugEngine#getTemplate(String)} does not find an up-to-date template in the
+   * cache and parses it.
+   *
+   * @param name the template name
+   */
+  default void templateCacheMiss(String name) {}
+
+  /**
+   * Called when a template is evicted from the cache because the cache is full.
+   *
+   * @param name the template name
+   */
+  default void templateEvicted(String name) {}
+
+  /**
+   * Called after a template was parsed, whether it is cached or not.
+   *
+   * @param name the template name
+   * @param loadNanos the time taken to read the template source
+   * @param parseNanos the time taken to parse the template, including the files it includes or
+   *     extends
+   * @param compileNanos the time taken to compile the expressions and static markup of the template
+   */
+  default void templateParsed(String name, long loadNanos, long parseNanos, long compileNanos) {}
+
+  /**
+   * Called after a template was rendered successfully.
+   *
+   * @param name the template name, or null if the template was not loaded by the engine
+   * @param renderNanos the time taken to render the template
+   * @param outputChars the number of characters written
+   * @param expressionEvaluations the number of output, code, condition and loop expressions
+   *     evaluated. Attribute values, {@code &attributes} blocks, mixin arguments and dynamic mixin
+   *     names are evaluated as well but not counted, so templates with many dynamic attributes
+   *     evaluate more expressions than reported.
+   */
+  default void templateRendered(
+      String name, long renderNanos, long outputChars, long expressionEvaluations) {}
+}
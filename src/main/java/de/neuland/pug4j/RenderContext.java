@@ -1,6 +1,7 @@
 package de.neuland.pug4j;
 
 import de.neuland.pug4j.Pug4J.Mode;
+import de.neuland.pug4j.compiler.RenderProfile;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -16,11 +17,13 @@ public class RenderContext {
   private final boolean prettyPrint;
   private final Mode defaultMode;
   private final Map<String, Object> globalVariables;
+  private final RenderProfile profile;
 
   private RenderContext(Builder builder) {
     this.prettyPrint = builder.prettyPrint;
     this.defaultMode = builder.defaultMode;
     this.globalVariables = Collections.unmodifiableMap(new HashMap<>(builder.globalVariables));
+    this.profile = builder.profile;
   }
 
   /**
@@ -73,11 +76,22 @@ public class RenderContext {
     return globalVariables;
   }
 
+  /**
+   * Returns the profile that renders with this context add their measurements to.
+   *
+   * @return the profile, or null if renders are not profiled
+   * @since 3.1.0
+   */
+  public RenderProfile getProfile() {
+    return profile;
+  }
+
   /** Builder for creating RenderContext instances. */
   public static class Builder {
     private boolean prettyPrint = false;
     private Mode defaultMode = Mode.XHTML;
     private Map<String, Object> globalVariables = new HashMap<>();
+    private RenderProfile profile;
 
     /**
      * Sets whether to format HTML output with indentation and newlines.
@@ -133,6 +147,23 @@ public class RenderContext {
       return this;
     }
 
+    /**
+     * Profiles renders with this context: the time, invocations and allocations of every node and
+     * expression are added to the given profile. Renders are not profiled by default, and cost
+     * nothing extra then.
+     *
+     * @param profile the profile to add measurements to
+     * @return this builder for method chaining
+     * @since 3.1.0
+     */
+    public Builder profile(RenderProfile profile) {
+      if (profile == null) {
+        throw new IllegalArgumentException("profile cannot be null");
+      }
+      this.profile = profile;
+      return this;
+    }
+
     /**
      * Builds a new RenderContext instance.
      *
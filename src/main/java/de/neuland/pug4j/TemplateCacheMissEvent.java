@@ -0,0 +1,17 @@
+package de.neuland.pug4j;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** JFR event for a template that {@link PugEngine} did not find in its cache and parsed. */
+@Name("pug4j.CacheMiss")
+@Label("Template Cache Miss")
+@Category("Pug4J")
+@Description("A template was not cached or was modified, and was parsed again")
+final class TemplateCacheMissEvent extends jdk.jfr.Event {
+
+  @Label("Template")
+  String template;
+}
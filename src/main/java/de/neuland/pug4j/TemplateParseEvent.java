@@ -0,0 +1,46 @@
+package de.neuland.pug4j;
+
+import de.neuland.pug4j.parser.node.ConditionalNode;
+import de.neuland.pug4j.parser.node.EachNode;
+import de.neuland.pug4j.parser.node.IfConditionNode;
+import de.neuland.pug4j.parser.node.Node;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** JFR event for a template parsed by {@link PugEngine}, whether it is cached or not. */
+@Name("pug4j.TemplateParse")
+@Label("Template Parse")
+@Category("Pug4J")
+@Description("A template was read, parsed and its expressions compiled")
+final class TemplateParseEvent extends jdk.jfr.Event {
+
+  @Label("Template")
+  String template;
+
+  @Label("Node Count")
+  int nodeCount;
+
+  @Label("Include Count")
+  @Description("Files the template includes or extends")
+  int includeCount;
+
+  static int countNodes(Node node) {
+    if (node == null) {
+      return 0;
+    }
+    int count = 1;
+    if (node instanceof EachNode) {
+      count += countNodes(((EachNode) node).getElseNode());
+    } else if (node instanceof ConditionalNode) {
+      for (IfConditionNode condition : ((ConditionalNode) node).getConditions()) {
+        count += countNodes(condition);
+      }
+    }
+    for (Node child : node.getNodes()) {
+      count += countNodes(child);
+    }
+    return count + countNodes(node.getBlock());
+  }
+}
@@ -0,0 +1,20 @@
+package de.neuland.pug4j;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** JFR event for a template rendered by {@link PugEngine}. */
+@Name("pug4j.TemplateRender")
+@Label("Template Render")
+@Category("Pug4J")
+@Description("A template was rendered")
+final class TemplateRenderEvent extends jdk.jfr.Event {
+
+  @Label("Template")
+  String template;
+
+  @Label("Characters Written")
+  long charsWritten;
+}
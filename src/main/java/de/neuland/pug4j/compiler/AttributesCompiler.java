@@ -4,6 +4,7 @@ import com.google.gson.Gson;
 import de.neuland.pug4j.exceptions.ExpressionException;
 import de.neuland.pug4j.exceptions.PugCompilerException;
 import de.neuland.pug4j.exceptions.TemplateSource;
+import de.neuland.pug4j.expression.CompiledExpression;
 import de.neuland.pug4j.expression.ExpressionHandler;
 import de.neuland.pug4j.model.PugModel;
 import de.neuland.pug4j.parser.node.Attr;
@@ -19,6 +20,8 @@ public class AttributesCompiler {
 
   private final de.neuland.pug4j.PugEngine engine;
   private static final Gson gson = new Gson();
+  // Constant attributes never reach the expression handler, so they can be rendered without one.
+  private static final AttributesCompiler STATIC_ATTRIBUTES = new AttributesCompiler(null);
 
   public AttributesCompiler(final de.neuland.pug4j.PugEngine engine) {
     this.engine = engine;
@@ -38,8 +41,64 @@ public class AttributesCompiler {
   }
 
   protected String visitAttributes(PugModel model, final AttrsNode node, boolean terse) {
-    Map<String, String> attrs = getAttributesMap(model, node, terse);
-    return attrsToString(attrs);
+    StaticAttributes staticAttributes = node.getStaticAttributes();
+    if (staticAttributes == null) {
+      // Racing renders compute the same result, so there is no need to synchronize.
+      staticAttributes = precompute(node);
+      node.setStaticAttributes(staticAttributes);
+    }
+    if (staticAttributes == StaticAttributes.NONE) {
+      Map<String, String> attrs = getAttributesMap(model, node, terse);
+      return attrsToString(attrs);
+    }
+    String prefix = staticAttributes.prefix(terse);
+    if (staticAttributes.dynamicAttributes.isEmpty()) {
+      return prefix;
+    }
+    return prefix + attrsToString(attrs(model, node, staticAttributes.dynamicAttributes, terse));
+  }
+
+  /**
+   * Renders the constant attributes at the start of a node's attribute list for both terse modes.
+   * The remaining attributes can be rendered separately and appended as long as none of them is a
+   * class, because classes of all attributes are merged into the first attribute. Attribute blocks
+   * may override any attribute, so nodes with attribute blocks are always rendered in full.
+   */
+  private static StaticAttributes precompute(final AttrsNode node) {
+    if (!node.getAttributeBlocks().isEmpty()) {
+      return StaticAttributes.NONE;
+    }
+    LinkedList<Attr> staticAttributes = new LinkedList<>();
+    LinkedList<Attr> dynamicAttributes = new LinkedList<>();
+    for (Attr attribute : node.getAttributes()) {
+      if (dynamicAttributes.isEmpty() && !(attribute.getValue() instanceof ExpressionString)) {
+        staticAttributes.add(attribute);
+      } else if ("class".equals(attribute.getName())) {
+        return StaticAttributes.NONE;
+      } else {
+        dynamicAttributes.add(attribute);
+      }
+    }
+    if (staticAttributes.isEmpty() && !dynamicAttributes.isEmpty()) {
+      return StaticAttributes.NONE;
+    }
+    return new StaticAttributes(
+        renderConstants(node, staticAttributes, false),
+        renderConstants(node, staticAttributes, true),
+        dynamicAttributes);
+  }
+
+  private static String renderConstants(
+      AttrsNode node, LinkedList<Attr> attributes, boolean terse) {
+    return STATIC_ATTRIBUTES.attrsToString(STATIC_ATTRIBUTES.attrs(null, node, attributes, terse));
+  }
+
+  /**
+   * Renders the attributes of a node without attribute blocks whose values are all constants, for
+   * templates that are compiled ahead of rendering.
+   */
+  static String staticAttributes(final AttrsNode node, boolean terse) {
+    return STATIC_ATTRIBUTES.visitAttributes(null, node, terse);
   }
 
   public Map<String, String> getAttributesMap(
@@ -277,6 +336,10 @@ public class AttributesCompiler {
       ExpressionString attribute, PugModel model, final AttrsNode node) {
     String expression = attribute.getValue();
     try {
+      CompiledExpression compiledExpression = attribute.getCompiledExpression();
+      if (compiledExpression != null) {
+        return compiledExpression.evaluate(model);
+      }
       return getExpressionHandler().evaluateExpression(expression, model);
     } catch (ExpressionException e) {
       throw new PugCompilerException(node, templateLines(node), e);
@@ -0,0 +1,507 @@
+package de.neuland.pug4j.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns a {@link RenderPlan} into a {@link RenderProgram} defined as a hidden class. Jumps become
+ * branches and all other instructions become direct calls on the {@link RenderFrame}. Text is
+ * written by index from the constants of the plan, which also hold its UTF-8 encoding.
+ *
+ * <p>Large conditional and loop bodies are moved into methods of their own and long instruction
+ * sequences are split into several methods, so that every method stays below the size limit of the
+ * JIT compiler. The class file uses version 49: the operand stack is empty at every branch target,
+ * so the type inferring verifier needs no stack map frames.
+ */
+final class BytecodeGenerator {
+
+  private static final String CLASS_NAME = "de/neuland/pug4j/compiler/CompiledRenderProgram";
+  private static final String PROGRAM = "de/neuland/pug4j/compiler/RenderProgram";
+  private static final String FRAME = "de/neuland/pug4j/compiler/RenderFrame";
+  private static final String RENDER_DESCRIPTOR = "(L" + FRAME + ";)V";
+  // HotSpot does not JIT compile methods with more than 8000 bytes of bytecode.
+  private static final int MAX_METHOD_LENGTH = 6000;
+  // Branch offsets are signed 16 bit values.
+  private static final int MAX_BRANCHING_METHOD_LENGTH = 32000;
+  private static final int MAX_INLINE_BODY_LENGTH = 1000;
+
+  private static final int JAVA_5 = 49;
+  private static final int ACC_PUBLIC = 0x0001;
+  private static final int ACC_PRIVATE = 0x0002;
+  private static final int ACC_STATIC = 0x0008;
+  private static final int ACC_FINAL = 0x0010;
+  private static final int ACC_SUPER = 0x0020;
+
+  private static final int ICONST_0 = 0x03;
+  private static final int BIPUSH = 0x10;
+  private static final int SIPUSH = 0x11;
+  private static final int LDC_W = 0x13;
+  private static final int ALOAD_0 = 0x2a;
+  private static final int ALOAD_1 = 0x2b;
+  private static final int IFEQ = 0x99;
+  private static final int IFNE = 0x9a;
+  private static final int GOTO = 0xa7;
+  private static final int RETURN = 0xb1;
+  private static final int INVOKEVIRTUAL = 0xb6;
+  private static final int INVOKESPECIAL = 0xb7;
+  private static final int INVOKESTATIC = 0xb8;
+
+  private final RenderPlan plan;
+  private final int[] code;
+  // estimated bytecode length of all instructions before a code index
+  private final int[] lengthBefore;
+  // end of the largest body starting at a code index, 0 if none starts there
+  private final int[] bodyEnds;
+  private final ConstantPool pool = new ConstantPool();
+  private final List<Method> methods = new ArrayList<>();
+
+  private BytecodeGenerator(RenderPlan plan) {
+    this.plan = plan;
+    this.code = plan.code;
+    this.lengthBefore = new int[code.length + 1];
+    for (int pc = 0; pc < code.length; pc = next(pc)) {
+      int length = estimateLength(pc);
+      for (int i = pc; i < next(pc); i++) {
+        lengthBefore[i + 1] = lengthBefore[pc] + length;
+      }
+    }
+    this.bodyEnds = new int[code.length + 1];
+    for (int i = 0; i < plan.bodies.length; i += 2) {
+      int start = plan.bodies[i];
+      bodyEnds[start] = Math.max(bodyEnds[start], plan.bodies[i + 1]);
+    }
+  }
+
+  static RenderProgram generate(RenderPlan plan) {
+    byte[] classFile = new BytecodeGenerator(plan).toClassFile();
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+      return (RenderProgram)
+          lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+    } catch (Throwable e) {
+      throw new IllegalStateException("Failed to define compiled template", e);
+    }
+  }
+
+  private byte[] toClassFile() {
+    Code render = new Code();
+    if (code.length > 0) {
+      render.op(ALOAD_1);
+      render.op(INVOKESTATIC, methodRef(method(0, code.length, MAX_INLINE_BODY_LENGTH)));
+    }
+    render.op(RETURN);
+    methods.add(new Method(ACC_PUBLIC, "render", RENDER_DESCRIPTOR, render, 1, 2));
+
+    Code constructor = new Code();
+    constructor.op(ALOAD_0);
+    constructor.op(INVOKESPECIAL, pool.methodRef("java/lang/Object", "<init>", "()V"));
+    constructor.op(RETURN);
+    methods.add(new Method(ACC_PUBLIC, "<init>", "()V", constructor, 1, 1));
+
+    return write();
+  }
+
+  /**
+   * Generates the methods for the instructions from {@code start} to {@code end} and returns the
+   * name of the method to call. Bodies longer than {@code maxInlineBodyLength} are generated as
+   * methods of their own.
+   */
+  private String method(int start, int end, int maxInlineBodyLength) {
+    List<int[]> items = new ArrayList<>();
+    for (int pc = start; pc < end; ) {
+      int bodyEnd = bodyEnds[pc];
+      if (bodyEnd > 0
+          && !(pc == start && bodyEnd == end)
+          && lengthBefore[bodyEnd] - lengthBefore[pc] > maxInlineBodyLength) {
+        items.add(new int[] {pc, bodyEnd, 4});
+        pc = bodyEnd;
+      } else {
+        items.add(new int[] {pc, next(pc), lengthBefore[next(pc)] - lengthBefore[pc]});
+        pc = next(pc);
+      }
+    }
+
+    // Split into chunks at boundaries no jump crosses.
+    List<int[]> chunks = new ArrayList<>();
+    int chunkStart = 0;
+    int chunkLength = 0;
+    for (int i = 0; i < items.size(); i++) {
+      int length = items.get(i)[2];
+      if (chunkLength > 0
+          && chunkLength + length > MAX_METHOD_LENGTH
+          && !isJumpedOver(items, items.get(i)[0])) {
+        chunks.add(new int[] {chunkStart, i, chunkLength});
+        chunkStart = i;
+        chunkLength = 0;
+      }
+      chunkLength += length;
+    }
+    chunks.add(new int[] {chunkStart, items.size(), chunkLength});
+
+    for (int[] chunk : chunks) {
+      if (chunk[2] > MAX_BRANCHING_METHOD_LENGTH && maxInlineBodyLength > 0) {
+        return method(start, end, 0);
+      }
+    }
+    if (chunks.size() == 1) {
+      return emit(items, 0, items.size());
+    }
+    Code calls = new Code();
+    for (int[] chunk : chunks) {
+      calls.op(ALOAD_0);
+      calls.op(INVOKESTATIC, methodRef(emit(items, chunk[0], chunk[1])));
+    }
+    calls.op(RETURN);
+    return addMethod(calls);
+  }
+
+  // A jump to the boundary itself becomes a jump to the return of the chunk that ends there.
+  private boolean isJumpedOver(List<int[]> items, int boundary) {
+    for (int[] item : items) {
+      int pc = item[0];
+      if (item[1] == next(pc) && RenderPlan.isJump(code[pc])) {
+        int target = code[next(pc) - 1];
+        if (pc < boundary ? target > boundary : target < boundary) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private String emit(List<int[]> items, int from, int to) {
+    int end = items.get(to - 1)[1];
+    int[] labels = new int[code.length + 1];
+    Arrays.fill(labels, -1);
+    List<int[]> branches = new ArrayList<>();
+    Code chunk = new Code();
+    for (int i = from; i < to; i++) {
+      int[] item = items.get(i);
+      labels[item[0]] = chunk.size();
+      if (item[1] != next(item[0])) {
+        chunk.op(ALOAD_0);
+        chunk.op(INVOKESTATIC, methodRef(method(item[0], item[1], MAX_INLINE_BODY_LENGTH)));
+      } else {
+        instruction(chunk, item[0], branches);
+      }
+    }
+    labels[end] = chunk.size();
+    chunk.op(RETURN);
+
+    byte[] bytes = chunk.toByteArray();
+    for (int[] branch : branches) {
+      int target = labels[branch[1]];
+      if (target < 0) {
+        throw new IllegalStateException("Jump leaves its method at " + branch[1]);
+      }
+      int offset = target - branch[0];
+      bytes[branch[0] + 1] = (byte) (offset >> 8);
+      bytes[branch[0] + 2] = (byte) offset;
+    }
+    chunk.reset();
+    chunk.write(bytes, 0, bytes.length);
+    return addMethod(chunk);
+  }
+
+  private String addMethod(Code code) {
+    String name = "render" + methods.size();
+    methods.add(new Method(ACC_PRIVATE | ACC_STATIC, name, RENDER_DESCRIPTOR, code, 4, 1));
+    return name;
+  }
+
+  private int methodRef(String name) {
+    return pool.methodRef(CLASS_NAME, name, RENDER_DESCRIPTOR);
+  }
+
+  private int next(int pc) {
+    return pc + 1 + RenderPlan.operandCount(code[pc]);
+  }
+
+  private int estimateLength(int pc) {
+    // aload, operands as sipush/ldc_w, invokevirtual and a branch
+    return 1 + 3 * RenderPlan.operandCount(code[pc]) + 3 + 3;
+  }
+
+  private void instruction(Code chunk, int pc, List<int[]> branches) {
+    switch (code[pc]) {
+      case RenderPlan.TEXT:
+        call(chunk, pc, "text");
+        break;
+      case RenderPlan.NODE:
+        call(chunk, pc, "node");
+        break;
+      case RenderPlan.EXPRESSION:
+        call(chunk, pc, "expression");
+        break;
+      case RenderPlan.OPEN_TAG:
+        call(chunk, pc, "openTag");
+        break;
+      case RenderPlan.PRETTY_INDENT:
+        call(chunk, pc, "prettyIndent");
+        break;
+      case RenderPlan.PRETTY_INDENT_UNLESS_ESCAPED:
+        call(chunk, pc, "prettyIndentUnlessEscaped");
+        break;
+      case RenderPlan.PRETTY_INDENT_AFTER_FILTER:
+        call(chunk, pc, "prettyIndentAfterFilter");
+        break;
+      case RenderPlan.INCREMENT:
+        call(chunk, pc, "increment");
+        break;
+      case RenderPlan.DECREMENT:
+        call(chunk, pc, "decrement");
+        break;
+      case RenderPlan.ESCAPE:
+        call(chunk, pc, "escape");
+        break;
+      case RenderPlan.JUMP:
+        branch(chunk, GOTO, pc, branches);
+        break;
+      case RenderPlan.UNLESS_CONDITION:
+        call(chunk, pc, "condition");
+        branch(chunk, IFEQ, pc, branches);
+        break;
+      case RenderPlan.UNLESS_WHEN:
+        call(chunk, pc, "when");
+        branch(chunk, IFEQ, pc, branches);
+        break;
+      case RenderPlan.IF_WHEN:
+        call(chunk, pc, "when");
+        branch(chunk, IFNE, pc, branches);
+        break;
+      case RenderPlan.PUSH_SCOPE:
+        call(chunk, pc, "pushScope");
+        break;
+      case RenderPlan.POP_SCOPE:
+        call(chunk, pc, "popScope");
+        break;
+      case RenderPlan.UNLESS_WHILE:
+        call(chunk, pc, "whileCondition");
+        branch(chunk, IFEQ, pc, branches);
+        break;
+      case RenderPlan.EACH_BEGIN:
+        call(chunk, pc, "eachBegin");
+        branch(chunk, IFEQ, pc, branches);
+        break;
+      case RenderPlan.EACH_NEXT:
+        call(chunk, pc, "eachNext");
+        branch(chunk, IFEQ, pc, branches);
+        break;
+      case RenderPlan.EACH_ELSE:
+        call(chunk, pc, "eachElse");
+        branch(chunk, IFEQ, pc, branches);
+        break;
+      case RenderPlan.EACH_END:
+        call(chunk, pc, "eachEnd");
+        break;
+      case RenderPlan.DEFINE_MIXIN:
+        call(chunk, pc, "defineMixin");
+        break;
+      case RenderPlan.CALL_MIXIN:
+        call(chunk, pc, "callMixin");
+        break;
+      default:
+        throw new IllegalStateException("Unknown render plan instruction " + code[pc]);
+    }
+  }
+
+  // Calls the frame method of an instruction with all operands except a jump target.
+  private void call(Code chunk, int pc, String method) {
+    int operands = RenderPlan.operandCount(code[pc]);
+    boolean jump = RenderPlan.isJump(code[pc]);
+    if (jump) {
+      operands--;
+    }
+    chunk.op(ALOAD_0);
+    StringBuilder descriptor = new StringBuilder("(");
+    for (int i = 1; i <= operands; i++) {
+      chunk.push(code[pc + i], pool);
+      descriptor.append('I');
+    }
+    descriptor.append(jump ? ")Z" : ")V");
+    chunk.op(INVOKEVIRTUAL, pool.methodRef(FRAME, method, descriptor.toString()));
+  }
+
+  private void branch(Code chunk, int opcode, int pc, List<int[]> branches) {
+    branches.add(new int[] {chunk.size(), code[next(pc) - 1]});
+    chunk.op(opcode, 0);
+  }
+
+  private byte[] write() {
+    int thisClass = pool.classRef(CLASS_NAME);
+    int superClass = pool.classRef("java/lang/Object");
+    int programInterface = pool.classRef(PROGRAM);
+    int codeAttribute = pool.utf8("Code");
+    for (Method method : methods) {
+      method.nameIndex = pool.utf8(method.name);
+      method.descriptorIndex = pool.utf8(method.descriptor);
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(0xCAFEBABE);
+      out.writeShort(0);
+      out.writeShort(JAVA_5);
+      pool.writeTo(out);
+      out.writeShort(ACC_FINAL | ACC_SUPER);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(1);
+      out.writeShort(programInterface);
+      out.writeShort(0);
+      out.writeShort(methods.size());
+      for (Method method : methods) {
+        byte[] code = method.code.toByteArray();
+        out.writeShort(method.access);
+        out.writeShort(method.nameIndex);
+        out.writeShort(method.descriptorIndex);
+        out.writeShort(1);
+        out.writeShort(codeAttribute);
+        out.writeInt(12 + code.length);
+        out.writeShort(method.maxStack);
+        out.writeShort(method.maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);
+        out.writeShort(0);
+      }
+      out.writeShort(0);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static final class Method {
+    final int access;
+    final String name;
+    final String descriptor;
+    final Code code;
+    final int maxStack;
+    final int maxLocals;
+    int nameIndex;
+    int descriptorIndex;
+
+    Method(int access, String name, String descriptor, Code code, int maxStack, int maxLocals) {
+      this.access = access;
+      this.name = name;
+      this.descriptor = descriptor;
+      this.code = code;
+      this.maxStack = maxStack;
+      this.maxLocals = maxLocals;
+    }
+  }
+
+  private static final class Code extends ByteArrayOutputStream {
+
+    void op(int opcode) {
+      write(opcode);
+    }
+
+    void op(int opcode, int index) {
+      write(opcode);
+      writeShort(index);
+    }
+
+    void push(int value, ConstantPool pool) {
+      if (value >= -1 && value <= 5) {
+        write(ICONST_0 + value);
+      } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+        write(BIPUSH);
+        write(value);
+      } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+        write(SIPUSH);
+        writeShort(value);
+      } else {
+        op(LDC_W, pool.integer(value));
+      }
+    }
+
+    private void writeShort(int value) {
+      write(value >>> 8);
+      write(value);
+    }
+  }
+
+  private static final class ConstantPool {
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int METHOD_REF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int count = 1;
+
+    int utf8(String value) {
+      return entry(UTF8 + ":" + value, UTF8, -1, -1, value);
+    }
+
+    int integer(int value) {
+      return entry(INTEGER + ":" + value, INTEGER, value, -1, null);
+    }
+
+    int classRef(String name) {
+      return entry(CLASS + ":" + name, CLASS, utf8(name), -1, null);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+      int nameAndType =
+          entry(
+              NAME_AND_TYPE + ":" + name + ":" + descriptor,
+              NAME_AND_TYPE,
+              utf8(name),
+              utf8(descriptor),
+              null);
+      return entry(
+          METHOD_REF + ":" + owner + "." + name + descriptor,
+          METHOD_REF,
+          classRef(owner),
+          nameAndType,
+          null);
+    }
+
+    private int entry(String key, int tag, int first, int second, String utf8) {
+      Integer index = entries.get(key);
+      if (index != null) {
+        return index;
+      }
+      if (count == 0xffff) {
+        throw new IllegalStateException("Template is too large to be compiled");
+      }
+      try {
+        out.writeByte(tag);
+        if (tag == UTF8) {
+          out.writeUTF(utf8);
+        } else if (tag == INTEGER) {
+          out.writeInt(first);
+        } else {
+          out.writeShort(first);
+          if (second >= 0) {
+            out.writeShort(second);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      entries.put(key, count);
+      return count++;
+    }
+
+    void writeTo(DataOutputStream classFile) throws IOException {
+      classFile.writeShort(count);
+      bytes.writeTo(classFile);
+    }
+  }
+}
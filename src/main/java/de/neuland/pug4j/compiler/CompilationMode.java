@@ -0,0 +1,26 @@
+package de.neuland.pug4j.compiler;
+
+/**
+ * How {@link de.neuland.pug4j.PugEngine} executes a parsed template.
+ *
+ * @since 3.1.0
+ */
+public enum CompilationMode {
+  /** Walk the node tree with the {@link Compiler} visitor on every render. */
+  NONE,
+
+  /**
+   * Flatten each template once per output variant (terse/xml/pretty print) into a linear list of
+   * render instructions that is executed by a small interpreter. Static markup is merged into
+   * plain strings, conditionals, case and loops become jumps, and only nodes like filters and
+   * buffered code blocks are handed back to the {@link Compiler} visitor.
+   */
+  RENDER_PLAN,
+
+  /**
+   * Like {@link #RENDER_PLAN}, but the instruction list is compiled into a generated hidden class.
+   * Jumps become branches and all other instructions, including writing static markup, become
+   * direct calls.
+   */
+  BYTECODE
+}
@@ -0,0 +1,49 @@
+package de.neuland.pug4j.compiler;
+
+import de.neuland.pug4j.model.PugModel;
+import de.neuland.pug4j.parser.node.Node;
+
+/**
+ * A template compiled for one output variant. Instances are created and cached by {@link
+ * de.neuland.pug4j.template.PugTemplate#getCompiledTemplate} and are safe to share between
+ * threads; all per-render state lives in the {@link Compiler} that renders them.
+ *
+ * @since 3.1.0
+ */
+public final class CompiledTemplate {
+
+  private final RenderPlan plan;
+  private final RenderProgram program;
+
+  private CompiledTemplate(RenderPlan plan, RenderProgram program) {
+    this.plan = plan;
+    this.program = program;
+  }
+
+  /**
+   * Compiles a parsed template.
+   *
+   * @param rootNode the root node of the template
+   * @param mode the compilation mode, must not be {@link CompilationMode#NONE}
+   * @param terse whether the output uses HTML5 terse attributes and void tags
+   * @param xml whether the output is XML
+   * @param prettyPrint whether the output is pretty printed
+   * @return the compiled template
+   */
+  public static CompiledTemplate compile(
+      Node rootNode, CompilationMode mode, boolean terse, boolean xml, boolean prettyPrint) {
+    if (mode == CompilationMode.NONE) {
+      throw new IllegalArgumentException("unsupported compilation mode " + mode);
+    }
+    RenderPlan plan = new RenderPlanner(terse, xml, prettyPrint).plan(rootNode);
+    if (mode == CompilationMode.RENDER_PLAN) {
+      return new CompiledTemplate(plan, new RenderPlanInterpreter(plan));
+    }
+    return new CompiledTemplate(plan, BytecodeGenerator.generate(plan));
+  }
+
+  void render(Compiler compiler, IndentWriter writer, PugModel model) {
+    byte[][] utf8Constants = writer.isUtf8() ? plan.utf8Constants : null;
+    program.render(new RenderFrame(compiler, writer, model, plan.constants, utf8Constants));
+  }
+}
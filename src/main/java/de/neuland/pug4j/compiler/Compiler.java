@@ -6,6 +6,7 @@ import de.neuland.pug4j.RenderContext;
 import de.neuland.pug4j.exceptions.ExpressionException;
 import de.neuland.pug4j.exceptions.PugCompilerException;
 import de.neuland.pug4j.exceptions.TemplateSource;
+import de.neuland.pug4j.expression.CompiledExpression;
 import de.neuland.pug4j.expression.ExpressionHandler;
 import de.neuland.pug4j.filter.Filter;
 import de.neuland.pug4j.model.PugModel;
@@ -29,6 +30,8 @@ public class Compiler implements NodeVisitor {
   // RenderContext defaultMode decides terse/xml behavior.
   private final boolean terse;
   private final boolean xml;
+  // The innermost mixin call being rendered, which binds the caller's block to `block` statements.
+  private MixinFrame mixinFrame;
 
   public Compiler(
       PugTemplate pugTemplate, RenderContext context, de.neuland.pug4j.PugEngine engine) {
@@ -53,6 +56,24 @@ public class Compiler implements NodeVisitor {
     return engine.getTemplateLoader();
   }
 
+  // Evaluates the expression of a node, compiled by the ExpressionPrecompiler if possible.
+  Object evaluate(Node node, String expression, PugModel model) throws ExpressionException {
+    CompiledExpression compiledExpression = node.getCompiledExpression();
+    if (compiledExpression != null) {
+      return compiledExpression.evaluate(model);
+    }
+    return getExpressionHandler().evaluateExpression(expression, model);
+  }
+
+  // Runs the code of consecutive unbuffered code lines.
+  void evaluateCode(String code, PugModel model) throws ExpressionException {
+    getExpressionHandler().evaluateExpression(code, model);
+  }
+
+  CompilationMode getCompilationMode() {
+    return engine.getCompilationMode();
+  }
+
   // Lines of the file the node came from (includes/mixins may live in another file).
   private List<String> templateLines(Node node) {
     return TemplateSource.readLines(getTemplateLoader(), node.getFileName());
@@ -67,13 +88,35 @@ public class Compiler implements NodeVisitor {
   public void compile(PugModel model, Writer w) throws PugCompilerException {
     IndentWriter writer = new IndentWriter(w);
     writer.setUseIndent(context.isPrettyPrint());
-    visit(writer, model, template.getRootNode());
+    CompilationMode compilationMode = getCompilationMode();
+    ExpressionHandler expressionHandler = getExpressionHandler();
+    expressionHandler.beginRender();
+    try {
+      if (compilationMode == CompilationMode.NONE) {
+        visit(writer, model, template.getRootNode());
+      } else {
+        template
+            .getCompiledTemplate(compilationMode, terse, xml, context.isPrettyPrint())
+            .render(this, writer, model);
+      }
+    } finally {
+      expressionHandler.endRender();
+    }
   }
 
   private void visit(final IndentWriter writer, final PugModel model, final Node node) {
     node.accept(this, writer, model);
   }
 
+  // Entry points for compiled templates, which hand the nodes they cannot render themselves back.
+  void visitNode(Node node, IndentWriter writer, PugModel model) {
+    node.accept(this, writer, model);
+  }
+
+  String visitAttributes(TagNode node, PugModel model) {
+    return attributesCompiler.visitAttributes(model, node, terse);
+  }
+
   @Override
   public void visit(CaseNode.When node, IndentWriter writer, PugModel model) {
     visit(writer, model, node.getBlock());
@@ -81,6 +124,28 @@ public class Compiler implements NodeVisitor {
 
   @Override
   public void visit(TagNode node, IndentWriter writer, PugModel model) {
+    StaticFragment fragment = node.getStaticFragment();
+    if (fragment == null) {
+      visitTag(node, writer, model);
+      return;
+    }
+    StaticFragment.Chunk chunk = fragment.get(terse, xml, writer);
+    if (chunk == null) {
+      StringWriter markup = new StringWriter();
+      IndentWriter fragmentWriter = writer.fork(markup);
+      visitTag(node, fragmentWriter, model);
+      chunk = new StaticFragment.Chunk(markup.toString(), fragmentWriter.isEscape());
+      fragment.put(terse, xml, writer, chunk);
+    }
+    if (writer.isUtf8()) {
+      writer.appendUtf8(chunk.markup, chunk.utf8);
+    } else {
+      writer.append(chunk.markup);
+    }
+    writer.setEscape(chunk.escape);
+  }
+
+  private void visitTag(TagNode node, IndentWriter writer, PugModel model) {
     writer.increment();
 
     if (node.isWhitespaceSensitive()) {
@@ -171,7 +236,7 @@ public class Compiler implements NodeVisitor {
       }
 
       try {
-        getExpressionHandler().evaluateExpression(bufferedExpressionString, model);
+        evaluateCode(bufferedExpressionString, model);
       } catch (ExpressionException e) {
         throw new PugCompilerException(node, templateLines(node), e);
       }
@@ -218,21 +283,6 @@ public class Compiler implements NodeVisitor {
           node, templateLines(node), "mixin " + node.getName() + " is not defined");
     }
 
-    // Clone mixin
-    try {
-      mixin = (MixinNode) mixin.clone();
-    } catch (CloneNotSupportedException e) {
-      // Can't happen
-      throw new IllegalStateException(e);
-    }
-
-    if (node.hasBlock()) {
-      List<MixinBlockNode> injectionPoints = node.getInjectionPoints(mixin.getBlock());
-      for (MixinBlockNode point : injectionPoints) {
-        point.getNodes().add(node.getBlock());
-      }
-    }
-
     if (node.isCall()) {
       model.pushScope();
       model.setLocal("block", node.getBlock());
@@ -243,7 +293,13 @@ public class Compiler implements NodeVisitor {
           attributesCompiler.getAttributesMap(model, node, terse);
       model.setLocal("attributes", attrs);
 
-      visit(writer, model, mixin.getBlock());
+      MixinFrame callerFrame = mixinFrame;
+      mixinFrame = new MixinFrame(node.getBlock(), callerFrame);
+      try {
+        visit(writer, model, mixin.getBlock());
+      } finally {
+        mixinFrame = callerFrame;
+      }
       model.setLocal("block", null);
       model.popScope();
     }
@@ -251,20 +307,22 @@ public class Compiler implements NodeVisitor {
 
   @Override
   public void visit(CaseNode node, IndentWriter writer, PugModel model) {
-    try {
-      boolean skip = false;
-      for (Node when : node.getBlock().getNodes()) {
-        if (skip
-            || "default".equals(when.getValue())
-            || node.checkCondition(model, when, getExpressionHandler())) {
-          if (when.getBlock() != null) {
-            visit(writer, model, when);
-            break;
-          } else {
-            skip = true;
-          }
+    boolean skip = false;
+    for (Node when : node.getBlock().getNodes()) {
+      if (skip || "default".equals(when.getValue()) || checkCondition(node, when, model)) {
+        if (when.getBlock() != null) {
+          visit(writer, model, when);
+          break;
+        } else {
+          skip = true;
         }
       }
+    }
+  }
+
+  boolean checkCondition(CaseNode node, Node when, PugModel model) {
+    try {
+      return node.checkCondition(model, when, getExpressionHandler());
     } catch (ExpressionException e) {
       throw new PugCompilerException(node, templateLines(node), e);
     }
@@ -286,19 +344,22 @@ public class Compiler implements NodeVisitor {
   @Override
   public void visit(ConditionalNode node, IndentWriter writer, PugModel model) {
     for (IfConditionNode conditionNode : node.getConditions()) {
-      try {
-        if (conditionNode.isDefault()
-            || node.checkCondition(model, conditionNode.getValue(), getExpressionHandler())
-                ^ conditionNode.isInverse()) {
-          visit(writer, model, conditionNode.getBlock());
-          return;
-        }
-      } catch (ExpressionException e) {
-        throw new PugCompilerException(conditionNode, templateLines(conditionNode), e);
+      if (conditionNode.isDefault() || checkCondition(node, conditionNode, model)) {
+        visit(writer, model, conditionNode.getBlock());
+        return;
       }
     }
   }
 
+  boolean checkCondition(ConditionalNode node, IfConditionNode conditionNode, PugModel model) {
+    try {
+      return node.checkCondition(model, conditionNode, getExpressionHandler())
+          ^ conditionNode.isInverse();
+    } catch (ExpressionException e) {
+      throw new PugCompilerException(conditionNode, templateLines(conditionNode), e);
+    }
+  }
+
   @Override
   public void visit(DoctypeNode node, IndentWriter writer, PugModel model) {
     writer.append(node.getDoctypeLine());
@@ -306,9 +367,17 @@ public class Compiler implements NodeVisitor {
 
   @Override
   public void visit(EachNode node, IndentWriter writer, PugModel model) {
+    Object result = evaluateIterable(node, model);
+    model.pushScope();
+    final Consumer<Node> nodeConsumer = (Node lambdaNode) -> visit(writer, model, lambdaNode);
+    node.run(writer, model, result, getExpressionHandler(), getTemplateLoader(), nodeConsumer);
+    model.popScope();
+  }
+
+  Object evaluateIterable(EachNode node, PugModel model) {
     Object result;
     try {
-      result = getExpressionHandler().evaluateExpression(node.getCode(), model);
+      result = evaluate(node, node.getCode(), model);
     } catch (ExpressionException e) {
       throw new PugCompilerException(node, templateLines(node), e);
     }
@@ -316,10 +385,7 @@ public class Compiler implements NodeVisitor {
       throw new PugCompilerException(
           node, templateLines(node), "[" + node.getCode() + "] has to be iterable but was null");
     }
-    model.pushScope();
-    final Consumer<Node> nodeConsumer = (Node lambdaNode) -> visit(writer, model, lambdaNode);
-    node.run(writer, model, result, getExpressionHandler(), getTemplateLoader(), nodeConsumer);
-    model.popScope();
+    return result;
   }
 
   @Override
@@ -361,34 +427,38 @@ public class Compiler implements NodeVisitor {
         bufferedExpressionString = value;
       }
     } else {
-      Object result = null;
-      try {
-        result = getExpressionHandler().evaluateExpression(value, model);
-      } catch (ExpressionException e) {
-        throw new PugCompilerException(node, templateLines(node), e);
-      }
-      if (result == null || !node.isBuffer()) {
-        return;
-      }
-      String expressionValue;
-      if (result.getClass().isArray()) {
-        Object[] resultArray = (Object[]) result;
-        expressionValue = StringUtils.joinWith(",", resultArray);
-      } else if (result instanceof List) {
-        List resultArray = (List) result;
-        expressionValue = StringUtils.joinWith(",", resultArray.toArray());
-      } else if (result instanceof Map) {
-        expressionValue = new LinkedHashMap<>((Map) result).toString();
-      } else {
-        expressionValue = result.toString();
-      }
-      if (node.isEscape()) {
-        expressionValue = HtmlEscaping.escapeHtml4(expressionValue);
-      }
-      writer.append(expressionValue);
+      renderExpression(node, writer, model);
     }
   }
 
+  void renderExpression(ExpressionNode node, IndentWriter writer, PugModel model) {
+    Object result = null;
+    try {
+      result = evaluate(node, node.getValue(), model);
+    } catch (ExpressionException e) {
+      throw new PugCompilerException(node, templateLines(node), e);
+    }
+    if (result == null || !node.isBuffer()) {
+      return;
+    }
+    String expressionValue;
+    if (result.getClass().isArray()) {
+      Object[] resultArray = (Object[]) result;
+      expressionValue = StringUtils.joinWith(",", resultArray);
+    } else if (result instanceof List) {
+      List resultArray = (List) result;
+      expressionValue = StringUtils.joinWith(",", resultArray.toArray());
+    } else if (result instanceof Map) {
+      expressionValue = new LinkedHashMap<>((Map) result).toString();
+    } else {
+      expressionValue = result.toString();
+    }
+    if (node.isEscape()) {
+      expressionValue = HtmlEscaping.escapeHtml4(expressionValue);
+    }
+    writer.append(expressionValue);
+  }
+
   @Override
   public void visit(FilterNode node, IndentWriter writer, PugModel model) {
     ArrayList<String> values = new ArrayList<>();
@@ -472,10 +542,16 @@ public class Compiler implements NodeVisitor {
 
   @Override
   public void visit(MixinBlockNode node, IndentWriter writer, PugModel model) {
-    LinkedList<Node> nodes = node.getNodes();
-    if (nodes.size() == 1) {
-      Node node1 = nodes.get(0);
-      if (node1 != null) visit(writer, model, node1);
+    MixinFrame frame = mixinFrame;
+    if (frame != null && frame.block != null) {
+      // The caller's block is part of the mixin the call was made in, so a `block` statement
+      // inside it refers to the block passed to that mixin.
+      mixinFrame = frame.caller;
+      try {
+        visit(writer, model, frame.block);
+      } finally {
+        mixinFrame = frame;
+      }
     }
   }
 
@@ -495,14 +571,33 @@ public class Compiler implements NodeVisitor {
 
   @Override
   public void visit(WhileNode node, IndentWriter writer, PugModel model) {
+    model.pushScope();
+    while (checkCondition(node, model)) {
+      visit(writer, model, node.getBlock());
+    }
+    model.popScope();
+  }
+
+  boolean checkCondition(WhileNode node, PugModel model) {
     try {
-      model.pushScope();
-      while (getExpressionHandler().evaluateBooleanExpression(node.getValue(), model)) {
-        visit(writer, model, node.getBlock());
+      CompiledExpression compiledExpression = node.getCompiledExpression();
+      if (compiledExpression != null) {
+        return compiledExpression.evaluateBoolean(model);
       }
-      model.popScope();
+      return getExpressionHandler().evaluateBooleanExpression(node.getValue(), model);
     } catch (ExpressionException e) {
       throw new PugCompilerException(node, templateLines(node), e);
     }
   }
+
+  /** A mixin call in progress: the block passed to the mixin and the call it was made in. */
+  private static final class MixinFrame {
+    private final Node block;
+    private final MixinFrame caller;
+
+    private MixinFrame(Node block, MixinFrame caller) {
+      this.block = block;
+      this.caller = caller;
+    }
+  }
 }
@@ -0,0 +1,64 @@
+package de.neuland.pug4j.compiler;
+
+import de.neuland.pug4j.PugEngine;
+import de.neuland.pug4j.RenderContext;
+import de.neuland.pug4j.exceptions.ExpressionException;
+import de.neuland.pug4j.model.PugModel;
+import de.neuland.pug4j.parser.node.*;
+import de.neuland.pug4j.template.PugTemplate;
+
+/**
+ * A {@link Compiler} that counts the output, code, condition and loop expressions it evaluates.
+ * Attribute expressions, mixin arguments and dynamic mixin names are not counted. It is used
+ * instead of the compiler when the engine has a {@link de.neuland.pug4j.PugEngineListener}, so
+ * renders without one do not pay for counting.
+ *
+ * @since 3.1.0
+ */
+public class CountingCompiler extends Compiler {
+
+  private long expressionCount;
+
+  public CountingCompiler(PugTemplate pugTemplate, RenderContext context, PugEngine engine) {
+    super(pugTemplate, context, engine);
+  }
+
+  /**
+   * Returns the number of expressions evaluated so far.
+   *
+   * @return the expression count
+   */
+  public long getExpressionCount() {
+    return expressionCount;
+  }
+
+  @Override
+  Object evaluate(Node node, String expression, PugModel model) throws ExpressionException {
+    expressionCount++;
+    return super.evaluate(node, expression, model);
+  }
+
+  @Override
+  void evaluateCode(String code, PugModel model) throws ExpressionException {
+    expressionCount++;
+    super.evaluateCode(code, model);
+  }
+
+  @Override
+  boolean checkCondition(CaseNode node, Node when, PugModel model) {
+    expressionCount++;
+    return super.checkCondition(node, when, model);
+  }
+
+  @Override
+  boolean checkCondition(ConditionalNode node, IfConditionNode conditionNode, PugModel model) {
+    expressionCount++;
+    return super.checkCondition(node, conditionNode, model);
+  }
+
+  @Override
+  boolean checkCondition(WhileNode node, PugModel model) {
+    expressionCount++;
+    return super.checkCondition(node, model);
+  }
+}
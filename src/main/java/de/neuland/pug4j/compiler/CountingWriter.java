@@ -0,0 +1,79 @@
+package de.neuland.pug4j.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Counts the characters written to a writer. The engine renders to a {@code CountingWriter} when
+ * it has a {@link de.neuland.pug4j.PugEngineListener} or a flight recording is running. Static
+ * markup that was encoded in advance is passed on to a wrapped {@link Utf8Writer} as bytes and
+ * counted by its characters, so counting renders write the same bytes as renders that do not count.
+ *
+ * @since 3.1.0
+ */
+public final class CountingWriter extends Writer {
+  private final Writer writer;
+  // The wrapped writer if it encodes to bytes, otherwise null
+  private final Utf8Writer utf8Writer;
+  private long count;
+
+  public CountingWriter(Writer writer) {
+    this.writer = writer;
+    this.utf8Writer = writer instanceof Utf8Writer ? (Utf8Writer) writer : null;
+  }
+
+  /**
+   * Returns the number of characters written so far.
+   *
+   * @return the character count
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /** The wrapped writer if it is a {@link Utf8Writer}, otherwise null. */
+  Utf8Writer getUtf8Writer() {
+    return utf8Writer;
+  }
+
+  /** Writes static markup that was encoded in advance. Only if {@link #getUtf8Writer()} is set. */
+  void writeUtf8(String string, byte[] utf8) throws IOException {
+    utf8Writer.writeUtf8(utf8);
+    count += string.length();
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    writer.write(c);
+    count++;
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    writer.write(cbuf, off, len);
+    count += len;
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    writer.write(str, off, len);
+    count += len;
+  }
+
+  @Override
+  public Writer append(CharSequence csq) throws IOException {
+    writer.append(csq);
+    count += csq == null ? 4 : csq.length();
+    return this;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    writer.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+}
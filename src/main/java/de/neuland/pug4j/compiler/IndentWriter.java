@@ -20,11 +20,32 @@ public class IndentWriter {
   private int indent = 0;
   private boolean useIndent = false;
   private final Writer writer;
+  // The writer if it encodes to bytes, also behind a CountingWriter, so static markup can be
+  // written pre-encoded.
+  private final Utf8Writer utf8Writer;
+  private final CountingWriter countingWriter;
   private boolean escape;
   private char lastChar = 0;
 
   public IndentWriter(Writer writer) {
     this.writer = writer;
+    if (writer instanceof CountingWriter counting) {
+      this.countingWriter = counting;
+      this.utf8Writer = counting.getUtf8Writer();
+    } else {
+      this.countingWriter = null;
+      this.utf8Writer = writer instanceof Utf8Writer ? (Utf8Writer) writer : null;
+    }
+  }
+
+  /** Creates a writer to another target that continues with this writer's state. */
+  IndentWriter fork(Writer writer) {
+    IndentWriter fork = new IndentWriter(writer);
+    fork.indent = indent;
+    fork.useIndent = useIndent;
+    fork.escape = escape;
+    fork.lastChar = lastChar;
+    return fork;
   }
 
   public IndentWriter append(String string) {
@@ -32,6 +53,34 @@ public class IndentWriter {
     return this;
   }
 
+  /**
+   * Whether the output is a {@link Utf8Writer}, also behind a {@link CountingWriter}, and takes
+   * pre-encoded markup.
+   */
+  boolean isUtf8() {
+    return utf8Writer != null;
+  }
+
+  /**
+   * Appends static markup that was encoded in advance. Only for writers that are {@link #isUtf8()}.
+   */
+  IndentWriter appendUtf8(String string, byte[] utf8) {
+    try {
+      if (countingWriter != null) {
+        countingWriter.writeUtf8(string, utf8);
+      } else {
+        utf8Writer.writeUtf8(utf8);
+      }
+      if (!string.isEmpty()) {
+        lastChar = string.charAt(string.length() - 1);
+      }
+    } catch (IOException e) {
+      logger.error("Failed to write to output: {}", string, e);
+      throw new RuntimeException("Failed to write template output", e);
+    }
+    return this;
+  }
+
   public void increment() {
     indent++;
   }
@@ -40,6 +89,10 @@ public class IndentWriter {
     indent--;
   }
 
+  int getIndent() {
+    return indent;
+  }
+
   private void write(String string) {
     try {
       writer.write(string);
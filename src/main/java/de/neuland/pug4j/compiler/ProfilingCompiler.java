@@ -0,0 +1,280 @@
+package de.neuland.pug4j.compiler;
+
+import de.neuland.pug4j.PugEngine;
+import de.neuland.pug4j.RenderContext;
+import de.neuland.pug4j.exceptions.ExpressionException;
+import de.neuland.pug4j.exceptions.PugCompilerException;
+import de.neuland.pug4j.model.PugModel;
+import de.neuland.pug4j.parser.node.*;
+import de.neuland.pug4j.template.PugTemplate;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * A {@link Compiler} that measures every node it renders and every expression it evaluates, and
+ * adds the measurements to a {@link RenderProfile} when the render is done. It is used instead of
+ * the compiler when a render is profiled, so unprofiled renders do not pay for the measurements.
+ *
+ * @since 3.1.0
+ */
+public class ProfilingCompiler extends CountingCompiler {
+
+  private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocations();
+
+  private final RenderProfile profile;
+  private RenderProfile.Frame frame;
+
+  public ProfilingCompiler(
+      PugTemplate pugTemplate, RenderContext context, PugEngine engine, RenderProfile profile) {
+    super(pugTemplate, context, engine);
+    if (profile == null) {
+      throw new IllegalArgumentException("profile cannot be null");
+    }
+    this.profile = profile;
+  }
+
+  private static com.sun.management.ThreadMXBean allocations() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+      if (allocations.isThreadAllocatedMemorySupported()
+          && allocations.isThreadAllocatedMemoryEnabled()) {
+        return allocations;
+      }
+    }
+    return null;
+  }
+
+  private static long allocatedBytes() {
+    return ALLOCATIONS != null ? ALLOCATIONS.getCurrentThreadAllocatedBytes() : 0;
+  }
+
+  private void enter(Object nodeOrExpression) {
+    frame = frame.enter(nodeOrExpression, System.nanoTime(), allocatedBytes());
+  }
+
+  private void exit() {
+    frame = frame.exit(System.nanoTime(), allocatedBytes());
+  }
+
+  @Override
+  public void compile(PugModel model, Writer w) throws PugCompilerException {
+    RenderProfile.Frame root = new RenderProfile.Frame();
+    frame = root;
+    try {
+      super.compile(model, w);
+    } finally {
+      frame = null;
+      profile.add(root);
+    }
+  }
+
+  // Compiled templates render static markup without visiting its nodes.
+  @Override
+  CompilationMode getCompilationMode() {
+    return CompilationMode.NONE;
+  }
+
+  @Override
+  Object evaluate(Node node, String expression, PugModel model) throws ExpressionException {
+    enter(expression);
+    try {
+      return super.evaluate(node, expression, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  void evaluateCode(String code, PugModel model) throws ExpressionException {
+    enter(code);
+    try {
+      super.evaluateCode(code, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  boolean checkCondition(CaseNode node, Node when, PugModel model) {
+    enter(CaseNode.comparison(node.getValue(), when.getValue()));
+    try {
+      return super.checkCondition(node, when, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  boolean checkCondition(ConditionalNode node, IfConditionNode conditionNode, PugModel model) {
+    enter(conditionNode.getValue());
+    try {
+      return super.checkCondition(node, conditionNode, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  boolean checkCondition(WhileNode node, PugModel model) {
+    enter(node.getValue());
+    try {
+      return super.checkCondition(node, model);
+    } finally {
+      exit();
+    }
+  }
+
+  // Blocks only group nodes, and mixin calls are measured as call nodes.
+
+  @Override
+  public void visit(CaseNode.When node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public void visit(TagNode node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public void visit(BlockCommentNode node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public void visit(CallNode node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public void visit(CaseNode node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public void visit(CommentNode node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public void visit(ConditionalNode node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public void visit(DoctypeNode node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public void visit(EachNode node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public void visit(ExpressionNode node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public void visit(FilterNode node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public void visit(LiteralNode node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public void visit(MixinBlockNode node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public void visit(TextNode node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+
+  @Override
+  public void visit(WhileNode node, IndentWriter writer, PugModel model) {
+    enter(node);
+    try {
+      super.visit(node, writer, model);
+    } finally {
+      exit();
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package de.neuland.pug4j.compiler;
+
+import de.neuland.pug4j.model.PugModel;
+import de.neuland.pug4j.parser.node.CallNode;
+import de.neuland.pug4j.parser.node.CaseNode;
+import de.neuland.pug4j.parser.node.ConditionalNode;
+import de.neuland.pug4j.parser.node.EachNode;
+import de.neuland.pug4j.parser.node.ExpressionNode;
+import de.neuland.pug4j.parser.node.IfConditionNode;
+import de.neuland.pug4j.parser.node.MixinNode;
+import de.neuland.pug4j.parser.node.Node;
+import de.neuland.pug4j.parser.node.TagNode;
+import de.neuland.pug4j.parser.node.WhileNode;
+import java.util.Iterator;
+import java.util.Map;
+import org.apache.commons.collections4.IteratorUtils;
+
+/**
+ * State of a single render of a {@link RenderProgram}. Programs call one method per {@link
+ * RenderPlan} instruction; the int arguments are the instruction's operands without jump targets,
+ * and methods of jump instructions return whether the instruction continues with the next one.
+ */
+final class RenderFrame {
+
+  private final Compiler compiler;
+  private final IndentWriter writer;
+  private final PugModel model;
+  private final Object[] constants;
+  // The UTF-8 encoded string constants if the writer takes them, otherwise null.
+  private final byte[][] utf8Constants;
+  private Loop loop;
+
+  RenderFrame(
+      Compiler compiler,
+      IndentWriter writer,
+      PugModel model,
+      Object[] constants,
+      byte[][] utf8Constants) {
+    this.compiler = compiler;
+    this.writer = writer;
+    this.model = model;
+    this.constants = constants;
+    this.utf8Constants = utf8Constants;
+  }
+
+  void text(int text) {
+    if (utf8Constants != null) {
+      writer.appendUtf8((String) constants[text], utf8Constants[text]);
+    } else {
+      writer.append((String) constants[text]);
+    }
+  }
+
+  void node(int node) {
+    compiler.visitNode((Node) constants[node], writer, model);
+  }
+
+  void expression(int node) {
+    compiler.renderExpression((ExpressionNode) constants[node], writer, model);
+  }
+
+  void openTag(int node, int prefix, int suffix) {
+    String attributes = compiler.visitAttributes((TagNode) constants[node], model);
+    text(prefix);
+    writer.append(attributes);
+    text(suffix);
+  }
+
+  void prettyIndent(int offset, int newline) {
+    writer.prettyIndent(offset, newline == 1);
+  }
+
+  void prettyIndentUnlessEscaped(int offset, int newline) {
+    if (!writer.isEscape()) {
+      writer.prettyIndent(offset, newline == 1);
+    }
+  }
+
+  void prettyIndentAfterFilter(int offset) {
+    if (!writer.isEscape() && writer.isLastCharNewline()) {
+      writer.prettyIndent(offset, false);
+    }
+  }
+
+  void increment() {
+    writer.increment();
+  }
+
+  void decrement() {
+    writer.decrement();
+  }
+
+  void escape(int escape) {
+    writer.setEscape(escape == 1);
+  }
+
+  boolean condition(int conditional, int condition) {
+    return compiler.checkCondition(
+        (ConditionalNode) constants[conditional], (IfConditionNode) constants[condition], model);
+  }
+
+  boolean when(int caseNode, int when) {
+    return compiler.checkCondition((CaseNode) constants[caseNode], (Node) constants[when], model);
+  }
+
+  void pushScope() {
+    model.pushScope();
+  }
+
+  void popScope() {
+    model.popScope();
+  }
+
+  boolean whileCondition(int node) {
+    return compiler.checkCondition((WhileNode) constants[node], model);
+  }
+
+  boolean eachBegin(int node) {
+    EachNode each = (EachNode) constants[node];
+    Object result = compiler.evaluateIterable(each, model);
+    model.pushScope();
+    Iterator<?> iterator = null;
+    boolean map = false;
+    if (result instanceof Iterable<?>) {
+      iterator = ((Iterable<?>) result).iterator();
+    } else if (result.getClass().isArray()) {
+      iterator = IteratorUtils.arrayIterator(result);
+    } else if (result instanceof Map) {
+      iterator = ((Map<?, ?>) result).entrySet().iterator();
+      map = true;
+    }
+    loop = new Loop(each, iterator, map, loop);
+    return iterator != null && iterator.hasNext();
+  }
+
+  boolean eachNext() {
+    Loop loop = this.loop;
+    if (!loop.iterator.hasNext()) {
+      return false;
+    }
+    Object next = loop.iterator.next();
+    if (loop.map) {
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>) next;
+      model.setLocal(loop.node.getValue(), entry.getValue());
+      model.setLocal(loop.node.getKey(), entry.getKey());
+    } else {
+      model.setLocal(loop.node.getValue(), next);
+      model.setLocal(loop.node.getKey(), loop.index++);
+    }
+    return true;
+  }
+
+  // Only iterables, arrays and maps that turned out to be empty render the else block.
+  boolean eachElse() {
+    return loop.iterator != null;
+  }
+
+  void eachEnd() {
+    loop = loop.parent;
+    model.popScope();
+  }
+
+  void defineMixin(int node) {
+    MixinNode mixin = (MixinNode) constants[node];
+    model.setMixin(mixin.getName(), mixin);
+  }
+
+  void callMixin(int node) {
+    compiler.visit((CallNode) constants[node], writer, model);
+  }
+
+  private static final class Loop {
+    final EachNode node;
+    final Iterator<?> iterator;
+    final boolean map;
+    final Loop parent;
+    int index;
+
+    Loop(EachNode node, Iterator<?> iterator, boolean map, Loop parent) {
+      this.node = node;
+      this.iterator = iterator;
+      this.map = map;
+      this.parent = parent;
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package de.neuland.pug4j.compiler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Linear instruction list for one output variant of a template. Each instruction is an opcode
+ * followed by its int operands in {@link #code}; operands that reference strings or nodes are
+ * indexes into {@link #constants}, jump targets are indexes into {@link #code} and always the last
+ * operand of an instruction.
+ */
+final class RenderPlan {
+
+  /** Appends {@code constants[a]}. */
+  static final int TEXT = 0;
+  /** Renders node {@code constants[a]} with the {@link Compiler} visitor. */
+  static final int NODE = 1;
+  /** Evaluates expression node {@code constants[a]} and appends its result. */
+  static final int EXPRESSION = 2;
+  /**
+   * Appends {@code constants[b]}, the attributes of tag {@code constants[a]} and {@code
+   * constants[c]}.
+   */
+  static final int OPEN_TAG = 3;
+  /** Pretty indent by offset {@code a}, with a leading newline if {@code b} is 1. */
+  static final int PRETTY_INDENT = 4;
+  /** Like {@link #PRETTY_INDENT}, but only outside of whitespace sensitive tags. */
+  static final int PRETTY_INDENT_UNLESS_ESCAPED = 5;
+  /** Pretty indent by offset {@code a} if the preceding filter output ended with a newline. */
+  static final int PRETTY_INDENT_AFTER_FILTER = 6;
+
+  static final int INCREMENT = 7;
+  static final int DECREMENT = 8;
+  /** Sets the writer's escape flag to {@code a == 1}. */
+  static final int ESCAPE = 9;
+
+  /** Continues at {@code a}. */
+  static final int JUMP = 10;
+  /** Continues at {@code c} unless condition {@code constants[b]} of {@code constants[a]} holds. */
+  static final int UNLESS_CONDITION = 11;
+  /** Continues at {@code c} unless case {@code constants[a]} matches when {@code constants[b]}. */
+  static final int UNLESS_WHEN = 12;
+  /** Continues at {@code c} if case {@code constants[a]} matches when {@code constants[b]}. */
+  static final int IF_WHEN = 13;
+
+  static final int PUSH_SCOPE = 14;
+  static final int POP_SCOPE = 15;
+  /** Continues at {@code b} unless the condition of while node {@code constants[a]} holds. */
+  static final int UNLESS_WHILE = 16;
+  /**
+   * Starts the loop of each node {@code constants[a]}; continues at {@code b} if there is nothing
+   * to iterate.
+   */
+  static final int EACH_BEGIN = 17;
+  /** Binds the next loop item; continues at {@code a} when the loop is exhausted. */
+  static final int EACH_NEXT = 18;
+  /** Continues at {@code a} unless the each node's else block has to be rendered. */
+  static final int EACH_ELSE = 19;
+  /** Ends the innermost loop. */
+  static final int EACH_END = 20;
+
+  /** Defines mixin {@code constants[a]}. */
+  static final int DEFINE_MIXIN = 21;
+  /** Calls mixin {@code constants[a]}. */
+  static final int CALL_MIXIN = 22;
+
+  private static final int[] OPERAND_COUNTS = {
+    1, 1, 1, 3, 2, 2, 1, 0, 0, 1, 1, 3, 3, 3, 0, 0, 2, 2, 1, 1, 0, 1, 1
+  };
+  private static final boolean[] JUMPS = {
+    false, false, false, false, false, false, false, false, false, false, true, true, true, true,
+    false, false, true, true, true, true, false, false, false
+  };
+
+  final int[] code;
+  final Object[] constants;
+  /**
+   * Start and end index pairs of instruction ranges that form the body of a conditional or loop.
+   * No jump leaves a body and no jump from outside enters it other than at its start, so a body
+   * can be compiled separately from the surrounding instructions.
+   */
+  final int[] bodies;
+  /**
+   * UTF-8 encoding of every string constant, and null for all other constants. Encoded when the
+   * plan is created, so renders to a {@link Utf8Writer} only copy bytes.
+   */
+  final byte[][] utf8Constants;
+
+  private RenderPlan(int[] code, Object[] constants, int[] bodies) {
+    this.code = code;
+    this.constants = constants;
+    this.bodies = bodies;
+    this.utf8Constants = new byte[constants.length][];
+    for (int i = 0; i < constants.length; i++) {
+      if (constants[i] instanceof String) {
+        utf8Constants[i] = ((String) constants[i]).getBytes(StandardCharsets.UTF_8);
+      }
+    }
+  }
+
+  static int operandCount(int opcode) {
+    return OPERAND_COUNTS[opcode];
+  }
+
+  static boolean isJump(int opcode) {
+    return JUMPS[opcode];
+  }
+
+  static final class Builder {
+    private int[] code = new int[64];
+    private int length;
+    private final List<Object> constants = new ArrayList<>();
+    private final StringBuilder pendingText = new StringBuilder();
+    private int[] labels = new int[16];
+    private int labelCount;
+    // code indexes of jump operands that still hold a label instead of a target
+    private final List<Integer> jumps = new ArrayList<>();
+    private final List<Integer> bodies = new ArrayList<>();
+
+    /** Appends static output. Consecutive text is merged into one instruction. */
+    void text(String text) {
+      pendingText.append(text);
+    }
+
+    void emit(int opcode, int... operands) {
+      flushText();
+      add(opcode, operands);
+      if (isJump(opcode)) {
+        jumps.add(length - 1);
+      }
+    }
+
+    int constant(Object value) {
+      constants.add(value);
+      return constants.size() - 1;
+    }
+
+    /** Creates a label to be used as jump target before its position is known. */
+    int label() {
+      if (labelCount == labels.length) {
+        labels = Arrays.copyOf(labels, labelCount * 2);
+      }
+      labels[labelCount] = -1;
+      return labelCount++;
+    }
+
+    /** Places a label at the current position. */
+    void mark(int label) {
+      flushText();
+      labels[label] = length;
+    }
+
+    /** Starts a body and returns the token to pass to {@link #endBody(int)}. */
+    int beginBody() {
+      flushText();
+      return length;
+    }
+
+    void endBody(int start) {
+      flushText();
+      if (length > start) {
+        bodies.add(start);
+        bodies.add(length);
+      }
+    }
+
+    RenderPlan build() {
+      flushText();
+      for (int jump : jumps) {
+        code[jump] = labels[code[jump]];
+      }
+      int[] bodyRanges = new int[bodies.size()];
+      for (int i = 0; i < bodyRanges.length; i++) {
+        bodyRanges[i] = bodies.get(i);
+      }
+      return new RenderPlan(Arrays.copyOf(code, length), constants.toArray(), bodyRanges);
+    }
+
+    private void flushText() {
+      if (pendingText.length() > 0) {
+        add(TEXT, constant(pendingText.toString()));
+        pendingText.setLength(0);
+      }
+    }
+
+    private void add(int opcode, int... operands) {
+      if (length + operands.length + 1 > code.length) {
+        code = Arrays.copyOf(code, Math.max(code.length * 2, length + operands.length + 1));
+      }
+      code[length++] = opcode;
+      for (int operand : operands) {
+        code[length++] = operand;
+      }
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package de.neuland.pug4j.compiler;
+
+/** Executes a {@link RenderPlan} instruction by instruction. */
+final class RenderPlanInterpreter implements RenderProgram {
+
+  private final int[] code;
+  private final Object[] constants;
+
+  RenderPlanInterpreter(RenderPlan plan) {
+    this.code = plan.code;
+    this.constants = plan.constants;
+  }
+
+  @Override
+  public void render(RenderFrame frame) {
+    final int[] code = this.code;
+    int pc = 0;
+    while (pc < code.length) {
+      switch (code[pc]) {
+        case RenderPlan.TEXT:
+          frame.text(code[pc + 1]);
+          pc += 2;
+          break;
+        case RenderPlan.NODE:
+          frame.node(code[pc + 1]);
+          pc += 2;
+          break;
+        case RenderPlan.EXPRESSION:
+          frame.expression(code[pc + 1]);
+          pc += 2;
+          break;
+        case RenderPlan.OPEN_TAG:
+          frame.openTag(code[pc + 1], code[pc + 2], code[pc + 3]);
+          pc += 4;
+          break;
+        case RenderPlan.PRETTY_INDENT:
+          frame.prettyIndent(code[pc + 1], code[pc + 2]);
+          pc += 3;
+          break;
+        case RenderPlan.PRETTY_INDENT_UNLESS_ESCAPED:
+          frame.prettyIndentUnlessEscaped(code[pc + 1], code[pc + 2]);
+          pc += 3;
+          break;
+        case RenderPlan.PRETTY_INDENT_AFTER_FILTER:
+          frame.prettyIndentAfterFilter(code[pc + 1]);
+          pc += 2;
+          break;
+        case RenderPlan.INCREMENT:
+          frame.increment();
+          pc += 1;
+          break;
+        case RenderPlan.DECREMENT:
+          frame.decrement();
+          pc += 1;
+          break;
+        case RenderPlan.ESCAPE:
+          frame.escape(code[pc + 1]);
+          pc += 2;
+          break;
+        case RenderPlan.JUMP:
+          pc = code[pc + 1];
+          break;
+        case RenderPlan.UNLESS_CONDITION:
+          pc = frame.condition(code[pc + 1], code[pc + 2]) ? pc + 4 : code[pc + 3];
+          break;
+        case RenderPlan.UNLESS_WHEN:
+          pc = frame.when(code[pc + 1], code[pc + 2]) ? pc + 4 : code[pc + 3];
+          break;
+        case RenderPlan.IF_WHEN:
+          pc = frame.when(code[pc + 1], code[pc + 2]) ? code[pc + 3] : pc + 4;
+          break;
+        case RenderPlan.PUSH_SCOPE:
+          frame.pushScope();
+          pc += 1;
+          break;
+        case RenderPlan.POP_SCOPE:
+          frame.popScope();
+          pc += 1;
+          break;
+        case RenderPlan.UNLESS_WHILE:
+          pc = frame.whileCondition(code[pc + 1]) ? pc + 3 : code[pc + 2];
+          break;
+        case RenderPlan.EACH_BEGIN:
+          pc = frame.eachBegin(code[pc + 1]) ? pc + 3 : code[pc + 2];
+          break;
+        case RenderPlan.EACH_NEXT:
+          pc = frame.eachNext() ? pc + 2 : code[pc + 1];
+          break;
+        case RenderPlan.EACH_ELSE:
+          pc = frame.eachElse() ? pc + 2 : code[pc + 1];
+          break;
+        case RenderPlan.EACH_END:
+          frame.eachEnd();
+          pc += 1;
+          break;
+        case RenderPlan.DEFINE_MIXIN:
+          frame.defineMixin(code[pc + 1]);
+          pc += 2;
+          break;
+        case RenderPlan.CALL_MIXIN:
+          frame.callMixin(code[pc + 1]);
+          pc += 2;
+          break;
+        default:
+          throw new IllegalStateException("Unknown render plan instruction " + code[pc]);
+      }
+    }
+  }
+}
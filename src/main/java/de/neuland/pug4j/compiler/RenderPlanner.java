@@ -0,0 +1,281 @@
+package de.neuland.pug4j.compiler;
+
+import de.neuland.pug4j.parser.node.BlockCommentNode;
+import de.neuland.pug4j.parser.node.BlockNode;
+import de.neuland.pug4j.parser.node.CallNode;
+import de.neuland.pug4j.parser.node.CaseNode;
+import de.neuland.pug4j.parser.node.CommentNode;
+import de.neuland.pug4j.parser.node.ConditionalNode;
+import de.neuland.pug4j.parser.node.DoctypeNode;
+import de.neuland.pug4j.parser.node.EachNode;
+import de.neuland.pug4j.parser.node.ExpressionNode;
+import de.neuland.pug4j.parser.node.FilterNode;
+import de.neuland.pug4j.parser.node.IfConditionNode;
+import de.neuland.pug4j.parser.node.IncludeFilterNode;
+import de.neuland.pug4j.parser.node.LiteralNode;
+import de.neuland.pug4j.parser.node.MixinNode;
+import de.neuland.pug4j.parser.node.Node;
+import de.neuland.pug4j.parser.node.TagNode;
+import de.neuland.pug4j.parser.node.TextNode;
+import de.neuland.pug4j.parser.node.WhileNode;
+
+/**
+ * Flattens a node tree into a {@link RenderPlan} for one output variant. The planner mirrors what
+ * the {@link Compiler} visitor does for each node: static output becomes text, conditionals, case
+ * and loops become jumps over their flattened bodies. Nodes it does not flatten, like filters and
+ * buffered code blocks, become a {@link RenderPlan#NODE} instruction and are rendered by the
+ * visitor itself. Pretty print instructions are only emitted for pretty printing variants.
+ */
+final class RenderPlanner {
+
+  private final boolean terse;
+  private final boolean xml;
+  private final boolean prettyPrint;
+  private final RenderPlan.Builder plan = new RenderPlan.Builder();
+
+  RenderPlanner(boolean terse, boolean xml, boolean prettyPrint) {
+    this.terse = terse;
+    this.xml = xml;
+    this.prettyPrint = prettyPrint;
+  }
+
+  RenderPlan plan(Node root) {
+    node(root);
+    return plan.build();
+  }
+
+  private void node(Node node) {
+    Class<? extends Node> type = node.getClass();
+    if (type == TagNode.class && !((TagNode) node).isInterpolated()) {
+      tag((TagNode) node);
+    } else if (type == BlockNode.class && !hasBufferedCode((BlockNode) node)) {
+      block((BlockNode) node);
+    } else if ((type == TextNode.class || type == LiteralNode.class) && node.getValue() != null) {
+      plan.text(node.getValue());
+    } else if (type == DoctypeNode.class) {
+      plan.text(((DoctypeNode) node).getDoctypeLine());
+    } else if (type == CommentNode.class && node.getValue() != null) {
+      comment((CommentNode) node);
+    } else if (type == BlockCommentNode.class) {
+      blockComment((BlockCommentNode) node);
+    } else if (type == ExpressionNode.class && !isBufferedCode(node)) {
+      plan.emit(RenderPlan.EXPRESSION, plan.constant(node));
+    } else if (type == ConditionalNode.class && hasBlocks((ConditionalNode) node)) {
+      conditional((ConditionalNode) node);
+    } else if (type == CaseNode.class && node.hasBlock()) {
+      caseNode((CaseNode) node);
+    } else if (type == WhileNode.class && node.hasBlock()) {
+      whileNode((WhileNode) node);
+    } else if (type == EachNode.class && node.hasBlock()) {
+      each((EachNode) node);
+    } else if (type == MixinNode.class && !((MixinNode) node).isCall()) {
+      plan.emit(RenderPlan.DEFINE_MIXIN, plan.constant(node));
+    } else if (type == MixinNode.class || type == CallNode.class) {
+      plan.emit(RenderPlan.CALL_MIXIN, plan.constant(node));
+    } else if (type != IncludeFilterNode.class) {
+      plan.emit(RenderPlan.NODE, plan.constant(node));
+    }
+  }
+
+  private void tag(TagNode node) {
+    prettyPrint(RenderPlan.INCREMENT);
+    if (node.isWhitespaceSensitive()) {
+      prettyPrint(RenderPlan.ESCAPE, 1);
+    }
+    if (!node.isInline()) {
+      prettyPrint(RenderPlan.PRETTY_INDENT, 0, 1);
+    }
+
+    String name = node.getName();
+    if (node.isSelfClosing() || (!xml && node.isSelfClosingTag())) {
+      boolean selfClosing = !(terse && !node.isSelfClosing());
+      openTag(node, "<" + name, selfClosing ? "/>" : ">");
+    } else {
+      openTag(node, "<" + name, ">");
+      if (node.hasBlock()) {
+        node(node.getBlock());
+      }
+      if (!node.isInline() && !node.isWhitespaceSensitive() && !node.canInline()) {
+        prettyPrint(RenderPlan.PRETTY_INDENT, 0, 1);
+      }
+      plan.text("</" + name + ">");
+    }
+
+    if (node.isWhitespaceSensitive()) {
+      prettyPrint(RenderPlan.ESCAPE, 0);
+    }
+    prettyPrint(RenderPlan.DECREMENT);
+  }
+
+  private void openTag(TagNode node, String prefix, String suffix) {
+    if (StaticFragment.hasStaticAttributes(node)) {
+      plan.text(prefix + AttributesCompiler.staticAttributes(node, terse) + suffix);
+    } else {
+      plan.emit(
+          RenderPlan.OPEN_TAG, plan.constant(node), plan.constant(prefix), plan.constant(suffix));
+    }
+  }
+
+  private void block(BlockNode node) {
+    final Node[] childNodes = node.getNodes().toArray(new Node[0]);
+    if (childNodes.length > 1
+        && node.isTextNode(childNodes[0])
+        && node.isTextNode(childNodes[1])) {
+      prettyPrint(RenderPlan.PRETTY_INDENT_UNLESS_ESCAPED, 1, 1);
+    }
+    for (int i = 0; i < childNodes.length; ++i) {
+      Node childNode = childNodes[i];
+      if (i > 0 && node.isTextNode(childNode)) {
+        Node previous = childNodes[i - 1];
+        if (node.isTextNode(previous)
+            && previous.getValue() != null
+            && previous.getValue().contains("\n")) {
+          prettyPrint(RenderPlan.PRETTY_INDENT_UNLESS_ESCAPED, 1, 0);
+        } else if (previous instanceof FilterNode) {
+          prettyPrint(RenderPlan.PRETTY_INDENT_AFTER_FILTER, 1);
+        }
+      }
+      node(childNode);
+    }
+  }
+
+  private void conditional(ConditionalNode node) {
+    int conditional = plan.constant(node);
+    int end = plan.label();
+    for (IfConditionNode condition : node.getConditions()) {
+      if (condition.isDefault()) {
+        body(condition.getBlock());
+        plan.emit(RenderPlan.JUMP, end);
+      } else {
+        int next = plan.label();
+        plan.emit(RenderPlan.UNLESS_CONDITION, conditional, plan.constant(condition), next);
+        body(condition.getBlock());
+        plan.emit(RenderPlan.JUMP, end);
+        plan.mark(next);
+      }
+    }
+    plan.mark(end);
+  }
+
+  private void caseNode(CaseNode node) {
+    int caseNode = plan.constant(node);
+    int end = plan.label();
+    // A when without block falls through to the body of the next when that has one.
+    int fallThrough = -1;
+    for (Node when : node.getBlock().getNodes()) {
+      boolean isDefault = "default".equals(when.getValue());
+      if (when.getBlock() == null) {
+        if (fallThrough < 0) {
+          fallThrough = plan.label();
+        }
+        if (isDefault) {
+          plan.emit(RenderPlan.JUMP, fallThrough);
+        } else {
+          plan.emit(RenderPlan.IF_WHEN, caseNode, plan.constant(when), fallThrough);
+        }
+        continue;
+      }
+      int next = plan.label();
+      if (!isDefault) {
+        plan.emit(RenderPlan.UNLESS_WHEN, caseNode, plan.constant(when), next);
+      }
+      if (fallThrough >= 0) {
+        plan.mark(fallThrough);
+        fallThrough = -1;
+      }
+      body(when.getBlock());
+      plan.emit(RenderPlan.JUMP, end);
+      plan.mark(next);
+    }
+    if (fallThrough >= 0) {
+      plan.mark(fallThrough);
+    }
+    plan.mark(end);
+  }
+
+  private void whileNode(WhileNode node) {
+    int loop = plan.label();
+    int end = plan.label();
+    plan.emit(RenderPlan.PUSH_SCOPE);
+    plan.mark(loop);
+    plan.emit(RenderPlan.UNLESS_WHILE, plan.constant(node), end);
+    body(node.getBlock());
+    plan.emit(RenderPlan.JUMP, loop);
+    plan.mark(end);
+    plan.emit(RenderPlan.POP_SCOPE);
+  }
+
+  private void each(EachNode node) {
+    int next = plan.label();
+    int end = plan.label();
+    int elseBlock = node.getElseNode() != null ? plan.label() : end;
+    plan.emit(RenderPlan.EACH_BEGIN, plan.constant(node), elseBlock);
+    plan.mark(next);
+    plan.emit(RenderPlan.EACH_NEXT, end);
+    body(node.getBlock());
+    plan.emit(RenderPlan.JUMP, next);
+    if (node.getElseNode() != null) {
+      plan.mark(elseBlock);
+      plan.emit(RenderPlan.EACH_ELSE, end);
+      body(node.getElseNode());
+    }
+    plan.mark(end);
+    plan.emit(RenderPlan.EACH_END);
+  }
+
+  private void body(Node block) {
+    int body = plan.beginBody();
+    node(block);
+    plan.endBody(body);
+  }
+
+  private void comment(CommentNode node) {
+    if (!node.isBuffered()) {
+      return;
+    }
+    prettyPrint(RenderPlan.PRETTY_INDENT, 1, 1);
+    plan.text("<!--" + node.getValue() + "-->");
+  }
+
+  private void blockComment(BlockCommentNode node) {
+    if (!node.isBuffered()) {
+      return;
+    }
+    prettyPrint(RenderPlan.PRETTY_INDENT, 1, 1);
+    plan.text("<!--" + node.getValue());
+    node(node.getBlock());
+    prettyPrint(RenderPlan.PRETTY_INDENT, 1, 1);
+    plan.text("-->");
+  }
+
+  private void prettyPrint(int opcode, int... operands) {
+    if (prettyPrint) {
+      plan.emit(opcode, operands);
+    }
+  }
+
+  // Unbuffered code with a block or a closing brace is concatenated with its siblings before it is
+  // evaluated; the visitor keeps that state while it walks the block, so such blocks stay with it.
+  private static boolean hasBufferedCode(BlockNode node) {
+    for (Node child : node.getNodes()) {
+      if (isBufferedCode(child)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isBufferedCode(Node node) {
+    return node instanceof ExpressionNode
+        && (node.hasBlock() || node.getValue().trim().startsWith("}"));
+  }
+
+  private static boolean hasBlocks(ConditionalNode node) {
+    for (IfConditionNode condition : node.getConditions()) {
+      if (!condition.hasBlock()) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
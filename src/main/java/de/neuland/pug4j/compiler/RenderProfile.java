@@ -0,0 +1,350 @@
+package de.neuland.pug4j.compiler;
+
+import de.neuland.pug4j.parser.node.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Wall time, invocations and allocated bytes of the renders made with a {@link
+ * de.neuland.pug4j.RenderContext} that has this profile, by template line and by expression.
+ * Profiled renders walk the node tree like {@link CompilationMode#NONE}, so every node is
+ * accounted for, whatever the compilation mode of the engine is. Renders without a profile are
+ * not instrumented at all.
+ *
+ * <p>The times of a node include the nodes and expressions it renders, its self time does not.
+ * A node that renders itself again, like a recursive mixin call, counts its time once. Allocated
+ * bytes are measured per thread and are zero if the JVM does not support it.
+ *
+ * <p>A profile can be shared by renders on several threads. Each render adds to it when it is done.
+ *
+ * @since 3.1.0
+ */
+public final class RenderProfile {
+
+  private static final Comparator<Entry> BY_TOTAL_TIME =
+      Comparator.comparingLong(Entry::getTotalNanos).reversed();
+
+  private final Map<String, Entry> nodes = new HashMap<>();
+  private final Map<String, Entry> expressions = new HashMap<>();
+  private final Map<String, Long> stacks = new LinkedHashMap<>();
+  private long renderCount;
+
+  /**
+   * Returns the profiled nodes, the most expensive first.
+   *
+   * @return the nodes by template line
+   */
+  public synchronized List<Entry> getNodes() {
+    return sorted(nodes);
+  }
+
+  /**
+   * Returns the profiled expressions, the most expensive first. Expressions of output, code,
+   * conditions and loops are profiled, expressions of attributes count towards their tag.
+   *
+   * @return the expressions by source
+   */
+  public synchronized List<Entry> getExpressions() {
+    return sorted(expressions);
+  }
+
+  /**
+   * Returns the number of renders added to this profile.
+   *
+   * @return the render count
+   */
+  public synchronized long getRenderCount() {
+    return renderCount;
+  }
+
+  /** Forgets all renders profiled so far. */
+  public synchronized void reset() {
+    nodes.clear();
+    expressions.clear();
+    stacks.clear();
+    renderCount = 0;
+  }
+
+  /**
+   * Returns the nodes and expressions as a table, the most expensive first.
+   *
+   * @return the report
+   */
+  public String toTable() {
+    StringBuilder table = new StringBuilder();
+    appendTable(table, "node", getNodes());
+    table.append('\n');
+    appendTable(table, "expression", getExpressions());
+    return table.toString();
+  }
+
+  private static void appendTable(StringBuilder table, String title, List<Entry> entries) {
+    table.append(
+        String.format(
+            Locale.ROOT,
+            "%12s %12s %10s %12s  %s%n",
+            "total ms",
+            "self ms",
+            "count",
+            "alloc KB",
+            title));
+    for (Entry entry : entries) {
+      table.append(
+          String.format(
+              Locale.ROOT,
+              "%12.3f %12.3f %10d %12.1f  %s%n",
+              entry.getTotalNanos() / 1e6,
+              entry.getSelfNanos() / 1e6,
+              entry.getCount(),
+              entry.getAllocatedBytes() / 1024.0,
+              entry));
+    }
+  }
+
+  /**
+   * Returns the self time in nanoseconds of every stack of nodes and expressions in the collapsed
+   * stack format, one stack per line with its frames separated by semicolons. Tools like {@code
+   * flamegraph.pl} turn it into a flame graph.
+   *
+   * @return the collapsed stacks
+   */
+  public synchronized String toCollapsedStacks() {
+    StringBuilder collapsed = new StringBuilder();
+    for (Map.Entry<String, Long> stack : stacks.entrySet()) {
+      collapsed.append(stack.getKey()).append(' ').append(stack.getValue()).append('\n');
+    }
+    return collapsed.toString();
+  }
+
+  private static List<Entry> sorted(Map<String, Entry> entries) {
+    List<Entry> list = new ArrayList<>(entries.values());
+    list.sort(BY_TOTAL_TIME);
+    return list;
+  }
+
+  // Adds the frames recorded by one render.
+  synchronized void add(Frame root) {
+    renderCount++;
+    add(root, null, new HashSet<>());
+  }
+
+  private void add(Frame frame, String stack, Set<String> active) {
+    if (frame.children == null) {
+      return;
+    }
+    for (Frame child : frame.children.values()) {
+      Entry entry =
+          child.node != null
+              ? new Entry(
+                  describe(child.node), child.node.getFileName(), child.node.getLineNumber())
+              : new Entry(child.expression, null, 0);
+      String key = entry.toString();
+      String childStack = stack == null ? frameName(key) : stack + ';' + frameName(key);
+      long selfNanos = child.totalNanos;
+      if (child.children != null) {
+        for (Frame grandchild : child.children.values()) {
+          selfNanos -= grandchild.totalNanos;
+        }
+      }
+      // time spent in a node that is already on the stack is part of the outer invocation
+      boolean outermost = active.add(key);
+      entry.count = child.count;
+      entry.selfNanos = selfNanos;
+      if (outermost) {
+        entry.totalNanos = child.totalNanos;
+        entry.allocatedBytes = child.allocatedBytes;
+      }
+      (child.node != null ? nodes : expressions).merge(key, entry, Entry::plus);
+      if (selfNanos > 0) {
+        stacks.merge(childStack, selfNanos, Long::sum);
+      }
+      add(child, childStack, active);
+      if (outermost) {
+        active.remove(key);
+      }
+    }
+  }
+
+  private static String frameName(String name) {
+    return name.replace(';', ',').replace('\n', ' ').replace('\r', ' ');
+  }
+
+  private static String describe(Node node) {
+    if (node instanceof TagNode) {
+      return node.getName();
+    } else if (node instanceof FilterNode) {
+      return ":" + node.getValue();
+    } else if (node instanceof CallNode) {
+      return "+" + node.getName();
+    } else if (node instanceof ExpressionNode) {
+      return ((ExpressionNode) node).isBuffer() ? "=" : "-";
+    } else if (node instanceof EachNode) {
+      return "each";
+    } else if (node instanceof WhileNode) {
+      return "while";
+    } else if (node instanceof ConditionalNode) {
+      return "if";
+    } else if (node instanceof CaseNode) {
+      return "case";
+    } else if (node instanceof CaseNode.When) {
+      return "when";
+    } else if (node instanceof MixinBlockNode) {
+      return "block";
+    } else if (node instanceof CommentNode || node instanceof BlockCommentNode) {
+      return "comment";
+    } else if (node instanceof DoctypeNode) {
+      return "doctype";
+    }
+    return "text";
+  }
+
+  /** The measurements of one template line or expression. */
+  public static final class Entry {
+    private final String name;
+    private final String fileName;
+    private final int lineNumber;
+    private long count;
+    private long totalNanos;
+    private long selfNanos;
+    private long allocatedBytes;
+
+    private Entry(String name, String fileName, int lineNumber) {
+      this.name = name;
+      this.fileName = fileName;
+      this.lineNumber = lineNumber;
+    }
+
+    private Entry plus(Entry other) {
+      Entry sum = new Entry(name, fileName, lineNumber);
+      sum.count = count + other.count;
+      sum.totalNanos = totalNanos + other.totalNanos;
+      sum.selfNanos = selfNanos + other.selfNanos;
+      sum.allocatedBytes = allocatedBytes + other.allocatedBytes;
+      return sum;
+    }
+
+    /**
+     * Returns what was profiled: the tag name, {@code +mixin}, {@code :filter}, {@code each},
+     * {@code if}, {@code =} for buffered code and so on for nodes, the source for expressions.
+     *
+     * @return the name
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Returns the file of a node.
+     *
+     * @return the file name, or null for expressions
+     */
+    public String getFileName() {
+      return fileName;
+    }
+
+    /**
+     * Returns the line of a node.
+     *
+     * @return the line number, or 0 for expressions
+     */
+    public int getLineNumber() {
+      return lineNumber;
+    }
+
+    /**
+     * Returns how often the node was rendered or the expression was evaluated.
+     *
+     * @return the invocation count
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Returns the wall time of all invocations, including nested nodes and expressions.
+     *
+     * @return the total time in nanoseconds
+     */
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    /**
+     * Returns the wall time of all invocations, excluding nested nodes and expressions.
+     *
+     * @return the self time in nanoseconds
+     */
+    public long getSelfNanos() {
+      return selfNanos;
+    }
+
+    /**
+     * Returns the bytes allocated by all invocations, including nested nodes and expressions.
+     *
+     * @return the allocated bytes
+     */
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+      return fileName == null && lineNumber == 0 ? name : fileName + ":" + lineNumber + " " + name;
+    }
+  }
+
+  /** The invocations of a node or expression at one position of the render stack. */
+  static final class Frame {
+    private final Frame parent;
+    private final Node node;
+    private final String expression;
+    private Map<Object, Frame> children;
+    private long count;
+    private long totalNanos;
+    private long allocatedBytes;
+    private long startNanos;
+    private long startBytes;
+
+    Frame() {
+      this(null, null, null);
+    }
+
+    private Frame(Frame parent, Node node, String expression) {
+      this.parent = parent;
+      this.node = node;
+      this.expression = expression;
+    }
+
+    // Nodes are looked up by identity, expressions by their source.
+    Frame enter(Object nodeOrExpression, long nanos, long bytes) {
+      if (children == null) {
+        children = new HashMap<>();
+      }
+      Frame child = children.get(nodeOrExpression);
+      if (child == null) {
+        child =
+            nodeOrExpression instanceof Node
+                ? new Frame(this, (Node) nodeOrExpression, null)
+                : new Frame(this, null, (String) nodeOrExpression);
+        children.put(nodeOrExpression, child);
+      }
+      child.count++;
+      child.startNanos = nanos;
+      child.startBytes = bytes;
+      return child;
+    }
+
+    Frame exit(long nanos, long bytes) {
+      totalNanos += nanos - startNanos;
+      allocatedBytes += bytes - startBytes;
+      return parent;
+    }
+  }
+}
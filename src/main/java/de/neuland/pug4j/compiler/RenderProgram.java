@@ -0,0 +1,7 @@
+package de.neuland.pug4j.compiler;
+
+/** A compiled render plan. Implemented by the hidden classes of {@link BytecodeGenerator}. */
+interface RenderProgram {
+
+  void render(RenderFrame frame);
+}
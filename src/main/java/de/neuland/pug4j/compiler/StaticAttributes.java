@@ -0,0 +1,33 @@
+package de.neuland.pug4j.compiler;
+
+import de.neuland.pug4j.parser.node.Attr;
+import java.util.LinkedList;
+
+/**
+ * Rendered form of the constant attributes a node starts with. Created by the {@link
+ * AttributesCompiler} on first render and kept on the {@link
+ * de.neuland.pug4j.parser.node.AttrsNode}, so later renders only evaluate the attributes that
+ * follow the constant ones.
+ *
+ * <p>Internal to the compiler and not part of the public API. It is only public because {@link
+ * de.neuland.pug4j.parser.node.AttrsNode} keeps it, and it may change in any release.
+ */
+public final class StaticAttributes {
+
+  /** Marks nodes whose attributes have to be rendered in full on every render. */
+  static final StaticAttributes NONE = new StaticAttributes(null, null, null);
+
+  private final String prefix;
+  private final String tersePrefix;
+  final LinkedList<Attr> dynamicAttributes;
+
+  StaticAttributes(String prefix, String tersePrefix, LinkedList<Attr> dynamicAttributes) {
+    this.prefix = prefix;
+    this.tersePrefix = tersePrefix;
+    this.dynamicAttributes = dynamicAttributes;
+  }
+
+  String prefix(boolean terse) {
+    return terse ? tersePrefix : prefix;
+  }
+}
@@ -0,0 +1,138 @@
+package de.neuland.pug4j.compiler;
+
+import de.neuland.pug4j.parser.node.Attr;
+import de.neuland.pug4j.parser.node.BlockCommentNode;
+import de.neuland.pug4j.parser.node.BlockNode;
+import de.neuland.pug4j.parser.node.CommentNode;
+import de.neuland.pug4j.parser.node.ConditionalNode;
+import de.neuland.pug4j.parser.node.EachNode;
+import de.neuland.pug4j.parser.node.ExpressionString;
+import de.neuland.pug4j.parser.node.IfConditionNode;
+import de.neuland.pug4j.parser.node.LiteralNode;
+import de.neuland.pug4j.parser.node.Node;
+import de.neuland.pug4j.parser.node.TagNode;
+import de.neuland.pug4j.parser.node.TextNode;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Rendered markup of a tag whose whole subtree is static: a tag with constant attributes that only
+ * contains text, comments and other such tags. The {@link Compiler} renders a static tag once per
+ * output variant and afterwards appends the cached markup with a single write. Static tags are
+ * marked by {@link #fold(Node)} when a template is created.
+ *
+ * <p>Internal to the compiler and not part of the public API. It is only public because {@link
+ * TagNode} keeps it, and it may change in any release.
+ */
+public final class StaticFragment {
+
+  // Pretty printed markup depends on the indentation and escape state the tag is rendered in, so
+  // it is cached per indentation level; tags nested deeper than this are rendered every time.
+  private static final int MAX_CACHED_INDENT = 16;
+
+  // Slots 0-3 hold the terse/xml variants without pretty print, the rest the pretty printed ones.
+  private final AtomicReferenceArray<Chunk> chunks =
+      new AtomicReferenceArray<>(4 + (MAX_CACHED_INDENT << 3));
+
+  private StaticFragment() {}
+
+  /**
+   * Marks the outermost static tags below a node, so they are rendered from cached markup. Nested
+   * static tags are part of the markup of the outermost one and are not marked themselves.
+   *
+   * @param rootNode the root node of a parsed template
+   */
+  public static void fold(Node rootNode) {
+    if (rootNode == null) {
+      return;
+    }
+    if (rootNode instanceof TagNode && isStatic(rootNode)) {
+      ((TagNode) rootNode).setStaticFragment(new StaticFragment());
+      return;
+    }
+    for (Node node : rootNode.getNodes()) {
+      fold(node);
+    }
+    fold(rootNode.getBlock());
+    if (rootNode instanceof ConditionalNode) {
+      for (IfConditionNode condition : ((ConditionalNode) rootNode).getConditions()) {
+        fold(condition);
+      }
+    } else if (rootNode instanceof EachNode) {
+      fold(((EachNode) rootNode).getElseNode());
+    }
+  }
+
+  /** Returns the cached markup for a variant, or null if it is not rendered yet or not cached. */
+  Chunk get(boolean terse, boolean xml, IndentWriter writer) {
+    int slot = slot(terse, xml, writer);
+    return slot < 0 ? null : chunks.get(slot);
+  }
+
+  void put(boolean terse, boolean xml, IndentWriter writer, Chunk chunk) {
+    int slot = slot(terse, xml, writer);
+    if (slot >= 0) {
+      chunks.compareAndSet(slot, null, chunk);
+    }
+  }
+
+  private static int slot(boolean terse, boolean xml, IndentWriter writer) {
+    int variant = (terse ? 2 : 0) | (xml ? 1 : 0);
+    if (!writer.isPp()) {
+      return variant;
+    }
+    int indent = writer.getIndent();
+    if (indent < 0 || indent >= MAX_CACHED_INDENT) {
+      return -1;
+    }
+    return 4 + ((indent << 1 | (writer.isEscape() ? 1 : 0)) << 2 | variant);
+  }
+
+  private static boolean isStatic(Node node) {
+    Class<? extends Node> type = node.getClass();
+    if (type == TagNode.class) {
+      TagNode tag = (TagNode) node;
+      return !tag.isInterpolated()
+          && hasStaticAttributes(tag)
+          && (!tag.hasBlock() || isStatic(tag.getBlock()));
+    } else if (type == BlockNode.class) {
+      for (Node child : node.getNodes()) {
+        if (!isStatic(child)) {
+          return false;
+        }
+      }
+      return true;
+    } else if (type == TextNode.class || type == LiteralNode.class || type == CommentNode.class) {
+      return node.getValue() != null;
+    } else if (type == BlockCommentNode.class) {
+      return node.hasBlock() && isStatic(node.getBlock());
+    }
+    return false;
+  }
+
+  static boolean hasStaticAttributes(TagNode node) {
+    if (!node.getAttributeBlocks().isEmpty()) {
+      return false;
+    }
+    for (Attr attribute : node.getAttributes()) {
+      if (attribute.getValue() instanceof ExpressionString) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Markup of a static tag and the writer's escape state after it. */
+  static final class Chunk {
+    final String markup;
+    final boolean escape;
+    // Encoded when the chunk is rendered, so renders to a Utf8Writer only copy bytes
+    final byte[] utf8;
+
+    Chunk(String markup, boolean escape) {
+      this.markup = markup;
+      this.escape = escape;
+      this.utf8 = markup.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+}
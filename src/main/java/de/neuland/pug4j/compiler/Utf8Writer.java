@@ -0,0 +1,173 @@
+package de.neuland.pug4j.compiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * A buffered {@link Writer} that encodes to UTF-8 bytes. Renders to a {@code Utf8Writer} write the
+ * static markup of compiled templates and of static tags as bytes that were encoded once, so only
+ * evaluated values are encoded while rendering. Runs of ASCII characters are copied without going
+ * through a {@link java.nio.charset.CharsetEncoder}.
+ *
+ * <p>Unpaired surrogates are written as {@code '?'}, like {@link String#getBytes} does. A surrogate
+ * pair may be split between writes, as by {@link #write(int)}; a high surrogate at the end of a
+ * write is kept until the next write, {@link #flush()} or {@link #close()} tells whether it is
+ * paired. The writer is not thread-safe; {@link #flush()} writes the buffered bytes to the stream.
+ *
+ * @since 3.1.0
+ */
+public final class Utf8Writer extends Writer {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final OutputStream out;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int count;
+  // high surrogate that ended the last write, 0 if none
+  private char pendingHighSurrogate;
+
+  public Utf8Writer(OutputStream out) {
+    if (out == null) {
+      throw new IllegalArgumentException("out cannot be null");
+    }
+    this.out = out;
+  }
+
+  /**
+   * Writes bytes that already are UTF-8 encoded.
+   *
+   * @param utf8 the encoded bytes
+   * @throws IOException if the stream cannot be written
+   */
+  public void writeUtf8(byte[] utf8) throws IOException {
+    writePendingHighSurrogate();
+    if (utf8.length > buffer.length - count) {
+      flushBuffer();
+      if (utf8.length > buffer.length) {
+        out.write(utf8);
+        return;
+      }
+    }
+    System.arraycopy(utf8, 0, buffer, count, utf8.length);
+    count += utf8.length;
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    write(String.valueOf((char) c), 0, 1);
+  }
+
+  @Override
+  public void write(String str) throws IOException {
+    encode(str, 0, str.length());
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    encode(str, off, off + len);
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    encode(CharBuffer.wrap(cbuf), off, off + len);
+  }
+
+  private void encode(CharSequence chars, int start, int end) throws IOException {
+    int i = start;
+    if (pendingHighSurrogate != 0 && i < end && Character.isLowSurrogate(chars.charAt(i))) {
+      if (buffer.length - count < 4) {
+        flushBuffer();
+      }
+      writeCodePoint(Character.toCodePoint(pendingHighSurrogate, chars.charAt(i)));
+      pendingHighSurrogate = 0;
+      i++;
+    } else if (i < end) {
+      writePendingHighSurrogate();
+    }
+    while (i < end) {
+      if (count == buffer.length) {
+        flushBuffer();
+      }
+      int asciiEnd = Math.min(end, i + buffer.length - count);
+      char c;
+      while (i < asciiEnd && (c = chars.charAt(i)) < 0x80) {
+        buffer[count++] = (byte) c;
+        i++;
+      }
+      if (i < asciiEnd) {
+        i = encodeNonAscii(chars, i, end);
+      }
+    }
+  }
+
+  // Encodes the character at index i, or the surrogate pair starting there, and returns the index
+  // of the next character.
+  private int encodeNonAscii(CharSequence chars, int i, int end) throws IOException {
+    if (buffer.length - count < 4) {
+      flushBuffer();
+    }
+    char c = chars.charAt(i);
+    if (c < 0x800) {
+      buffer[count++] = (byte) (0xc0 | c >> 6);
+      buffer[count++] = (byte) (0x80 | c & 0x3f);
+    } else if (!Character.isSurrogate(c)) {
+      buffer[count++] = (byte) (0xe0 | c >> 12);
+      buffer[count++] = (byte) (0x80 | c >> 6 & 0x3f);
+      buffer[count++] = (byte) (0x80 | c & 0x3f);
+    } else if (Character.isHighSurrogate(c)
+        && i + 1 < end
+        && Character.isLowSurrogate(chars.charAt(i + 1))) {
+      writeCodePoint(Character.toCodePoint(c, chars.charAt(i + 1)));
+      return i + 2;
+    } else if (Character.isHighSurrogate(c) && i + 1 == end) {
+      pendingHighSurrogate = c;
+    } else {
+      buffer[count++] = '?';
+    }
+    return i + 1;
+  }
+
+  private void writeCodePoint(int codePoint) {
+    buffer[count++] = (byte) (0xf0 | codePoint >> 18);
+    buffer[count++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+    buffer[count++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+    buffer[count++] = (byte) (0x80 | codePoint & 0x3f);
+  }
+
+  // Writes a high surrogate that was not followed by a low surrogate as '?'.
+  private void writePendingHighSurrogate() throws IOException {
+    if (pendingHighSurrogate != 0) {
+      pendingHighSurrogate = 0;
+      if (count == buffer.length) {
+        flushBuffer();
+      }
+      buffer[count++] = '?';
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    if (count > 0) {
+      out.write(buffer, 0, count);
+      count = 0;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    writePendingHighSurrogate();
+    flushBuffer();
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      writePendingHighSurrogate();
+      flushBuffer();
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -1,6 +1,10 @@
 package de.neuland.pug4j.expression;
 
+import de.neuland.pug4j.exceptions.ExpressionException;
 import de.neuland.pug4j.model.PugModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public abstract class AbstractExpressionHandler implements ExpressionHandler {
 
@@ -11,15 +15,68 @@ public abstract class AbstractExpressionHandler implements ExpressionHandler {
    * assignments propagate to the scope where the variable was defined.
    */
   protected void saveLocalVariableName(String expression, PugModel model) {
+    for (String name : localVariableNames(expression)) {
+      model.putLocalVariableName(name);
+    }
+  }
+
+  /**
+   * Returns the names {@link #saveLocalVariableName(String, PugModel)} registers for an
+   * expression, so compiled expressions can scan for declarations once.
+   */
+  protected static List<String> localVariableNames(String expression) {
     DeclarationScanner.Result declaration = DeclarationScanner.scan(expression);
     if (declaration == null) {
-      return;
+      return Collections.emptyList();
     }
+    List<String> names = new ArrayList<>();
     for (DeclarationScanner.Declarator declarator : declaration.declarators) {
-      for (String name : declarator.names) {
-        model.putLocalVariableName(name);
-      }
+      names.addAll(declarator.names);
+    }
+    return names;
+  }
+
+  /**
+   * Compiles literals and expressions that only read a variable and follow its properties, such as
+   * {@code 'text'}, {@code 42} or {@code user.name}, so they are evaluated without the expression
+   * language. Other expressions are checked and evaluated from source as by the default of {@link
+   * ExpressionHandler#compile(String)}.
+   */
+  @Override
+  public CompiledExpression compile(String expression) throws ExpressionException {
+    CompiledExpression compiled =
+        compileSimpleExpression(expression, model -> evaluateExpression(expression, model));
+    return compiled != null ? compiled : ExpressionHandler.super.compile(expression);
+  }
+
+  /**
+   * Compiles a literal or a property path recognized by {@link SimpleExpression}, reading the path
+   * with {@link #propertyAccess(int)}.
+   *
+   * @param expression the expression source
+   * @param fallback evaluates the expression when the path cannot be read without the expression
+   *     language
+   * @return the compiled expression, or null if the expression is neither a literal nor a path
+   */
+  CompiledExpression compileSimpleExpression(String expression, CompiledExpression fallback) {
+    SimpleExpression simpleExpression = SimpleExpression.parse(expression);
+    if (simpleExpression == null) {
+      return null;
     }
+    if (simpleExpression.isLiteral()) {
+      Object value = simpleExpression.getValue();
+      return model -> value;
+    }
+    return new CompiledPropertyPath(
+        simpleExpression, propertyAccess(simpleExpression.getProperties().length), fallback);
+  }
+
+  /**
+   * Returns how this handler reads a property path of the given length. The default reads map keys
+   * and negates booleans.
+   */
+  CompiledPropertyPath.PropertyAccess propertyAccess(int length) {
+    return CompiledPropertyPath.MAP_ACCESS;
   }
 
   @Override
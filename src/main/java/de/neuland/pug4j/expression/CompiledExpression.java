@@ -0,0 +1,24 @@
+package de.neuland.pug4j.expression;
+
+import de.neuland.pug4j.exceptions.ExpressionException;
+import de.neuland.pug4j.model.PugModel;
+
+/**
+ * An expression prepared once by {@link ExpressionHandler#compile(String)} and evaluated on every
+ * render. Implementations must be safe to evaluate from several threads at the same time.
+ *
+ * @since 3.1.0
+ */
+public interface CompiledExpression {
+
+  Object evaluate(PugModel model) throws ExpressionException;
+
+  default Boolean evaluateBoolean(PugModel model) throws ExpressionException {
+    return BooleanUtil.convert(evaluate(model));
+  }
+
+  default String evaluateString(PugModel model) throws ExpressionException {
+    Object result = evaluate(model);
+    return result == null ? "" : result.toString();
+  }
+}
@@ -0,0 +1,113 @@
+package de.neuland.pug4j.expression;
+
+import de.neuland.pug4j.exceptions.ExpressionException;
+import de.neuland.pug4j.model.PugModel;
+import java.util.Map;
+
+/**
+ * Evaluates a property path recognized by {@link SimpleExpression}: reads the variable from the
+ * model and follows its properties with the {@link PropertyAccess} of the handler, without running
+ * the expression language. Whenever a value is null or the access cannot read a step the way the
+ * expression language would, the expression is evaluated by the fallback, which handles undefined
+ * variables, safe navigation and errors exactly as before.
+ */
+final class CompiledPropertyPath implements CompiledExpression {
+
+  /** Returned by a {@link PropertyAccess} for a step it cannot read. */
+  static final Object UNRESOLVED = new Object();
+
+  /**
+   * Reads the steps of a property path the way an expression language does, or returns {@link
+   * #UNRESOLVED}. Accesses are used by concurrent renders.
+   */
+  interface PropertyAccess {
+
+    Object variable(PugModel model, String name);
+
+    /**
+     * Reads a property.
+     *
+     * @param object the value read so far, not null
+     * @param name the property name
+     * @param index the position of the property in the path
+     * @return the property value
+     */
+    Object property(Object object, String name, int index);
+
+    Object not(Object value);
+
+    /** Returns the result of the expression for the value the path resolved to. */
+    Object value(Object value);
+  }
+
+  /**
+   * Reads the keys of maps, including records wrapped as maps, and negates booleans; everything
+   * else is left to the expression language.
+   */
+  static final PropertyAccess MAP_ACCESS =
+      new PropertyAccess() {
+        @Override
+        public Object variable(PugModel model, String name) {
+          return model.get(name);
+        }
+
+        @Override
+        public Object property(Object object, String name, int index) {
+          if (object instanceof Map<?, ?> map && map.containsKey(name)) {
+            return map.get(name);
+          }
+          return UNRESOLVED;
+        }
+
+        @Override
+        public Object not(Object value) {
+          return value instanceof Boolean b ? !b : UNRESOLVED;
+        }
+
+        @Override
+        public Object value(Object value) {
+          return value;
+        }
+      };
+
+  private final String variable;
+  private final String[] properties;
+  private final boolean negated;
+  private final PropertyAccess access;
+  private final CompiledExpression fallback;
+
+  CompiledPropertyPath(
+      SimpleExpression expression, PropertyAccess access, CompiledExpression fallback) {
+    this.variable = expression.getVariable();
+    this.properties = expression.getProperties();
+    this.negated = expression.isNegated();
+    this.access = access;
+    this.fallback = fallback;
+  }
+
+  @Override
+  public Object evaluate(PugModel model) throws ExpressionException {
+    Object value = resolve(model);
+    if (value == UNRESOLVED) {
+      return fallback.evaluate(model);
+    }
+    return value;
+  }
+
+  private Object resolve(PugModel model) {
+    Object value = access.variable(model, variable);
+    for (int i = 0; i < properties.length; i++) {
+      if (value == null || value == UNRESOLVED) {
+        return UNRESOLVED;
+      }
+      value = access.property(value, properties[i], i);
+    }
+    if (value == UNRESOLVED) {
+      return UNRESOLVED;
+    }
+    if (negated) {
+      return value == null ? UNRESOLVED : access.not(value);
+    }
+    return access.value(value);
+  }
+}
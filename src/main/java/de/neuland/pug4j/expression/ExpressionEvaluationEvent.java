@@ -0,0 +1,39 @@
+package de.neuland.pug4j.expression;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for an expression run by the interpreter of an expression handler. Templates evaluate
+ * many expressions, so the event is disabled by default and only records evaluations that take
+ * longer than its threshold when it is enabled.
+ */
+@Name("pug4j.ExpressionEvaluation")
+@Label("Expression Evaluation")
+@Category("Pug4J")
+@Description("An expression was evaluated")
+@Enabled(false)
+@Threshold("1 ms")
+@StackTrace(false)
+final class ExpressionEvaluationEvent extends jdk.jfr.Event {
+
+  @Label("Expression")
+  String expression;
+
+  @Label("Handler")
+  String handler;
+
+  // Commits the event if it is enabled and the evaluation took longer than the threshold.
+  void commit(String expression, ExpressionHandler handler) {
+    if (shouldCommit()) {
+      this.expression = expression;
+      this.handler = handler.getClass().getName();
+      commit();
+    }
+  }
+}
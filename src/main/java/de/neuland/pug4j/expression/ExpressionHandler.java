@@ -13,6 +13,59 @@ public interface ExpressionHandler {
 
   void assertExpression(String expression) throws ExpressionException;
 
+  /**
+   * Prepares an expression for repeated evaluation. Templates compile their expressions once after
+   * parsing and evaluate the result on every render, so handlers can do all work that does not
+   * depend on the model here.
+   *
+   * <p>The default implementation checks the expression with {@link #assertExpression(String)} and
+   * evaluates it with this handler on every call.
+   *
+   * @param expression the expression source
+   * @return the compiled expression
+   * @throws ExpressionException if the expression is invalid
+   * @since 3.1.0
+   */
+  default CompiledExpression compile(String expression) throws ExpressionException {
+    assertExpression(expression);
+    ExpressionHandler handler = this;
+    return new CompiledExpression() {
+      @Override
+      public Object evaluate(PugModel model) throws ExpressionException {
+        return handler.evaluateExpression(expression, model);
+      }
+
+      @Override
+      public Boolean evaluateBoolean(PugModel model) throws ExpressionException {
+        return handler.evaluateBooleanExpression(expression, model);
+      }
+
+      @Override
+      public String evaluateString(PugModel model) throws ExpressionException {
+        return handler.evaluateStringExpression(expression, model);
+      }
+    };
+  }
+
+  /**
+   * Called by the compiler on the rendering thread before it renders a template, and paired with a
+   * call of {@link #endRender()} when the render is done, also if it failed. Renders may nest, for
+   * example when an expression renders another template. Handlers can hold resources that every
+   * evaluation of a render needs for the whole render.
+   *
+   * <p>The default implementation does nothing.
+   *
+   * @since 3.1.0
+   */
+  default void beginRender() {}
+
+  /**
+   * Called by the compiler after a render started with {@link #beginRender()}.
+   *
+   * @since 3.1.0
+   */
+  default void endRender() {}
+
   void setCache(boolean cache);
 
   void clearCache();
@@ -3,18 +3,28 @@ package de.neuland.pug4j.expression;
 import static de.neuland.pug4j.model.PugModel.PUG4J_MODEL_PREFIX;
 import static org.graalvm.polyglot.HostAccess.newBuilder;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import de.neuland.pug4j.exceptions.ExpressionException;
 import de.neuland.pug4j.model.PugModel;
 import de.neuland.pug4j.model.RecordWrapper;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAccessor;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Supplier;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.graalvm.polyglot.*;
+import org.graalvm.polyglot.proxy.Proxy;
 import org.graalvm.polyglot.proxy.ProxyObject;
 
 public class GraalJsExpressionHandler extends AbstractExpressionHandler {
@@ -44,43 +54,216 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
           .option("engine.WarnInterpreterOnly", "false")
           .allowExperimentalOptions(true)
           .build();
-  final ThreadLocal<Map<String, Value>> cacheThreadLocal =
-      ThreadLocal.withInitial(
-          new Supplier<Map<String, Value>>() {
-
-            @Override
-            public Map<String, Value> get() {
-              return new ConcurrentHashMap<String, Value>();
-            }
-          });
-  final ThreadLocal<PugModelProxy> modelProxyThreadLocal =
-      ThreadLocal.withInitial(PugModelProxy::new);
-  final ThreadLocal<Context> contextThreadLocal =
-      ThreadLocal.withInitial(
-          new Supplier<Context>() {
-
-            @Override
-            public Context get() {
-              Context context =
-                  Context.newBuilder("js")
-                      .engine(engine)
-                      .allowHostAccess(all)
-                      .allowAllAccess(true)
-                      .allowHostClassLookup(s -> true)
-                      .allowCreateThread(false)
-                      .allowCreateProcess(false)
-                      .allowPolyglotAccess(PolyglotAccess.ALL)
-                      .build();
-              context.initialize("js");
-              context.getBindings("js").putMember(MODEL_SCOPE_BINDING, modelProxyThreadLocal.get());
-              return context;
-            }
-          });
-  final ThreadLocal<ArrayDeque<Value>> resolverStack =
-      ThreadLocal.withInitial(ArrayDeque::new);
+  private static final int MAX_ENTRIES = 5000;
+  private static final Duration DEFAULT_CONTEXT_TIMEOUT = Duration.ofSeconds(30);
+  // Idle contexts, most recently used first, so a small load keeps reusing warm contexts. Checking
+  // a context out takes a permit and then an idle context, or creates one; neither locks while
+  // permits are available, so concurrent evaluations do not queue on the pool. At most
+  // contextPoolSize contexts are kept idle, surplus contexts are closed when they are returned.
+  final ConcurrentLinkedDeque<PooledContext> idleContexts = new ConcurrentLinkedDeque<>();
+  private final AtomicInteger idleCount = new AtomicInteger();
+  private final Semaphore availableContexts;
+  private final List<PooledContext> contexts = new CopyOnWriteArrayList<>();
+  // The statements expressions are evaluated as: with declarations and member chains rewritten, or
+  // with the zero-arg member calls rewritten to property access that retrying found to work. Shared
+  // by the contexts, so every context parses the statement right away.
+  private final Cache<String, String> statements =
+      Caffeine.newBuilder().maximumSize(MAX_ENTRIES).build();
+  private volatile int cacheSize = MAX_ENTRIES;
+  private final int contextPoolSize;
+  private final int maxContexts;
+  private final Duration contextTimeout;
+  // Set only while the current thread renders or evaluates, so all evaluations of a render and of
+  // the blocks an expression renders use the same context. Threads keep nothing between renders.
+  private final ThreadLocal<PooledContext> leasedContext = new ThreadLocal<>();
+  private final JsPropertyAccess jsPropertyAccess = new JsPropertyAccess();
+
+  /**
+   * Creates a handler that keeps as many idle JS contexts as the virtual thread scheduler has
+   * carrier threads, which defaults to the number of available processors. The number of contexts
+   * in use is not limited.
+   */
+  public GraalJsExpressionHandler() {
+    this(
+        Integer.getInteger(
+            "jdk.virtualThreadScheduler.parallelism", Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Creates a handler that keeps at most the given number of idle JS contexts. A render checks a
+   * context out of the pool and returns it when it is done; evaluations outside a render check one
+   * out for the evaluation. When no context is idle, a new one is created, so renders never wait
+   * for each other. Contexts returned while the pool is full are closed.
+   *
+   * @param contextPoolSize the maximum number of idle contexts, must be positive
+   * @throws IllegalArgumentException if contextPoolSize is not positive
+   * @since 3.1.0
+   */
+  public GraalJsExpressionHandler(int contextPoolSize) {
+    this(contextPoolSize, Integer.MAX_VALUE, DEFAULT_CONTEXT_TIMEOUT);
+  }
+
+  /**
+   * Creates a handler that keeps at most the given number of idle JS contexts and uses at most
+   * {@code maxContexts} contexts at a time. A render or evaluation that finds all contexts in use
+   * waits up to {@code contextTimeout} for one to be returned.
+   *
+   * @param contextPoolSize the maximum number of idle contexts, must be positive
+   * @param maxContexts the maximum number of contexts in use, at least contextPoolSize
+   * @param contextTimeout how long to wait for a context when maxContexts are in use
+   * @throws IllegalArgumentException if contextPoolSize is not positive, maxContexts is less than
+   *     contextPoolSize or contextTimeout is negative
+   * @since 3.1.0
+   */
+  public GraalJsExpressionHandler(int contextPoolSize, int maxContexts, Duration contextTimeout) {
+    if (contextPoolSize <= 0) {
+      throw new IllegalArgumentException("contextPoolSize must be positive");
+    }
+    if (maxContexts < contextPoolSize) {
+      throw new IllegalArgumentException("maxContexts must not be less than contextPoolSize");
+    }
+    if (contextTimeout == null || contextTimeout.isNegative()) {
+      throw new IllegalArgumentException("contextTimeout must not be negative");
+    }
+    this.contextPoolSize = contextPoolSize;
+    this.maxContexts = maxContexts;
+    this.contextTimeout = contextTimeout;
+    this.availableContexts = new Semaphore(maxContexts);
+  }
+
+  /**
+   * A JS context together with the state bound to it. It is used by one thread at a time, from the
+   * start of a render or evaluation until it is done.
+   */
+  static final class PooledContext {
+    final Context context;
+    final PugModelProxy modelProxy = new PugModelProxy();
+    final ArrayDeque<Value> resolverStack = new ArrayDeque<>();
+    // Parsed expressions, bound to this context; null if caching is disabled. Replaced when the
+    // cache size changes, possibly while another thread uses the context.
+    volatile Cache<String, Value> sources;
+    // Evaluations and renders on the leasing thread that use this context. The context is returned
+    // to the pool when the count drops to zero.
+    private int users;
+
+    PooledContext(Engine engine, HostAccess hostAccess, Cache<String, Value> sources) {
+      this.sources = sources;
+      context =
+          Context.newBuilder("js")
+              .engine(engine)
+              .allowHostAccess(hostAccess)
+              .allowAllAccess(true)
+              .allowHostClassLookup(s -> true)
+              .allowCreateThread(false)
+              .allowCreateProcess(false)
+              .allowPolyglotAccess(PolyglotAccess.ALL)
+              .build();
+      context.initialize("js");
+      context.getBindings("js").putMember(MODEL_SCOPE_BINDING, modelProxy);
+      context.getBindings("js").putMember(INVOKE_BINDING, context.eval("js", INVOKE_FUNCTION));
+      modelProxy.bind(context);
+    }
+  }
+
+  private PooledContext leaseContext() {
+    PooledContext pooled = leasedContext.get();
+    if (pooled == null) {
+      pooled = acquireContext();
+      leasedContext.set(pooled);
+    }
+    pooled.users++;
+    return pooled;
+  }
+
+  private void returnContext(PooledContext pooled) {
+    pooled.users--;
+    if (pooled.users == 0) {
+      leasedContext.remove();
+      releaseContext(pooled);
+    }
+  }
+
+  private PooledContext acquireContext() {
+    boolean acquired;
+    try {
+      acquired = availableContexts.tryAcquire(contextTimeout.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a JS context", e);
+    }
+    if (!acquired) {
+      throw new IllegalStateException(
+          "No JS context became available within "
+              + contextTimeout
+              + ", all "
+              + maxContexts
+              + " contexts are in use");
+    }
+    PooledContext pooled = idleContexts.pollFirst();
+    if (pooled != null) {
+      idleCount.decrementAndGet();
+      return pooled;
+    }
+    try {
+      PooledContext created = new PooledContext(engine, all, createSourceCache());
+      contexts.add(created);
+      return created;
+    } catch (RuntimeException e) {
+      availableContexts.release();
+      throw e;
+    }
+  }
+
+  private void releaseContext(PooledContext pooled) {
+    try {
+      if (idleCount.incrementAndGet() <= contextPoolSize) {
+        idleContexts.offerFirst(pooled);
+      } else {
+        idleCount.decrementAndGet();
+        contexts.remove(pooled);
+        pooled.context.close();
+      }
+    } finally {
+      availableContexts.release();
+    }
+  }
+
+  private Cache<String, Value> createSourceCache() {
+    int size = cacheSize;
+    if (size == 0) {
+      return null;
+    }
+    return Caffeine.newBuilder().maximumSize(size).recordStats().build();
+  }
+
+  /**
+   * Returns the maximum number of idle JS contexts this handler keeps.
+   *
+   * @return the context pool size
+   * @since 3.1.0
+   */
+  public int getContextPoolSize() {
+    return contextPoolSize;
+  }
+
+  /**
+   * Returns the maximum number of JS contexts this handler uses at a time.
+   *
+   * @return the maximum number of contexts, {@link Integer#MAX_VALUE} if not limited
+   * @since 3.1.0
+   */
+  public int getMaxContexts() {
+    return maxContexts;
+  }
 
   static final String MODEL_SCOPE_BINDING = PUG4J_MODEL_PREFIX + "scope";
 
+  // Zero-arg member calls in member chains go through this function, see MemberAccessRewriter
+  static final String INVOKE_BINDING = PUG4J_MODEL_PREFIX + "invoke";
+  private static final String INVOKE_FUNCTION =
+      "(function (object, name) { const member = object[name];"
+          + " return typeof member === 'function' ? Reflect.apply(member, object, []) : member; })";
+
   /**
    * Bound once per context as the {@code with}-scope for every expression. Delegates variable
    * resolution directly to the current PugModel, so reads cost one proxy call per referenced
@@ -88,9 +271,22 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
    * the whole model into the global bindings and the write-back afterwards. The model reference is
    * swapped per evaluation (and restored afterwards) because nested block rendering evaluates
    * against nested model scopes mid-execution.
+   *
+   * <p>Names that are neither in the model nor globals of the context resolve to {@code undefined}
+   * through the proxy, like pug.js resolves unknown locals, instead of raising a ReferenceError
+   * that has to be caught on every render.
    */
   static final class PugModelProxy implements ProxyObject {
     private PugModel model;
+    private Value globals;
+    private Value undefined;
+    // Whether the current evaluation read a name that is not defined
+    boolean undefinedRead;
+
+    void bind(Context context) {
+      globals = context.getBindings("js");
+      undefined = context.eval("js", "undefined");
+    }
 
     PugModel swap(PugModel newModel) {
       PugModel previous = this.model;
@@ -100,6 +296,10 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
 
     @Override
     public Object getMember(String key) {
+      if (!model.knowsKey(key)) {
+        undefinedRead = true;
+        return undefined;
+      }
       Object value = model.get(key);
       // GraalJS treats objects implementing Map specially, ignoring their ProxyObject
       // implementation, so RecordWrapper needs its pure-proxy view
@@ -111,20 +311,15 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
 
     @Override
     public Object getMemberKeys() {
-      List<String> keys = new ArrayList<>();
-      for (String key : model.keySet()) {
-        if (!PugModel.LOCAL_VARS.equals(key)) {
-          keys.add(key);
-        }
-      }
-      return keys.toArray();
+      return model.keySet().toArray();
     }
 
     @Override
     public boolean hasMember(String key) {
       // knowsKey includes declared-but-unset locals registered by saveLocalVariableName, so
-      // assignments from rewritten declarations resolve to the model instead of the JS global
-      return !PugModel.LOCAL_VARS.equals(key) && model.knowsKey(key);
+      // assignments from rewritten declarations resolve to the model instead of the JS global.
+      // Globals such as Math, JSON or functions declared by earlier expressions are left to JS.
+      return model.knowsKey(key) || globals == null || !globals.hasMember(key);
     }
 
     @Override
@@ -137,9 +332,9 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
    * Callback exposed to buffered JS code that contains a nested pug block. The generated code
    * passes a JS closure {@code function(pug4j__expr){ return eval(pug4j__expr); }} whose direct
    * eval resolves expressions in the lexical scope of the enclosing JS function. While the block
-   * renders, that resolver is the innermost entry on {@link #resolverStack}, so nested expression
-   * evaluations (e.g. {@code li= item} inside {@code forEach(function(item){...})}) see the
-   * function-local variables.
+   * renders, that resolver is the innermost entry on the resolver stack of the leased context, so
+   * nested expression evaluations (e.g. {@code li= item} inside {@code
+   * forEach(function(item){...})}) see the function-local variables.
    *
    * <p>Note: under {@code 'use strict'} reading lexical variables still works, but {@code var}
    * declarations made by nested {@code - var x = ...} lines do not persist between sibling
@@ -155,7 +350,8 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
     public void accept(Value resolver) {
       // Mutations of model variables by the outer JS code already reached the model live through
       // the with-scope proxy, so no bindings sync is needed before rendering the nested block.
-      ArrayDeque<Value> stack = resolverStack.get();
+      // Block callbacks run inside an evaluation, so the current thread holds a context.
+      ArrayDeque<Value> stack = leasedContext.get().resolverStack;
       stack.push(resolver);
       try {
         blockRenderer.run();
@@ -165,6 +361,67 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
     }
   }
 
+  @Override
+  CompiledPropertyPath.PropertyAccess propertyAccess(int length) {
+    return jsPropertyAccess;
+  }
+
+  /**
+   * Reads property paths like JS reads them through {@link PugModelProxy}, for the values JS passes
+   * through unchanged. Names that are not in the model may be JS globals, numbers other than
+   * integers, dates, arrays and records are converted on their way through JS, and other Java
+   * objects expose their methods, so all of them are left to JS.
+   */
+  private final class JsPropertyAccess implements CompiledPropertyPath.PropertyAccess {
+    @Override
+    public Object variable(PugModel model, String name) {
+      // Inside a JS function, local variables of the function shadow the model
+      PooledContext pooled = leasedContext.get();
+      if (pooled != null && !pooled.resolverStack.isEmpty()) {
+        return CompiledPropertyPath.UNRESOLVED;
+      }
+      return model.knowsKey(name) ? model.get(name) : CompiledPropertyPath.UNRESOLVED;
+    }
+
+    @Override
+    public Object property(Object object, String name, int index) {
+      // Keys of Java maps shadow their methods; maps created by JS belong to their context
+      if (object instanceof Map<?, ?> map
+          && (object instanceof RecordWrapper || object.getClass().getName().startsWith("java."))
+          && map.containsKey(name)) {
+        return map.get(name);
+      }
+      return CompiledPropertyPath.UNRESOLVED;
+    }
+
+    @Override
+    public Object not(Object value) {
+      return value instanceof Boolean b ? !b : CompiledPropertyPath.UNRESOLVED;
+    }
+
+    @Override
+    public Object value(Object value) {
+      if (value == null
+          || value instanceof String
+          || value instanceof Boolean
+          || value instanceof Integer) {
+        return value;
+      }
+      if (value instanceof Number
+          || value instanceof Character
+          || value instanceof Date
+          || value instanceof TemporalAccessor
+          || value instanceof ZoneId
+          || value instanceof Proxy
+          || value instanceof Value
+          || value.getClass().isArray()
+          || value.getClass().getName().startsWith("com.oracle.truffle.")) {
+        return CompiledPropertyPath.UNRESOLVED;
+      }
+      return value;
+    }
+  }
+
   @Override
   public Object createBlockCallback(Runnable blockRenderer, PugModel model) {
     return new NestedBlockCallback(blockRenderer);
@@ -183,29 +440,43 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
 
   @Override
   public Object evaluateExpression(String expression, PugModel model) throws ExpressionException {
-    Context context = contextThreadLocal.get();
-    Map<String, Value> cache = cacheThreadLocal.get();
-    PugModelProxy modelProxy = modelProxyThreadLocal.get();
-    context.enter();
+    ExpressionEvaluationEvent event = new ExpressionEvaluationEvent();
+    event.begin();
+    PooledContext pooled = leaseContext();
+    Context context = pooled.context;
+    Cache<String, Value> cache = pooled.sources;
+    PugModelProxy modelProxy = pooled.modelProxy;
+    try {
+      context.enter();
+    } catch (RuntimeException e) {
+      returnContext(pooled);
+      throw e;
+    }
     PugModel previousModel = modelProxy.swap(model);
+    boolean previousUndefinedRead = modelProxy.undefinedRead;
+    modelProxy.undefinedRead = false;
     try {
       saveLocalVariableName(expression, model);
 
       Value eval;
-      ArrayDeque<Value> stack = resolverStack.get();
+      ArrayDeque<Value> stack = pooled.resolverStack;
       boolean nested = !stack.isEmpty();
       if (nested) {
         // Evaluate via direct eval in the lexical scope of the enclosing JS function, so
         // function-local variables resolve. The enclosing buffered code already runs inside the
         // model with-scope, so the eval'd string sees model variables through the scope chain.
         // Eval'd strings cannot be pre-parsed against a scope, so the source cache is bypassed.
-        eval = stack.peek().execute(rewriteLeadingDeclaration(expression));
+        eval = stack.peek().execute(statement(expression, context));
       } else {
-        Value parsed = cache.get(expression);
+        Value parsed = cache != null ? cache.getIfPresent(expression) : null;
         if (parsed == null) {
-          Source js = Source.create("js", wrapInModelScope(rewriteLeadingDeclaration(expression)));
+          // Contexts share the engine, which reuses the code parsed for an equal source in
+          // another context
+          Source js = Source.create("js", wrapInModelScope(statement(expression, context)));
           parsed = context.parse(js);
-          cache.put(expression, parsed);
+          if (cache != null) {
+            cache.put(expression, parsed);
+          }
         }
         eval = parsed.execute();
       }
@@ -219,13 +490,19 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
       }
       String msg = ex.getMessage();
       if (msg != null) {
-        if (msg.startsWith("ReferenceError:")) {
+        // Reading an undefined variable yields null for the whole expression, as it did when
+        // undefined variables raised a ReferenceError, also if the expression then fails on the
+        // undefined value (e.g. a call of an undefined function). Member chains on undefined
+        // variables do not fail, see statement().
+        if (msg.startsWith("ReferenceError:")
+            || (msg.startsWith("TypeError:") && modelProxy.undefinedRead)) {
           return null;
         }
         // Record components are exposed as properties, so method-call syntax like person.name()
-        // fails with a TypeError. Retry with the offending zero-arg member calls rewritten to
-        // property access.
-        if (resolverStack.get().isEmpty() && isNotInvocable(msg)) {
+        // fails with a TypeError where the statement does not call it through the invoke function
+        // (e.g. on the result of a call with arguments). Retry with the offending zero-arg member
+        // calls rewritten to property access.
+        if (pooled.resolverStack.isEmpty() && isNotInvocable(msg)) {
           Object result = retryWithPropertyAccessRewrite(expression, context, cache);
           if (result != RETRY_FAILED) {
             return result;
@@ -235,10 +512,28 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
       throw new ExpressionException(expression, ex);
     } finally {
       modelProxy.swap(previousModel);
+      modelProxy.undefinedRead = previousUndefinedRead;
       context.leave();
+      returnContext(pooled);
+      event.commit(expression, this);
     }
   }
 
+  /**
+   * Checks a context out for the render, so all expressions of the render run in the same context.
+   * Functions and objects that one expression creates belong to the context it ran in, so later
+   * expressions of the render can only use them there.
+   */
+  @Override
+  public void beginRender() {
+    leaseContext();
+  }
+
+  @Override
+  public void endRender() {
+    returnContext(leasedContext.get());
+  }
+
   /**
    * Wraps an expression in the model with-scope, so identifier resolution goes through {@link
    * PugModelProxy}. The trailing newline guards against expressions ending in a line comment. The
@@ -247,19 +542,42 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
    * declaring {@code 'use strict'} at program level are not supported (function-level strict mode
    * is fine).
    */
-  private static String wrapInModelScope(String expression) {
+  static String wrapInModelScope(String expression) {
     return "with(" + MODEL_SCOPE_BINDING + "){ " + expression + "\n}";
   }
 
+  /**
+   * Returns the statement an expression is evaluated as: its leading declaration rewritten to an
+   * assignment and its member chains rewritten by {@link MemberAccessRewriter}, so that chains on
+   * undefined variables and accessor calls on records resolve without throwing. If the rewritten
+   * chains do not parse, only the declaration is rewritten.
+   */
+  String statement(String expression, Context context) {
+    String statement = statements.getIfPresent(expression);
+    if (statement == null) {
+      String declaration = rewriteLeadingDeclaration(expression);
+      statement = MemberAccessRewriter.rewrite(declaration, INVOKE_BINDING);
+      if (!statement.equals(declaration)) {
+        try {
+          context.parse(Source.create("js", wrapInModelScope(statement)));
+        } catch (PolyglotException e) {
+          statement = declaration;
+        }
+      }
+      statements.put(expression, statement);
+    }
+    return statement;
+  }
+
   /**
    * Rewrites a leading var/let/const declaration into a plain assignment. The assignment then
    * resolves through the model with-scope (saveLocalVariableName registers the name in the model
-   * first), so declared values land in the PugModel instead of the persistent thread-local
-   * context, which would otherwise accumulate global lexical bindings (re-evaluating a cached
-   * {@code let x = ...} Source would throw "has already been declared" on the next render;
-   * {@code const} bindings additionally are neither removable nor writable). Tradeoff: {@code
-   * const} reassignment no longer errors. Non-declarations are returned unchanged, except for the
-   * object-literal paren wrap.
+   * first), so declared values land in the PugModel instead of the persistent pooled context, which
+   * would otherwise accumulate global lexical bindings (re-evaluating a cached {@code let x = ...}
+   * Source would throw "has already been declared" on the next render; {@code const} bindings
+   * additionally are neither removable nor writable). Tradeoff: {@code const} reassignment no
+   * longer errors. Non-declarations are returned unchanged, except for the object-literal paren
+   * wrap.
    */
   static String rewriteLeadingDeclaration(String expression) {
     DeclarationScanner.Result declaration = DeclarationScanner.scan(expression);
@@ -305,12 +623,13 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
    * at the first member that is not callable, so rewriting left to right converges on the working
    * variant without touching real method calls further right (e.g. {@code
    * person.name().toUpperCase()} only needs the first rewrite). On success the parsed rewrite is
-   * cached under the original expression, so subsequent renders skip the failing evaluation
-   * entirely.
+   * cached under the original expression, and the rewrite is remembered for all contexts, so
+   * subsequent renders skip the failing evaluation entirely, also in other contexts of the pool and
+   * after the parsed expression was evicted.
    */
   private Object retryWithPropertyAccessRewrite(
-      String expression, Context context, Map<String, Value> cache) {
-    String rewritten = rewriteLeadingDeclaration(expression);
+      String expression, Context context, Cache<String, Value> cache) {
+    String rewritten = statement(expression, context);
     Matcher matcher = EMPTY_MEMBER_CALL.matcher(rewritten);
     while (matcher.find()) {
       rewritten =
@@ -321,7 +640,10 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
       try {
         Value parsed = context.parse(Source.create("js", wrapInModelScope(rewritten)));
         Value eval = parsed.execute();
-        cache.put(expression, parsed);
+        if (cache != null) {
+          cache.put(expression, parsed);
+        }
+        statements.put(expression, rewritten);
         return eval.as(Object.class);
       } catch (PolyglotException retryEx) {
         if (retryEx.isHostException() && retryEx.asHostException() instanceof RuntimeException re) {
@@ -346,7 +668,7 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
 
   @Override
   public void assertExpression(String expression) throws ExpressionException {
-    Context context = contextThreadLocal.get();
+    PooledContext pooled = leaseContext();
     Source js;
     if (expression.startsWith("{")) {
       js = Source.create("js", "(" + expression + ")");
@@ -354,21 +676,92 @@ public class GraalJsExpressionHandler extends AbstractExpressionHandler {
       js = Source.create("js", expression);
     }
     try {
-      Value parse = context.eval(js);
+      pooled.context.parse(js);
     } catch (PolyglotException e) {
       if (e.getMessage().startsWith("SyntaxError:")) {
         throw new ExpressionException(e.getMessage());
       }
+    } finally {
+      returnContext(pooled);
     }
   }
 
   @Override
-  public void setCache(boolean cache) {}
+  public void setCache(boolean cache) {
+    setCacheSize(cache ? MAX_ENTRIES : 0);
+  }
+
+  /**
+   * Sets the number of parsed expressions kept per JS context. A cache size of 0 disables caching.
+   * The cached expressions are dropped.
+   *
+   * @param cacheSize the cache size (0 to disable, positive value to enable with specific size)
+   * @throws IllegalArgumentException if cacheSize is negative
+   * @since 3.1.0
+   */
+  public void setCacheSize(int cacheSize) {
+    if (cacheSize < 0) {
+      throw new IllegalArgumentException("cacheSize must be non-negative");
+    }
+    this.cacheSize = cacheSize;
+    for (PooledContext pooled : contexts) {
+      pooled.sources = createSourceCache();
+    }
+  }
+
+  /**
+   * Gets the number of parsed expressions kept per JS context.
+   *
+   * @return the cache size
+   * @since 3.1.0
+   */
+  public int getCacheSize() {
+    return cacheSize;
+  }
 
   @Override
-  public void clearCache() {}
+  public void clearCache() {
+    statements.invalidateAll();
+    for (PooledContext pooled : contexts) {
+      Cache<String, Value> sources = pooled.sources;
+      if (sources != null) {
+        sources.invalidateAll();
+      }
+    }
+  }
 
+  /**
+   * Returns the hit and miss statistics of the parsed expression caches of all JS contexts. The
+   * statistics start over when the cache size changes.
+   *
+   * @return the combined statistics
+   * @since 3.1.0
+   */
+  public CacheStats getCacheStats() {
+    CacheStats stats = CacheStats.empty();
+    for (PooledContext pooled : contexts) {
+      Cache<String, Value> sources = pooled.sources;
+      if (sources != null) {
+        stats = stats.plus(sources.stats());
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Returns the context of the evaluation running on the current thread, or else a context of the
+   * pool.
+   *
+   * @deprecated Contexts are pooled and shared between threads, so a context obtained outside an
+   *     evaluation may be in use by another thread at the same time.
+   */
+  @Deprecated
   public Context getContext() {
-    return contextThreadLocal.get();
+    PooledContext pooled = leasedContext.get();
+    if (pooled == null) {
+      pooled = acquireContext();
+      releaseContext(pooled);
+    }
+    return pooled.context;
   }
 }
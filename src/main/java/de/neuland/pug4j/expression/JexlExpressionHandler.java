@@ -5,9 +5,11 @@ import de.neuland.pug4j.jexl3.PugJexlArithmetic;
 import de.neuland.pug4j.jexl3.PugJexlBuilder;
 import de.neuland.pug4j.jexl3.RecordWrapperUberspect;
 import de.neuland.pug4j.model.PugModel;
+import java.util.List;
 import java.util.Map;
 import org.apache.commons.jexl3.*;
 import org.apache.commons.jexl3.introspection.JexlPermissions;
+import org.apache.commons.jexl3.introspection.JexlPropertyGet;
 import org.apache.commons.jexl3.introspection.JexlUberspect;
 import org.apache.commons.logging.LogFactory;
 
@@ -92,14 +94,139 @@ public class JexlExpressionHandler extends AbstractExpressionHandler {
   }
 
   public Object evaluateExpression(String expression, PugModel model) throws ExpressionException {
+    saveLocalVariableName(expression, model);
+    return evaluateExpression(removeVar(expression), null, model);
+  }
+
+  /**
+   * Runs a script, parsing it first if it is not given. Compiled expressions run here too: JEXL
+   * names the Java method that runs a script in its error messages, so errors read the same
+   * whether an expression was compiled or not.
+   */
+  private Object evaluateExpression(String expression, JexlScript script, PugModel model)
+      throws ExpressionException {
+    ExpressionEvaluationEvent event = new ExpressionEvaluationEvent();
+    event.begin();
     try {
-      saveLocalVariableName(expression, model);
-      expression = removeVar(expression);
-      JexlScript e = jexl.createScript(expression);
-      MapContext jexlContext = new MapContext(model);
-      return e.execute(jexlContext);
+      if (script == null) {
+        script = jexl.createScript(expression);
+      }
+      return script.execute(new MapContext(model));
     } catch (JexlException e) {
       throw new ExpressionException(expression, e);
+    } finally {
+      event.commit(expression, this);
+    }
+  }
+
+  /**
+   * Scans the expression for declarations, rewrites them and parses the script once, so that
+   * evaluating the result only registers the declared names and executes the script. Literals and
+   * property paths are read with the property executors of JEXL, without running the script.
+   */
+  @Override
+  public CompiledExpression compile(String expression) throws ExpressionException {
+    List<String> localVariableNames = localVariableNames(expression);
+    String script = removeVar(expression);
+    CompiledScript compiledScript;
+    try {
+      compiledScript =
+          new CompiledScript(this, script, jexl.createScript(script), localVariableNames);
+    } catch (JexlException e) {
+      throw new ExpressionException(script, e);
+    }
+    CompiledExpression simpleExpression = compileSimpleExpression(expression, compiledScript);
+    return simpleExpression != null ? simpleExpression : compiledScript;
+  }
+
+  @Override
+  CompiledPropertyPath.PropertyAccess propertyAccess(int length) {
+    return new UberspectPropertyAccess(pugUberspect, pugJexlArithmetic, length);
+  }
+
+  /**
+   * Reads properties with the property executors JEXL itself would use, without creating a
+   * context or running the interpreter.
+   */
+  private static final class UberspectPropertyAccess
+      implements CompiledPropertyPath.PropertyAccess {
+    private final JexlUberspect uberspect;
+    private final JexlArithmetic arithmetic;
+    // Executors are immutable and check the class they were resolved for, so a racing evaluation
+    // at worst resolves one again.
+    private final JexlPropertyGet[] executors;
+
+    UberspectPropertyAccess(JexlUberspect uberspect, JexlArithmetic arithmetic, int length) {
+      this.uberspect = uberspect;
+      this.arithmetic = arithmetic;
+      this.executors = new JexlPropertyGet[length];
+    }
+
+    @Override
+    public Object variable(PugModel model, String name) {
+      return model.get(name);
+    }
+
+    @Override
+    public Object property(Object object, String name, int index) {
+      JexlPropertyGet executor = executors[index];
+      if (executor != null) {
+        Object value = executor.tryInvoke(object, name);
+        if (!executor.tryFailed(value)) {
+          return value;
+        }
+      }
+      executor =
+          uberspect.getPropertyGet(
+              uberspect.getResolvers(JexlOperator.PROPERTY_GET, object), object, name);
+      if (executor == null) {
+        return CompiledPropertyPath.UNRESOLVED;
+      }
+      try {
+        Object value = executor.invoke(object);
+        if (executor.isCacheable()) {
+          executors[index] = executor;
+        }
+        return value;
+      } catch (Exception e) {
+        return CompiledPropertyPath.UNRESOLVED;
+      }
+    }
+
+    @Override
+    public Object not(Object value) {
+      return arithmetic.not(value);
+    }
+
+    @Override
+    public Object value(Object value) {
+      return value;
+    }
+  }
+
+  private static final class CompiledScript implements CompiledExpression {
+    private final JexlExpressionHandler handler;
+    private final String expression;
+    private final JexlScript script;
+    private final List<String> localVariableNames;
+
+    CompiledScript(
+        JexlExpressionHandler handler,
+        String expression,
+        JexlScript script,
+        List<String> localVariableNames) {
+      this.handler = handler;
+      this.expression = expression;
+      this.script = script;
+      this.localVariableNames = localVariableNames;
+    }
+
+    @Override
+    public Object evaluate(PugModel model) throws ExpressionException {
+      for (String name : localVariableNames) {
+        model.putLocalVariableName(name);
+      }
+      return handler.evaluateExpression(expression, script, model);
     }
   }
 
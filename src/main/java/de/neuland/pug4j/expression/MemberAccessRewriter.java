@@ -0,0 +1,365 @@
+package de.neuland.pug4j.expression;
+
+import java.util.Set;
+
+/**
+ * Rewrites the member chains of a JS expression, so that they resolve without throwing, without
+ * parsing JavaScript. A chain on a variable ({@code user.avatar.url}, {@code items[0]}) reads the
+ * variable with optional chaining ({@code user?.avatar.url}), so an undefined or null variable
+ * yields {@code undefined} instead of a TypeError, like a variable that is not set yields {@code
+ * undefined}. Zero-arg member calls in a chain ({@code person.name()}) go through the given invoke
+ * function, which calls the member if it is callable and returns its value otherwise, so record
+ * components, which are exposed as properties, also work with method call syntax.
+ *
+ * <p>Strings, template literals (except their substitutions), comments and regular expression
+ * literals are left alone. Chains that are assigned to or tagged, chains after {@code new} and
+ * chains on keywords are not rewritten, and chains that already use optional chaining keep their
+ * zero-arg calls. The result can still be invalid for syntax the rewriter does not know, so the
+ * caller checks that it parses and uses the expression unchanged otherwise.
+ */
+final class MemberAccessRewriter {
+
+  private static final Set<String> KEYWORDS =
+      Set.of(
+          "await", "break", "case", "catch", "class", "const", "continue", "debugger", "default",
+          "delete", "do", "else", "export", "extends", "false", "finally", "for", "function", "if",
+          "import", "in", "instanceof", "let", "new", "null", "of", "return", "static", "super",
+          "switch", "this", "throw", "true", "try", "typeof", "var", "void", "while", "with",
+          "yield");
+
+  // Keywords after which a slash starts a regular expression literal instead of a division
+  private static final Set<String> REGEX_KEYWORDS =
+      Set.of(
+          "await", "case", "delete", "do", "else", "in", "instanceof", "new", "of", "return",
+          "throw", "typeof", "void", "yield");
+
+  private static final String REGEX_PRECEDING_CHARACTERS = "(,=:[!&|?{};+-*%<>~^";
+
+  private final String source;
+  private final String invokeFunction;
+
+  private MemberAccessRewriter(String source, String invokeFunction) {
+    this.source = source;
+    this.invokeFunction = invokeFunction;
+  }
+
+  /**
+   * Rewrites the member chains of an expression.
+   *
+   * @param expression the JS expression
+   * @param invokeFunction the name of a global function that takes an object and a member name,
+   *     and calls the member without arguments if it is callable or returns its value otherwise
+   * @return the rewritten expression, or the expression itself if it has no chain to rewrite
+   */
+  static String rewrite(String expression, String invokeFunction) {
+    return new MemberAccessRewriter(expression, invokeFunction).rewrite(0, expression.length());
+  }
+
+  private String rewrite(int from, int to) {
+    StringBuilder out = new StringBuilder(to - from + 16);
+    int i = from;
+    // Last character that is not whitespace, and the word it ends, to tell regular expression
+    // literals from divisions and to skip constructor calls
+    char previous = 0;
+    String previousWord = null;
+    while (i < to) {
+      char c = source.charAt(i);
+      char next = i + 1 < to ? source.charAt(i + 1) : 0;
+      int end;
+      if (c == '\'' || c == '"') {
+        end = skipString(i, to);
+        out.append(source, i, end);
+      } else if (c == '`') {
+        end = appendTemplate(i, to, out);
+      } else if (c == '/' && next == '/') {
+        end = source.indexOf('\n', i);
+        end = end < 0 || end > to ? to : end;
+        out.append(source, i, end);
+        i = end;
+        continue;
+      } else if (c == '/' && next == '*') {
+        end = source.indexOf("*/", i + 2);
+        end = end < 0 || end + 2 > to ? to : end + 2;
+        out.append(source, i, end);
+        i = end;
+        continue;
+      } else if (c == '/' && startsRegex(previous, previousWord)) {
+        end = skipRegex(i, to);
+        out.append(source, i, end);
+      } else if (Character.isDigit(c) || (c == '.' && Character.isDigit(next))) {
+        end = i + 1;
+        while (end < to
+            && (Character.isJavaIdentifierPart(source.charAt(end)) || source.charAt(end) == '.')) {
+          end++;
+        }
+        out.append(source, i, end);
+      } else if (Character.isJavaIdentifierStart(c)) {
+        end = i + 1;
+        while (end < to && Character.isJavaIdentifierPart(source.charAt(end))) {
+          end++;
+        }
+        String word = source.substring(i, end);
+        if (isVariable(i, word, previousWord)) {
+          int chainEnd = appendChain(word, end, to, out);
+          if (chainEnd >= 0) {
+            i = chainEnd;
+            previous = source.charAt(chainEnd - 1);
+            previousWord = null;
+            continue;
+          }
+        }
+        out.append(word);
+        i = end;
+        previous = source.charAt(end - 1);
+        previousWord = word;
+        continue;
+      } else {
+        out.append(c);
+        i++;
+        if (!Character.isWhitespace(c)) {
+          previous = c;
+          previousWord = null;
+        }
+        continue;
+      }
+      i = end;
+      previous = source.charAt(end - 1);
+      previousWord = null;
+    }
+    return out.toString();
+  }
+
+  /**
+   * Appends the member chain that follows a variable, rewritten, and returns its end, or returns
+   * -1 if nothing follows the variable that can be rewritten.
+   */
+  private int appendChain(String variable, int start, int to, StringBuilder out) {
+    // The chain with the variable read by optional chaining, and the chain with its zero-arg calls
+    // going through the invoke function
+    StringBuilder chain = new StringBuilder();
+    String receiver = variable;
+    boolean optional = false;
+    boolean invokes = false;
+    int j = start;
+    while (j < to) {
+      boolean optionalAccess = source.startsWith("?.", j);
+      int k = optionalAccess ? j + 2 : j;
+      if (k >= to) {
+        break;
+      }
+      char c = source.charAt(k);
+      int nameStart = -1;
+      if (optionalAccess && Character.isJavaIdentifierStart(c)) {
+        nameStart = k;
+      } else if (!optionalAccess
+          && c == '.'
+          && k + 1 < to
+          && Character.isJavaIdentifierStart(source.charAt(k + 1))) {
+        nameStart = k + 1;
+      }
+      if (nameStart >= 0) {
+        String access = optionalAccess ? "?." : ".";
+        int nameEnd = nameStart + 1;
+        while (nameEnd < to && Character.isJavaIdentifierPart(source.charAt(nameEnd))) {
+          nameEnd++;
+        }
+        String name = source.substring(nameStart, nameEnd);
+        if (nameEnd + 2 <= to && source.startsWith("()", nameEnd)) {
+          chain.append(access).append(name).append("()");
+          receiver = invokeFunction + "(" + receiver + ", \"" + name + "\")";
+          invokes = true;
+          j = nameEnd + 2;
+        } else {
+          chain.append(access).append(name);
+          receiver = receiver + access + name;
+          j = nameEnd;
+        }
+      } else if (c == '[' || (c == '(' && chain.length() > 0)) {
+        int close = findClosing(k, to);
+        if (close < 0) {
+          return -1;
+        }
+        String access =
+            (optionalAccess ? "?." : "") + c + rewrite(k + 1, close) + source.charAt(close);
+        chain.append(access);
+        receiver = receiver + access;
+        j = close + 1;
+      } else {
+        break;
+      }
+      optional |= optionalAccess;
+    }
+    if (chain.length() == 0
+        || isAssignedOrTagged(j, to)
+        || isPrefixUpdated(start - variable.length() - 1)) {
+      return -1;
+    }
+    if (invokes && !optional) {
+      out.append('(').append(variable).append(" == null ? undefined : ").append(receiver);
+      out.append(')');
+    } else if (chain.charAt(0) == '?') {
+      out.append(variable).append(chain);
+    } else if (chain.charAt(0) == '.') {
+      out.append(variable).append('?').append(chain);
+    } else {
+      out.append(variable).append("?.").append(chain);
+    }
+    return j;
+  }
+
+  /** Returns whether a word starts a member chain, so it is neither a keyword nor a property. */
+  private boolean isVariable(int start, String word, String previousWord) {
+    if (KEYWORDS.contains(word) || "new".equals(previousWord)) {
+      return false;
+    }
+    int i = start - 1;
+    while (i >= 0 && Character.isWhitespace(source.charAt(i))) {
+      i--;
+    }
+    if (i < 0) {
+      return true;
+    }
+    char before = source.charAt(i);
+    if (before == '#') {
+      return false;
+    }
+    // A property, but not a spread argument
+    return before != '.' || (i >= 2 && source.startsWith("...", i - 2));
+  }
+
+  private boolean isAssignedOrTagged(int end, int to) {
+    int i = end;
+    while (i < to && Character.isWhitespace(source.charAt(i))) {
+      i++;
+    }
+    if (i >= to) {
+      return false;
+    }
+    char c = source.charAt(i);
+    if (c == '`' || source.startsWith("++", i) || source.startsWith("--", i)) {
+      return true;
+    }
+    int operatorEnd = i;
+    while (operatorEnd < to && "+-*/%<>&|^?".indexOf(source.charAt(operatorEnd)) >= 0) {
+      operatorEnd++;
+    }
+    return operatorEnd < to
+        && source.charAt(operatorEnd) == '='
+        && (operatorEnd + 1 >= to || "=>".indexOf(source.charAt(operatorEnd + 1)) < 0)
+        && (operatorEnd == i || !isComparison(source.substring(i, operatorEnd)));
+  }
+
+  private static boolean isComparison(String operator) {
+    return operator.equals("<") || operator.equals(">");
+  }
+
+  private boolean isPrefixUpdated(int before) {
+    int i = before;
+    while (i >= 0 && Character.isWhitespace(source.charAt(i))) {
+      i--;
+    }
+    return i >= 1 && (source.startsWith("++", i - 1) || source.startsWith("--", i - 1));
+  }
+
+  private static boolean startsRegex(char previous, String previousWord) {
+    if (previousWord != null) {
+      return REGEX_KEYWORDS.contains(previousWord);
+    }
+    return previous == 0 || REGEX_PRECEDING_CHARACTERS.indexOf(previous) >= 0;
+  }
+
+  private int skipString(int start, int to) {
+    char quote = source.charAt(start);
+    int i = start + 1;
+    while (i < to) {
+      char c = source.charAt(i);
+      if (c == '\\') {
+        i += 2;
+      } else if (c == quote) {
+        return i + 1;
+      } else {
+        i++;
+      }
+    }
+    return to;
+  }
+
+  private int skipRegex(int start, int to) {
+    int i = start + 1;
+    boolean inClass = false;
+    while (i < to) {
+      char c = source.charAt(i);
+      if (c == '\\') {
+        i += 2;
+        continue;
+      }
+      i++;
+      if (c == '[') {
+        inClass = true;
+      } else if (c == ']') {
+        inClass = false;
+      } else if (c == '/' && !inClass) {
+        break;
+      }
+    }
+    while (i < to && Character.isJavaIdentifierPart(source.charAt(i))) {
+      i++;
+    }
+    return Math.min(i, to);
+  }
+
+  /** Appends a template literal with its substitutions rewritten and returns its end. */
+  private int appendTemplate(int start, int to, StringBuilder out) {
+    out.append('`');
+    int i = start + 1;
+    while (i < to) {
+      char c = source.charAt(i);
+      if (c == '\\' && i + 1 < to) {
+        out.append(source, i, i + 2);
+        i += 2;
+      } else if (c == '`') {
+        out.append(c);
+        return i + 1;
+      } else if (c == '$' && i + 1 < to && source.charAt(i + 1) == '{') {
+        int close = findClosing(i + 1, to);
+        if (close < 0) {
+          out.append(source, i, to);
+          return to;
+        }
+        out.append("${").append(rewrite(i + 2, close)).append('}');
+        i = close + 1;
+      } else {
+        out.append(c);
+        i++;
+      }
+    }
+    return to;
+  }
+
+  /** Returns the position of the bracket that closes the one at the given position, or -1. */
+  private int findClosing(int open, int to) {
+    int depth = 0;
+    int i = open;
+    while (i < to) {
+      char c = source.charAt(i);
+      if (c == '\'' || c == '"') {
+        i = skipString(i, to);
+        continue;
+      }
+      if (c == '`') {
+        i = appendTemplate(i, to, new StringBuilder());
+        continue;
+      }
+      if (c == '(' || c == '[' || c == '{') {
+        depth++;
+      } else if (c == ')' || c == ']' || c == '}') {
+        depth--;
+        if (depth == 0) {
+          return i;
+        }
+      }
+      i++;
+    }
+    return -1;
+  }
+}
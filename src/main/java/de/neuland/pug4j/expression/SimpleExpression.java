@@ -0,0 +1,167 @@
+package de.neuland.pug4j.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The shape of an expression that only reads a variable and follows properties, optionally
+ * negated ({@code user.name}, {@code !flag}), or that is a plain literal ({@code 'text'}, {@code
+ * 42}, {@code true}, {@code null}). Such expressions are recognized once when a template is
+ * compiled, so handlers can resolve them without running their interpreter. Anything else is not
+ * recognized and evaluated by the handler as before.
+ */
+final class SimpleExpression {
+
+  // Words that are operators, literals or statements in JEXL or JavaScript
+  private static final Set<String> KEYWORDS =
+      Set.of(
+          "and", "or", "not", "eq", "ne", "lt", "gt", "le", "ge", "div", "mod", "empty", "size",
+          "new", "var", "let", "const", "if", "else", "for", "while", "do", "function", "return",
+          "break", "continue", "true", "false", "null", "undefined", "NaN", "this", "in",
+          "instanceof", "typeof", "void", "delete", "throw", "try", "catch", "finally", "switch",
+          "case", "default", "class", "import", "export", "pragma", "yield", "await", "with");
+
+  private final boolean literal;
+  private final Object value;
+  private final String variable;
+  private final String[] properties;
+  private final boolean negated;
+
+  private SimpleExpression(
+      boolean literal, Object value, String variable, String[] properties, boolean negated) {
+    this.literal = literal;
+    this.value = value;
+    this.variable = variable;
+    this.properties = properties;
+    this.negated = negated;
+  }
+
+  /**
+   * Recognizes a simple expression.
+   *
+   * @param expression the expression source
+   * @return the recognized expression, or null if the expression is not simple
+   */
+  static SimpleExpression parse(String expression) {
+    String source = expression.strip();
+    if (source.isEmpty()) {
+      return null;
+    }
+    char first = source.charAt(0);
+    if (first == '\'' || first == '"') {
+      return parseString(source, first);
+    }
+    if (first >= '0' && first <= '9') {
+      return parseInteger(source);
+    }
+    switch (source) {
+      case "true":
+        return new SimpleExpression(true, Boolean.TRUE, null, null, false);
+      case "false":
+        return new SimpleExpression(true, Boolean.FALSE, null, null, false);
+      case "null":
+        return new SimpleExpression(true, null, null, null, false);
+      default:
+        break;
+    }
+    boolean negated = first == '!';
+    return parsePath(negated ? source.substring(1) : source, negated);
+  }
+
+  private static SimpleExpression parseString(String source, char quote) {
+    int end = source.length() - 1;
+    if (end == 0 || source.charAt(end) != quote) {
+      return null;
+    }
+    for (int i = 1; i < end; i++) {
+      char c = source.charAt(i);
+      if (c == quote || c == '\\' || c == '\n' || c == '\r') {
+        return null;
+      }
+    }
+    return new SimpleExpression(true, source.substring(1, end), null, null, false);
+  }
+
+  private static SimpleExpression parseInteger(String source) {
+    // leading zeros denote octal numbers in some languages, long literals may overflow an int
+    if (source.length() > 9 || (source.length() > 1 && source.charAt(0) == '0')) {
+      return null;
+    }
+    for (int i = 0; i < source.length(); i++) {
+      char c = source.charAt(i);
+      if (c < '0' || c > '9') {
+        return null;
+      }
+    }
+    return new SimpleExpression(true, Integer.valueOf(source), null, null, false);
+  }
+
+  private static SimpleExpression parsePath(String source, boolean negated) {
+    List<String> names = new ArrayList<>();
+    int start = 0;
+    while (true) {
+      int end = start;
+      while (end < source.length() && isIdentifierPart(source.charAt(end))) {
+        end++;
+      }
+      if (end == start || isDigit(source.charAt(start))) {
+        return null;
+      }
+      String name = source.substring(start, end);
+      if (KEYWORDS.contains(name)) {
+        return null;
+      }
+      names.add(name);
+      if (end == source.length()) {
+        break;
+      }
+      if (source.charAt(end) != '.') {
+        return null;
+      }
+      start = end + 1;
+    }
+    return new SimpleExpression(
+        false,
+        null,
+        names.get(0),
+        names.subList(1, names.size()).toArray(new String[0]),
+        negated);
+  }
+
+  private static boolean isIdentifierPart(char c) {
+    return (c >= 'a' && c <= 'z')
+        || (c >= 'A' && c <= 'Z')
+        || isDigit(c)
+        || c == '_'
+        || c == '$';
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  boolean isLiteral() {
+    return literal;
+  }
+
+  /** The value of a literal. */
+  Object getValue() {
+    return value;
+  }
+
+  /** The variable a property path starts with. */
+  String getVariable() {
+    return variable;
+  }
+
+  /** The properties a property path follows from its variable, possibly none. */
+  String[] getProperties() {
+    return properties;
+  }
+
+  /** Whether the value of a property path is negated with {@code !}. */
+  boolean isNegated() {
+    return negated;
+  }
+}
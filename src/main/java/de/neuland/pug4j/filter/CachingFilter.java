@@ -2,20 +2,58 @@ package de.neuland.pug4j.filter;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.HashMap;
 import java.util.Map;
 
 public abstract class CachingFilter implements Filter {
 
   private static final int MAX_ENTRIES = 1000;
 
-  private static final Cache<String, String> cache =
-      Caffeine.newBuilder().maximumSize(MAX_ENTRIES).build();
+  // One cache per filter, so filters converting the same source do not share results.
+  private final Cache<Key, String> cache = Caffeine.newBuilder().maximumSize(MAX_ENTRIES).build();
 
   @Override
   public String convert(String source, Map<String, Object> attributes, Map<String, Object> model) {
-    String key = source.hashCode() + "-" + attributes.hashCode();
-    return cache.get(key, k -> convert(source, attributes));
+    // Look up without locking and convert outside the cache, so concurrent renders never wait
+    // for another thread's conversion. Racing conversions of the same source give equal results.
+    String converted = cache.getIfPresent(new Key(source, attributes));
+    if (converted == null) {
+      converted = convert(source, attributes);
+      cache.put(new Key(source, new HashMap<>(attributes)), converted);
+    }
+    return converted;
   }
 
   protected abstract String convert(String source, Map<String, Object> attributes);
+
+  private static final class Key {
+    private final String source;
+    private final Map<String, Object> attributes;
+    private final int hashCode;
+
+    private Key(String source, Map<String, Object> attributes) {
+      this.source = source;
+      this.attributes = attributes;
+      this.hashCode = 31 * source.hashCode() + attributes.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return hashCode == key.hashCode
+          && source.equals(key.source)
+          && attributes.equals(key.attributes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
 }
@@ -26,21 +26,17 @@ public class RecordWrapperUberspect extends Uberspect {
     // For RecordWrapper, delegate method resolution to the underlying record
     if (obj instanceof RecordWrapper wrapper) {
       Object record = wrapper.getRecord();
-      Class<?> recordClass = record.getClass();
-
-      // Try to find the method using Java reflection directly
-      // Record accessors are no-arg methods with the component name
-      if (recordClass.isRecord() && (args == null || args.length == 0)) {
-        try {
-          Method javaMethod = recordClass.getMethod(method);
-          // Found a matching method, create a JexlMethod wrapper for it
+
+      // Record accessors are no-arg methods with the component name; the lookup is cached per
+      // record class by the wrapper
+      if (args == null || args.length == 0) {
+        Method javaMethod = wrapper.findNoArgMethod(method);
+        if (javaMethod != null) {
           return new DirectRecordMethod(javaMethod, wrapper);
-        } catch (NoSuchMethodException e) {
-          // Method not found, fall through to default handling
         }
       }
 
-      // If not a record or method not found, try standard JEXL resolution
+      // If the method takes arguments or was not found, try standard JEXL resolution
       JexlMethod recordMethod = super.getMethod(record, method, args);
       if (recordMethod != null) {
         return new RecordDelegatingMethod(recordMethod, wrapper);
@@ -51,6 +47,14 @@ public class RecordWrapperUberspect extends Uberspect {
     return super.getMethod(obj, method, args);
   }
 
+  /**
+   * Returns the record a cached method is invoked on: JEXL reuses resolved methods for later
+   * evaluations of the same expression, which pass the wrapper of another record of that class.
+   */
+  private static Object recordOf(Object obj, RecordWrapper wrapper) {
+    return obj instanceof RecordWrapper other ? other.getRecord() : wrapper.getRecord();
+  }
+
   /** Direct wrapper around a Java Method for record accessors. */
   private static class DirectRecordMethod implements JexlMethod {
     private final Method method;
@@ -59,19 +63,21 @@ public class RecordWrapperUberspect extends Uberspect {
     DirectRecordMethod(Method method, RecordWrapper wrapper) {
       this.method = method;
       this.wrapper = wrapper;
-      method.setAccessible(true);
     }
 
     @Override
     public Object invoke(Object obj, Object... params) throws Exception {
       // Invoke on the underlying record, not the wrapper
-      Object result = method.invoke(wrapper.getRecord(), params);
+      Object result = method.invoke(recordOf(obj, wrapper), params);
       // Wrap the result if it's a record
       return RecordWrapper.wrapIfRecord(result);
     }
 
     @Override
     public Object tryInvoke(String name, Object obj, Object... params) {
+      if (!method.getName().equals(name)) {
+        return JexlEngine.TRY_FAILED;
+      }
       try {
         return invoke(obj, params);
       } catch (JexlException.TryFailed xjexl) {
@@ -110,7 +116,7 @@ public class RecordWrapperUberspect extends Uberspect {
     @Override
     public Object invoke(Object obj, Object... params) throws Exception {
       // Invoke on the underlying record, not the wrapper
-      Object result = delegate.invoke(wrapper.getRecord(), params);
+      Object result = delegate.invoke(recordOf(obj, wrapper), params);
       // Wrap the result if it's a record
       return RecordWrapper.wrapIfRecord(result);
     }
@@ -192,11 +192,11 @@ public class CharacterParser {
   //        src: src.substring(start, end)
   //      };
   //    }
-  public Match parseUntil(String src, String delimiter) {
+  public Match parseUntil(CharSequence src, String delimiter) {
     return this.parseUntil(src, delimiter, new CharacterParserOptions());
   }
 
-  public Match parseUntil(String src, String delimiter, CharacterParserOptions options) {
+  public Match parseUntil(CharSequence src, String delimiter, CharacterParserOptions options) {
     if (options == null) options = new CharacterParserOptions();
 
     boolean includeLineComment = options.isIncludeLineComment();
@@ -206,7 +206,7 @@ public class CharacterParser {
     while (index < src.length()) {
       if ((options.isIgnoreNesting() || !state.isNesting(options))
           && startsWith(src, delimiter, index)) {
-        return new Match(start, index, src.substring(start, index));
+        return new Match(start, index, src.subSequence(start, index).toString());
       }
       try {
         this.parseChar(src.charAt(index), state);
@@ -552,8 +552,17 @@ public class CharacterParser {
     }
   }
 
-  private boolean startsWith(String str, String start, int i) {
-    return start.equals(str.substring(i, i + start.length()));
+  private boolean startsWith(CharSequence str, String start, int i) {
+    if (i + start.length() > str.length()) {
+      throw new StringIndexOutOfBoundsException(
+          "begin " + i + ", end " + (i + start.length()) + ", length " + str.length());
+    }
+    for (int j = 0; j < start.length(); j++) {
+      if (str.charAt(i + j) != start.charAt(j)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   //    exports.isPunctuator = isPunctuator
@@ -3,6 +3,7 @@ package de.neuland.pug4j.lexer;
 import de.neuland.pug4j.exceptions.ExpressionException;
 import de.neuland.pug4j.exceptions.PugLexerException;
 import de.neuland.pug4j.exceptions.TemplateSource;
+import de.neuland.pug4j.expression.CompiledExpression;
 import de.neuland.pug4j.expression.ExpressionHandler;
 import de.neuland.pug4j.lexer.token.*;
 import de.neuland.pug4j.parser.CharacterParserOptions;
@@ -103,6 +104,7 @@ public class Lexer {
   private final TemplateLoader templateLoader;
   private final CharacterParser characterParser;
   private final ExpressionHandler expressionHandler;
+  private Map<String, CompiledExpression> compiledExpressions = new HashMap<>();
   private boolean ended = false;
   private boolean interpolated = false;
 
@@ -164,113 +166,79 @@ public class Lexer {
   }
 
   public boolean next() {
-    if (blank()) {
-      return true;
-    }
-    if (eos()) {
-      return true;
-    }
-    if (endInterpolation()) {
-      return true;
-    }
-    if (yieldToken()) {
-      return true;
-    }
-    if (doctype()) {
-      return true;
-    }
-    if (interpolation()) {
-      return true;
-    }
-    if (caseToken()) {
-      return true;
-    }
-    if (when()) {
-      return true;
-    }
-    if (defaultToken()) {
-      return true;
-    }
-    if (extendsToken()) {
-      return true;
-    }
-    if (append()) {
-      return true;
-    }
-    if (prepend()) {
-      return true;
-    }
-    if (block()) {
-      return true;
-    }
-    if (mixinBlock()) {
-      return true;
-    }
-    if (include()) {
-      return true;
-    }
-    if (mixin()) {
-      return true;
-    }
-    if (call()) {
-      return true;
-    }
-    if (conditional()) {
-      return true;
-    }
-    // Todo: eachOf
-    if (each()) {
-      return true;
-    }
-    if (whileToken()) {
-      return true;
-    }
-    if (tag()) {
-      return true;
-    }
-    if (filter()) {
-      return true;
-    }
-    if (blockCode()) {
-      return true;
-    }
-    if (code()) {
-      return true;
-    }
-    if (id()) {
-      return true;
-    }
-    if (dot()) {
-      return true;
-    }
-    if (className()) {
-      return true;
-    }
-    if (attrs()) {
-      return true;
-    }
-    if (attributesBlock()) {
-      return true;
-    }
-    if (indent()) {
-      return true;
-    }
-    if (text()) {
-      return true;
-    }
-    if (textHtml()) {
-      return true;
-    }
-    if (comment()) {
-      return true;
-    }
-    if (slash()) {
-      return true;
-    }
-    if (colon()) {
-      return true;
-    }
-    return fail();
+    if (scanner.isEmpty()) {
+      return eos();
+    }
+    // Only the scanners whose patterns can match the next character are tried, in the order of
+    // the full cascade, so the result is the same as trying each scanner in turn.
+    char c = scanner.charAt(0);
+    switch (c) {
+      case '\n':
+        return blank() || indent() || fail();
+      case ']':
+        return endInterpolation() || fail();
+      case '#':
+        return interpolation() || id() || fail();
+      case '+':
+        return call() || fail();
+      case '-':
+        return each() || blockCode() || code() || fail();
+      case '!':
+      case '=':
+        return code() || fail();
+      case '.':
+        return dot() || className() || fail();
+      case ':':
+        return filter() || colon() || fail();
+      case '(':
+        return attrs() || fail();
+      case '&':
+        return attributesBlock() || fail();
+      case '|':
+      case ' ':
+        return text() || fail();
+      case '<':
+        return textHtml() || fail();
+      case '/':
+        return comment() || slash() || fail();
+      default:
+        return keywordOrTag(c) || fail();
+    }
+  }
+
+  private boolean keywordOrTag(char c) {
+    switch (c) {
+      case 'a':
+        return append() || tag();
+      case 'b':
+        return append() || prepend() || block() || mixinBlock() || tag();
+      case 'c':
+        return caseToken() || tag();
+      case 'd':
+        return doctype() || defaultToken() || tag();
+      case 'e':
+        return extendsToken() || conditional() || each() || tag();
+      case 'f':
+        return each() || tag();
+      case 'i':
+        return include() || conditional() || tag();
+      case 'm':
+        return mixin() || tag();
+      case 'p':
+        return prepend() || tag();
+      case 'u':
+        return conditional() || tag();
+      case 'w':
+        return when() || whileToken() || tag();
+      case 'y':
+        return yieldToken() || tag();
+      default:
+        return isWordCharacter(c) && tag();
+    }
+  }
+
+  private static boolean isWordCharacter(char c) {
+    return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
   }
 
   public void consume(int len) {
@@ -314,7 +282,7 @@ public class Lexer {
    * @return the matched bracket expression, or null if throwOnError is false and parsing fails
    */
   private CharacterParser.Match bracketExpression(int skip, boolean throwOnError) {
-    char start = scanner.getInput().charAt(skip);
+    char start = scanner.charAt(skip);
     if (throwOnError) {
       assertIf(
           start == '(' || start == '{' || start == '[',
@@ -331,7 +299,9 @@ public class Lexer {
     options.setStart(skip + 1);
     CharacterParser.Match range;
     try {
-      range = characterParser.parseUntil(scanner.getInput(), String.valueOf(end), options);
+      range =
+          characterParser.parseUntil(
+              scanner.getRemainingInput(), String.valueOf(end), options);
     } catch (CharacterParserException exception) {
       if (throwOnError) {
         if (exception.getIndex() != null) {
@@ -435,8 +405,9 @@ public class Lexer {
         incrementColumn(whitespaceLength);
       }
 
-      String newInput = scanner.getInput().substring(matcher.group(0).length());
-      if (!newInput.isEmpty() && newInput.charAt(0) == ':') {
+      CharSequence newInput =
+          scanner.getRemainingInput().subSequence(matcher.group(0).length(), scanner.length());
+      if (newInput.length() > 0 && newInput.charAt(0) == ':') {
         scanner.consume(matcher.group(0).length());
         token = tok(token);
         if (matcher.groupCount() > 0) {
@@ -476,7 +447,7 @@ public class Lexer {
   }
 
   private boolean eos() {
-    if (!scanner.getInput().isEmpty()) {
+    if (!scanner.isEmpty()) {
       return false;
     }
     if (this.interpolated) {
@@ -695,7 +666,7 @@ public class Lexer {
       return true;
     }
     if (scan(PATTERN_INVALID_ID)) {
-      Matcher matcher = PATTERN_EXTRACT_INVALID_ID.matcher(scanner.getInput());
+      Matcher matcher = scanner.getMatcherForPattern(PATTERN_EXTRACT_INVALID_ID);
       if (matcher.find()) {
         throw error("INVALID_ID", "\"" + matcher.group(0) + "\" is not a valid ID.");
       }
@@ -710,11 +681,11 @@ public class Lexer {
       pushToken(tokEnd(token));
       return true;
     }
-    if (PATTERN_INVALID_CLASSNAME.matcher(scanner.getInput()).find(0)) {
+    if (scanner.getMatcherForPattern(PATTERN_INVALID_CLASSNAME).find(0)) {
       throw error(
           "INVALID_CLASS_NAME", "Class names must contain at least one letter or underscore.");
     }
-    if (PATTERN_CLASSNAME_STARTS_WITH_DOT.matcher(scanner.getInput()).find(0)) {
+    if (scanner.getMatcherForPattern(PATTERN_CLASSNAME_STARTS_WITH_DOT).find(0)) {
       Matcher matcher = PATTERN_EXTRACT_INVALID_CLASSNAME.matcher(scanner.getInput().substring(1));
       if (matcher.find(0))
         throw error(
@@ -727,7 +698,7 @@ public class Lexer {
   }
 
   private boolean endInterpolation() {
-    if (interpolated && this.scanner.getInput().charAt(0) == ']') {
+    if (interpolated && this.scanner.charAt(0) == ']') {
       this.consume(1);
       this.ended = true;
       return true;
@@ -797,6 +768,7 @@ public class Lexer {
                 this.lineno,
                 this.colno,
                 true);
+        child.setCompiledExpressions(compiledExpressions);
       } catch (IOException e) {
         throw new PugLexerException(
             e.getMessage(), this.filename, this.lineno, this.colno, templateLines());
@@ -825,7 +797,7 @@ public class Lexer {
         }
       }
       this.ended = true;
-      scanner.setInput(value.substring(value.indexOf(']') + 1) + scanner.getInput());
+      scanner.unread(value.substring(indexOfEnd + 1));
       return;
     }
 
@@ -958,7 +930,7 @@ public class Lexer {
         Token token = tok(new Block(name));
         int len = matcher.group(0).length() - comment.length();
         while (PATTERN_WHITESPACE
-            .matcher(String.valueOf(scanner.getInput().charAt(len - 1)))
+            .matcher(String.valueOf(scanner.charAt(len - 1)))
             .find(0)) {
           len--;
         }
@@ -1010,7 +982,7 @@ public class Lexer {
       while (filter(true))
         ;
       if (!path()) {
-        if (PATTERN_NON_WHITESPACE.matcher(scanner.getInput()).find(0)) {
+        if (scanner.getMatcherForPattern(PATTERN_NON_WHITESPACE).find(0)) {
           fail();
         } else {
           throw error("NO_INCLUDE_PATH", "missing path for include");
@@ -1165,10 +1137,10 @@ public class Lexer {
   }
 
   private boolean attrs() {
-    if (scanner.getInput().length() > 1 && '(' == scanner.getInput().charAt(0)) {
+    if (scanner.length() > 1 && '(' == scanner.charAt(0)) {
       Token startAttributesToken = tok(new StartAttributes());
       int index = this.bracketExpression().getEnd();
-      String str = scanner.getInput().substring(1, index);
+      String str = scanner.substring(1, index);
 
       incrementColumn(1);
       pushToken(tokEnd(startAttributesToken));
@@ -1482,8 +1454,7 @@ public class Lexer {
       incrementLine(1);
       consume(indents + 1);
 
-      if (!scanner.getInput().isEmpty()
-          && (scanner.getInput().charAt(0) == ' ' || scanner.getInput().charAt(0) == '\t')) {
+      if (!scanner.isEmpty() && (scanner.charAt(0) == ' ' || scanner.charAt(0) == '\t')) {
         throw error(
             "INVALID_INDENTATION", "Invalid indentation, you can use tabs or spaces but not both");
       }
@@ -1584,10 +1555,10 @@ public class Lexer {
         int stringPtr = 0;
         do {
           // text has `\n` as a prefix
-          int nextLineBreak = scanner.getInput().substring(stringPtr + 1).indexOf('\n');
-          if (-1 == nextLineBreak) nextLineBreak = scanner.getInput().length() - stringPtr - 1;
+          int nextLineBreak = scanner.indexOf('\n', stringPtr + 1);
+          if (-1 == nextLineBreak) nextLineBreak = scanner.length();
 
-          String line = scanner.getInput().substring(stringPtr + 1, stringPtr + 1 + nextLineBreak);
+          String line = scanner.substring(stringPtr + 1, nextLineBreak);
           Matcher lineCaptures = indentRe.matcher("\n" + line);
           int lineIndents = 0;
           if (lineCaptures.find(0) && lineCaptures.groupCount() > 0) {
@@ -1611,11 +1582,11 @@ public class Lexer {
             this.tokens.pollLast();
             return pipelessText(lineCaptures.group(1).length());
           }
-        } while (scanner.getInput().length() - stringPtr > 0 && isMatch);
+        } while (scanner.length() - stringPtr > 0 && isMatch);
 
         this.consume(stringPtr);
 
-        while (scanner.getInput().isEmpty() && tokenList.get(tokenList.size() - 1).isEmpty())
+        while (scanner.isEmpty() && tokenList.get(tokenList.size() - 1).isEmpty())
           tokenList.remove(tokenList.size() - 1);
 
         for (int i = 0; i < tokenList.size(); i++) {
@@ -1686,9 +1657,24 @@ public class Lexer {
     assertExpression(value, false);
   }
 
+  /**
+   * Checks that a value is a valid expression. Values that end up in the template are compiled
+   * instead of only checked, and the result is kept for {@link #getCompiledExpressions()}, so the
+   * expression is parsed only once. Values that fail to compile but pass {@link
+   * ExpressionHandler#assertExpression(String)} are accepted as before and parsed on render.
+   *
+   * @param value the expression source
+   * @param noThrow whether to return false instead of throwing for an invalid expression; used
+   *     while probing where an expression ends, so the value is only checked
+   * @return whether the value is a valid expression
+   */
   public boolean assertExpression(String value, boolean noThrow) {
     try {
-      expressionHandler.assertExpression(value);
+      if (noThrow) {
+        expressionHandler.assertExpression(value);
+      } else if (!compiledExpressions.containsKey(value)) {
+        compileExpression(value);
+      }
       return true;
     } catch (ExpressionException e) {
       if (noThrow) {
@@ -1697,4 +1683,35 @@ public class Lexer {
       throw error("SYNTAX_ERROR", "Syntax Error: " + e.getMessage());
     }
   }
+
+  private void compileExpression(String value) throws ExpressionException {
+    CompiledExpression compiledExpression;
+    try {
+      compiledExpression = expressionHandler.compile(value);
+    } catch (ExpressionException e) {
+      expressionHandler.assertExpression(value);
+      compiledExpression = null;
+    }
+    compiledExpressions.put(value, compiledExpression);
+  }
+
+  /**
+   * Returns the expressions compiled while the input was checked, by source. Expressions that were
+   * accepted but could not be compiled map to null; they are parsed again on every render.
+   *
+   * @return the compiled expressions by source
+   */
+  public Map<String, CompiledExpression> getCompiledExpressions() {
+    return compiledExpressions;
+  }
+
+  /**
+   * Sets the map the compiled expressions are kept in, so the lexers of included files and of tag
+   * interpolations share one map with the template that contains them.
+   *
+   * @param compiledExpressions the compiled expressions by source
+   */
+  public void setCompiledExpressions(Map<String, CompiledExpression> compiledExpressions) {
+    this.compiledExpressions = compiledExpressions;
+  }
 }
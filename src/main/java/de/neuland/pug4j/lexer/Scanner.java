@@ -9,11 +9,17 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Holds the template source while it is lexed. Consuming input only moves an offset into the
+ * source, and patterns are matched against a view of the remaining input, so lexing a template does
+ * not copy the rest of the source for every token.
+ */
 public class Scanner {
 
   private static final Logger logger = LoggerFactory.getLogger(Scanner.class);
   private static final Pattern LINE_ENDINGS = Pattern.compile("\\r\\n|\\r");
   private String input;
+  private int offset;
   private String originalInput;
   public static final String UTF8_BOM = "\uFEFF";
 
@@ -26,7 +32,10 @@ public class Scanner {
   }
 
   public void consume(int length) {
-    input = input.substring(length);
+    if (length < 0 || length > length()) {
+      throw new StringIndexOutOfBoundsException("begin " + length + ", length " + length());
+    }
+    offset += length;
   }
 
   private void initFromReader(Reader reader) {
@@ -50,19 +59,62 @@ public class Scanner {
   }
 
   public char charAt(int i) {
-    return input.charAt(i);
+    if (i < 0) {
+      throw new StringIndexOutOfBoundsException(i);
+    }
+    return input.charAt(offset + i);
+  }
+
+  /** Returns the length of the remaining input. */
+  public int length() {
+    return input.length() - offset;
+  }
+
+  /** Returns true if all input has been consumed. */
+  public boolean isEmpty() {
+    return offset >= input.length();
+  }
+
+  /**
+   * Returns the index of the first occurrence of a character in the remaining input, starting at a
+   * given index, or -1 if it does not occur.
+   */
+  public int indexOf(char c, int fromIndex) {
+    int i = input.indexOf(c, offset + Math.max(fromIndex, 0));
+    return i < 0 ? -1 : i - offset;
+  }
+
+  /** Returns a part of the remaining input. */
+  public String substring(int beginIndex, int endIndex) {
+    if (beginIndex < 0 || endIndex > length() || beginIndex > endIndex) {
+      throw new StringIndexOutOfBoundsException(
+          "begin " + beginIndex + ", end " + endIndex + ", length " + length());
+    }
+    return input.substring(offset + beginIndex, offset + endIndex);
   }
 
   public String getPipelessText() {
-    int i = input.indexOf('\n');
-    if (-1 == i) i = input.length();
-    String str = input.substring(0, i);
+    int i = indexOf('\n', 0);
+    if (-1 == i) i = length();
+    String str = substring(0, i);
     consume(str.length());
     return str.trim();
   }
 
+  /**
+   * Returns a copy of the remaining input. Prefer {@link #getRemainingInput()} or the relative
+   * accessors of this class, which do not copy.
+   */
   public String getInput() {
-    return input;
+    return input.substring(offset);
+  }
+
+  /**
+   * Returns a view of the remaining input. The view does not change when input is consumed
+   * afterwards.
+   */
+  public CharSequence getRemainingInput() {
+    return new Remainder(input, offset, input.length());
   }
 
   public String getOriginalInput() {
@@ -70,15 +122,30 @@ public class Scanner {
   }
 
   public Matcher getMatcherForPattern(Pattern pattern) {
-    return pattern.matcher(input);
+    return pattern.matcher(getRemainingInput());
   }
 
   public boolean isBlankLine() {
-    return input != null && input.length() > 0 && '\n' == input.charAt(0);
+    return input != null && offset < input.length() && '\n' == input.charAt(offset);
   }
 
   public void setInput(String input) {
     this.input = input;
+    this.offset = 0;
+  }
+
+  /**
+   * Puts text back in front of the remaining input. Text that was just consumed, like the rest of a
+   * text token after the end of a tag interpolation, is put back by moving the offset; other text is
+   * copied in front of the remaining input.
+   */
+  public void unread(String text) {
+    int start = offset - text.length();
+    if (start >= 0 && input.regionMatches(start, text, 0, text.length())) {
+      offset = start;
+    } else {
+      setInput(text + getInput());
+    }
   }
 
   private String removeUTF8BOM(String s) {
@@ -87,4 +154,44 @@ public class Scanner {
     }
     return s;
   }
+
+  /** Part of the source, shared instead of copied until it is converted to a string. */
+  private static final class Remainder implements CharSequence {
+    private final String source;
+    private final int start;
+    private final int end;
+
+    private Remainder(String source, int start, int end) {
+      this.source = source;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public int length() {
+      return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < 0 || index >= end - start) {
+        throw new StringIndexOutOfBoundsException(index);
+      }
+      return source.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int beginIndex, int endIndex) {
+      if (beginIndex < 0 || endIndex > end - start || beginIndex > endIndex) {
+        throw new StringIndexOutOfBoundsException(
+            "begin " + beginIndex + ", end " + endIndex + ", length " + length());
+      }
+      return new Remainder(source, start + beginIndex, start + endIndex);
+    }
+
+    @Override
+    public String toString() {
+      return source.substring(start, end);
+    }
+  }
 }
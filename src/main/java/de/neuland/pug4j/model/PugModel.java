@@ -3,12 +3,11 @@ package de.neuland.pug4j.model;
 import de.neuland.pug4j.filter.Filter;
 import de.neuland.pug4j.parser.node.MixinNode;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Deque;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -16,11 +15,24 @@ import java.util.Set;
 public class PugModel implements Map<String, Object> {
 
   private static final String LOCALS = "locals";
-  public static final String LOCAL_VARS = "pug4j__localVars";
+
+  /**
+   * @deprecated Declared local variable names are kept with their scope and no longer stored as a
+   *     model entry under this key.
+   */
+  @Deprecated public static final String LOCAL_VARS = "pug4j__localVars";
+
   public static final String PUG4J_MODEL_PREFIX = "pug4j__";
-  private final Deque<Map<String, Object>> scopes = new LinkedList<>();
+
+  // Scopes are kept in an array and reused after they are popped, so entering a loop or mixin
+  // call does not allocate once the stack has grown to its depth.
+  private Scope[] scopes = new Scope[8];
+  private int depth = -1;
+  // Read-only maps below the root scope, looked up by reference. Later layers shadow earlier ones.
+  private final List<Map<String, ?>> layers = new ArrayList<>(2);
   private final Map<String, MixinNode> mixins = new HashMap<>();
   private final Map<String, Filter> filter = new HashMap<>();
+  private Map<String, Filter> layeredFilters = Collections.emptyMap();
 
   public PugModel(Map<String, Object> defaults) {
     pushScope();
@@ -33,13 +45,54 @@ public class PugModel implements Map<String, Object> {
   }
 
   public void pushScope() {
-    HashMap<String, Object> scope = new HashMap<>();
-    scope.put(LOCAL_VARS, new HashSet<>());
-    scopes.add(scope);
+    depth++;
+    if (depth == scopes.length) {
+      scopes = Arrays.copyOf(scopes, depth << 1);
+    }
+    if (scopes[depth] == null) {
+      scopes[depth] = new Scope();
+    }
   }
 
   public void popScope() {
-    scopes.removeLast();
+    if (depth <= 0) {
+      throw new IllegalStateException("The root scope cannot be popped");
+    }
+    scopes[depth].clear();
+    depth--;
+  }
+
+  /**
+   * Adds a map of variables below the root scope without copying it. Variables of a later layer
+   * shadow those of earlier layers, and the layer shadows variables that were put into the root
+   * scope before, as if they had been added with {@link #putAll(Map)}. The map is never modified:
+   * assigning to one of its variables stores the new value in the root scope, which shadows the
+   * layer from then on. Records are wrapped when they are first read.
+   *
+   * @param variables the variables to add, not modified and not copied
+   */
+  public void addLayer(Map<String, ?> variables) {
+    if (variables == null) {
+      throw new IllegalArgumentException("variables cannot be null");
+    }
+    HashMap<String, Object> rootVariables = scopes[0].variables;
+    if (rootVariables != null && !rootVariables.isEmpty()) {
+      rootVariables.keySet().removeIf(variables::containsKey);
+    }
+    layers.add(variables);
+  }
+
+  /**
+   * Makes the given filters available without copying them. Filters added with {@link
+   * #addFilter(String, Filter)} take precedence.
+   *
+   * @param filters the filters by name, not modified and not copied
+   */
+  public void addFilters(Map<String, Filter> filters) {
+    if (filters == null) {
+      throw new IllegalArgumentException("filters cannot be null");
+    }
+    this.layeredFilters = filters;
   }
 
   public void setMixin(String name, MixinNode node) {
@@ -52,37 +105,50 @@ public class PugModel implements Map<String, Object> {
 
   @Override
   public void clear() {
-    scopes.clear();
-    scopes.add(new HashMap<>());
+    Arrays.fill(scopes, null);
+    layers.clear();
+    depth = -1;
+    pushScope();
   }
 
   @Override
   public boolean containsKey(Object key) {
-    for (Iterator<Map<String, Object>> i = scopes.descendingIterator(); i.hasNext(); ) {
-      Map<String, Object> scope = i.next();
-      if (scope.containsKey(key)) {
+    for (int i = depth; i >= 0; i--) {
+      if (scopes[i].containsKey(key)) {
         return true;
       }
     }
-    return false;
+    return layerWithKey(key) >= 0;
   }
 
   public boolean knowsKey(String key) {
-    for (Iterator<Map<String, Object>> i = scopes.descendingIterator(); i.hasNext(); ) {
-      Map<String, Object> scope = i.next();
-      Set<String> localVars = (Set<String>) scope.get(LOCAL_VARS);
-      if (scope.containsKey(key) || localVars.contains(key)) {
+    for (int i = depth; i >= 0; i--) {
+      if (scopes[i].knowsKey(key)) {
         return true;
       }
     }
-    return false;
+    return layerWithKey(key) >= 0;
+  }
+
+  private int layerWithKey(Object key) {
+    for (int i = layers.size() - 1; i >= 0; i--) {
+      if (layers.get(i).containsKey(key)) {
+        return i;
+      }
+    }
+    return -1;
   }
 
   @Override
   public boolean containsValue(Object value) {
-    for (Iterator<Map<String, Object>> i = scopes.descendingIterator(); i.hasNext(); ) {
-      Map<String, Object> scope = i.next();
-      if (scope.containsValue(value)) {
+    for (int i = depth; i >= 0; i--) {
+      Map<String, Object> variables = scopes[i].variables;
+      if (variables != null && variables.containsValue(value)) {
+        return true;
+      }
+    }
+    for (Map<String, ?> layer : layers) {
+      if (layer.containsValue(value)) {
         return true;
       }
     }
@@ -99,27 +165,46 @@ public class PugModel implements Map<String, Object> {
   }
 
   @Override
-  // adds the object to the highest scope
+  // returns the value from the innermost scope that defines the key
   public Object get(Object key) {
-    for (Iterator<Map<String, Object>> i = scopes.descendingIterator(); i.hasNext(); ) {
-      Map<String, Object> scope = i.next();
-      Object value = scope.get(key);
-      if (value != null || scope.containsKey(key)) {
+    for (int i = depth; i >= 0; i--) {
+      Map<String, Object> variables = scopes[i].variables;
+      if (variables != null) {
+        Object value = variables.get(key);
+        if (value != null || variables.containsKey(key)) {
+          return value;
+        }
+      }
+    }
+    return getFromLayers(key);
+  }
+
+  private Object getFromLayers(Object key) {
+    for (int i = layers.size() - 1; i >= 0; i--) {
+      Map<String, ?> layer = layers.get(i);
+      Object value = layer.get(key);
+      if (value != null) {
+        if (value.getClass().isRecord()) {
+          // keep the wrapper so the record is wrapped once per render
+          value = RecordWrapper.wrapIfRecord(value);
+          scopes[0].variables().put((String) key, value);
+        }
         return value;
       }
+      if (layer.containsKey(key)) {
+        return null;
+      }
     }
     return null;
   }
 
-  private Map<String, Object> getScopeWithKey(Object key) {
-    for (Iterator<Map<String, Object>> i = scopes.descendingIterator(); i.hasNext(); ) {
-      Map<String, Object> scope = i.next();
-      Set<String> localVars = (Set<String>) scope.get(LOCAL_VARS);
-      if (scope.containsKey(key) || localVars.contains(key)) {
-        return scope;
+  private Scope getScopeWithKey(Object key) {
+    for (int i = depth; i >= 0; i--) {
+      if (scopes[i].knowsKey(key)) {
+        return scopes[i];
       }
     }
-    return null;
+    return layerWithKey(key) >= 0 ? scopes[0] : null;
   }
 
   @Override
@@ -131,8 +216,14 @@ public class PugModel implements Map<String, Object> {
   // returns a set of unique keys
   public Set<String> keySet() {
     Set<String> keys = new HashSet<>();
-    for (Iterator<Map<String, Object>> i = scopes.descendingIterator(); i.hasNext(); ) {
-      keys.addAll(i.next().keySet());
+    for (Map<String, ?> layer : layers) {
+      keys.addAll(layer.keySet());
+    }
+    for (int i = depth; i >= 0; i--) {
+      Map<String, Object> variables = scopes[i].variables;
+      if (variables != null) {
+        keys.addAll(variables.keySet());
+      }
     }
     return keys;
   }
@@ -140,18 +231,13 @@ public class PugModel implements Map<String, Object> {
   @Override
   // adds the object to the correct scope
   public Object put(String key, Object value) {
-    Set<String> localVars = getLocalVars();
-    if (localVars.contains(key)) {
+    if (scopes[depth].isLocalVariableName(key)) {
       return putLocal(key, value);
     } else {
       return putGlobal(key, value);
     }
   }
 
-  private Set<String> getLocalVars() {
-    return (Set<String>) scopes.getLast().get(LOCAL_VARS);
-  }
-
   // adds the object to the current scope
   public Object putLocal(String key, Object value) {
     Object currentValue = get(key);
@@ -161,22 +247,22 @@ public class PugModel implements Map<String, Object> {
 
   // adds the object to the current scope without resolving the previous value
   public void setLocal(String key, Object value) {
-    scopes.getLast().put(key, RecordWrapper.wrapIfRecord(value));
+    scopes[depth].variables().put(key, RecordWrapper.wrapIfRecord(value));
   }
 
   // adds the object to the scope where the variable was last defined
   public Object putGlobal(String key, Object value) {
     Object currentValue = get(key);
-    Map<String, Object> scope = getScopeWithKey(key);
-    if (scope == null) scope = scopes.getLast();
-    scope.put(key, RecordWrapper.wrapIfRecord(value));
+    Scope scope = getScopeWithKey(key);
+    if (scope == null) scope = scopes[depth];
+    scope.variables().put(key, RecordWrapper.wrapIfRecord(value));
     return currentValue;
   }
 
   @Override
   // addes all map entries to the current scope map
   public void putAll(Map<? extends String, ? extends Object> m) {
-    Map<String, Object> scope = scopes.getLast();
+    Map<String, Object> scope = scopes[depth].variables();
     for (Map.Entry<? extends String, ? extends Object> entry : m.entrySet()) {
       Object wrapped = RecordWrapper.wrapIfRecord(entry.getValue());
       scope.put(entry.getKey(), wrapped);
@@ -186,12 +272,21 @@ public class PugModel implements Map<String, Object> {
   @Override
   // removes the scopes first object with the given key
   public Object remove(Object key) {
-    for (Iterator<Map<String, Object>> i = scopes.descendingIterator(); i.hasNext(); ) {
-      Map<String, Object> scope = i.next();
-      if (scope.containsKey(key)) {
-        Object object = scope.get(key);
-        scope.remove(key);
-        return object;
+    if (layerWithKey(key) >= 0) {
+      // a layered variable cannot be hidden by the root scope, so the root scope takes over the
+      // layers before the variable is removed
+      HashMap<String, Object> rootVariables = scopes[0].variables();
+      for (int i = layers.size() - 1; i >= 0; i--) {
+        for (Map.Entry<String, ?> entry : layers.get(i).entrySet()) {
+          rootVariables.putIfAbsent(entry.getKey(), RecordWrapper.wrapIfRecord(entry.getValue()));
+        }
+      }
+      layers.clear();
+    }
+    for (int i = depth; i >= 0; i--) {
+      Map<String, Object> variables = scopes[i].variables;
+      if (variables != null && variables.containsKey(key)) {
+        return variables.remove(key);
       }
     }
     return null;
@@ -214,7 +309,8 @@ public class PugModel implements Map<String, Object> {
   }
 
   public Filter getFilter(String name) {
-    return filter.get(name);
+    Filter value = filter.get(name);
+    return value != null ? value : layeredFilters.get(name);
   }
 
   public void addFilter(String name, Filter filter) {
@@ -222,6 +318,44 @@ public class PugModel implements Map<String, Object> {
   }
 
   public void putLocalVariableName(String name) {
-    getLocalVars().add(name);
+    Scope scope = scopes[depth];
+    if (scope.localVariableNames == null) {
+      scope.localVariableNames = new HashSet<>();
+    }
+    scope.localVariableNames.add(name);
+  }
+
+  /** The variables of one scope and the names declared local to it, both created on first use. */
+  private static final class Scope {
+    private HashMap<String, Object> variables;
+    private HashSet<String> localVariableNames;
+
+    private HashMap<String, Object> variables() {
+      if (variables == null) {
+        variables = new HashMap<>();
+      }
+      return variables;
+    }
+
+    private boolean containsKey(Object key) {
+      return variables != null && variables.containsKey(key);
+    }
+
+    private boolean isLocalVariableName(Object key) {
+      return localVariableNames != null && localVariableNames.contains(key);
+    }
+
+    private boolean knowsKey(Object key) {
+      return containsKey(key) || isLocalVariableName(key);
+    }
+
+    private void clear() {
+      if (variables != null) {
+        variables.clear();
+      }
+      if (localVariableNames != null) {
+        localVariableNames.clear();
+      }
+    }
   }
 }
@@ -1,5 +1,8 @@
 package de.neuland.pug4j.model;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.RecordComponent;
 import java.util.*;
@@ -24,11 +27,28 @@ public class RecordWrapper implements Map<String, Object>, ProxyObject {
 
   private static final Log logger = LogFactory.getLog(RecordWrapper.class);
 
+  private static final Object UNRESOLVED = new Object();
+
+  /**
+   * Component names, accessors and method lookups are resolved once per record class; ClassValue
+   * keeps them GC-friendly with respect to class unloading.
+   */
+  private static final ClassValue<RecordType> RECORD_TYPES =
+      new ClassValue<>() {
+        @Override
+        protected RecordType computeValue(Class<?> type) {
+          return new RecordType(type);
+        }
+      };
+
   private final Object record;
-  private final Map<String, Object> componentValues;
+  private final RecordType type;
+  // Component values by index, read from the record on first access.
+  private Object[] values;
 
   /**
-   * Creates a wrapper for the given record instance.
+   * Creates a wrapper for the given record instance. Component values are read from the record
+   * when they are first accessed.
    *
    * @param record the record instance to wrap
    * @throws IllegalArgumentException if the object is not a record
@@ -38,50 +58,28 @@ public class RecordWrapper implements Map<String, Object>, ProxyObject {
       throw new IllegalArgumentException("Object must be a record");
     }
     this.record = record;
-    this.componentValues = new LinkedHashMap<>();
-    extractComponents();
+    this.type = RECORD_TYPES.get(record.getClass());
   }
 
-  /**
-   * Extracts all component values from the record using reflection.
-   */
-  private void extractComponents() {
-    Class<?> recordClass = record.getClass();
-    RecordComponent[] components = recordClass.getRecordComponents();
-
-    for (RecordComponent component : components) {
-      try {
-        String name = component.getName();
-        var accessor = component.getAccessor();
-        accessor.setAccessible(
-            true); // Required for accessing records in different packages/modules
-        Object value = accessor.invoke(record);
-
-        // Recursively wrap nested records
-        if (value != null && value.getClass().isRecord()) {
-          value = new RecordWrapper(value);
-        }
+  private Object componentValue(int index) {
+    if (values == null) {
+      values = new Object[type.names.length];
+      Arrays.fill(values, UNRESOLVED);
+    }
+    Object value = values[index];
+    if (value == UNRESOLVED) {
+      value = wrapIfRecord(type.read(record, index));
+      values[index] = value;
+    }
+    return value;
+  }
 
-        componentValues.put(name, value);
-      } catch (IllegalAccessException e) {
-        // This can happen if the record accessor is not accessible due to module restrictions
-        logger.warn(
-            "Cannot access record component '"
-                + component.getName()
-                + "' on record type "
-                + recordClass.getName()
-                + ": "
-                + e.getMessage());
-      } catch (Exception e) {
-        // Unexpected error - log as error since this shouldn't happen with valid records
-        logger.error(
-            "Unexpected error accessing record component '"
-                + component.getName()
-                + "' on record type "
-                + recordClass.getName(),
-            e);
-      }
+  private Map<String, Object> componentValues() {
+    Map<String, Object> componentValues = new LinkedHashMap<>();
+    for (int i = 0; i < type.names.length; i++) {
+      componentValues.put(type.names[i], componentValue(i));
     }
+    return componentValues;
   }
 
   /**
@@ -101,27 +99,28 @@ public class RecordWrapper implements Map<String, Object>, ProxyObject {
 
   @Override
   public int size() {
-    return componentValues.size();
+    return type.names.length;
   }
 
   @Override
   public boolean isEmpty() {
-    return componentValues.isEmpty();
+    return type.names.length == 0;
   }
 
   @Override
   public boolean containsKey(Object key) {
-    return componentValues.containsKey(key);
+    return type.indexOf(key) >= 0;
   }
 
   @Override
   public boolean containsValue(Object value) {
-    return componentValues.containsValue(value);
+    return componentValues().containsValue(value);
   }
 
   @Override
   public Object get(Object key) {
-    return componentValues.get(key);
+    int index = type.indexOf(key);
+    return index >= 0 ? componentValue(index) : null;
   }
 
   @Override
@@ -146,17 +145,17 @@ public class RecordWrapper implements Map<String, Object>, ProxyObject {
 
   @Override
   public Set<String> keySet() {
-    return componentValues.keySet();
+    return type.keys;
   }
 
   @Override
   public Collection<Object> values() {
-    return componentValues.values();
+    return Collections.unmodifiableCollection(componentValues().values());
   }
 
   @Override
   public Set<Entry<String, Object>> entrySet() {
-    return componentValues.entrySet();
+    return Collections.unmodifiableMap(componentValues()).entrySet();
   }
 
   /**
@@ -224,8 +223,9 @@ public class RecordWrapper implements Map<String, Object>, ProxyObject {
     // First, check if this is a record component - return the cached value directly
     // This ensures record components are accessed as properties (person.name)
     // rather than methods (person.name())
-    if (componentValues.containsKey(key)) {
-      return componentValues.get(key);
+    int index = type.indexOf(key);
+    if (index >= 0) {
+      return componentValue(index);
     }
 
     // If not a component, check for custom methods on the record
@@ -256,44 +256,24 @@ public class RecordWrapper implements Map<String, Object>, ProxyObject {
 
   @Override
   public Object getMemberKeys() {
-    return componentValues.keySet().toArray();
+    return type.names.clone();
   }
 
   @Override
   public boolean hasMember(String key) {
     // Component value or a no-arg method with this name
-    return componentValues.containsKey(key) || findNoArgMethod(key) != null;
+    return type.indexOf(key) >= 0 || findNoArgMethod(key) != null;
   }
 
   /**
-   * Reflective no-arg method lookups are cached per record class; ClassValue keeps the cache
-   * GC-friendly with respect to class unloading. Misses are cached too, since hasMember probes
-   * arbitrary keys.
+   * Returns the public no-arg method of the record with the given name, such as a component
+   * accessor or a custom method. Lookups are cached per record class, misses included.
+   *
+   * @param name the method name
+   * @return the method, made accessible, or null if the record has no such method
    */
-  private static final ClassValue<Map<String, Optional<Method>>> NO_ARG_METHODS =
-      new ClassValue<>() {
-        @Override
-        protected Map<String, Optional<Method>> computeValue(Class<?> type) {
-          return new ConcurrentHashMap<>();
-        }
-      };
-
-  private Method findNoArgMethod(String key) {
-    Class<?> recordClass = record.getClass();
-    return NO_ARG_METHODS
-        .get(recordClass)
-        .computeIfAbsent(
-            key,
-            k -> {
-              try {
-                Method method = recordClass.getMethod(k);
-                method.setAccessible(true);
-                return Optional.of(method);
-              } catch (NoSuchMethodException e) {
-                return Optional.empty();
-              }
-            })
-        .orElse(null);
+  public Method findNoArgMethod(String name) {
+    return type.findNoArgMethod(name);
   }
 
   @Override
@@ -319,4 +299,82 @@ public class RecordWrapper implements Map<String, Object>, ProxyObject {
   public int hashCode() {
     return record.hashCode();
   }
+
+  /** The components and the method lookups of one record class. */
+  private static final class RecordType {
+    private final Class<?> recordClass;
+    private final String[] names;
+    private final MethodHandle[] accessors;
+    private final Map<String, Integer> indexes = new LinkedHashMap<>();
+    private final Set<String> keys = Collections.unmodifiableSet(indexes.keySet());
+    // Misses are cached too, since hasMember probes arbitrary keys.
+    private final Map<String, Optional<Method>> noArgMethods = new ConcurrentHashMap<>();
+
+    private RecordType(Class<?> recordClass) {
+      this.recordClass = recordClass;
+      List<String> names = new ArrayList<>();
+      List<MethodHandle> accessors = new ArrayList<>();
+      for (RecordComponent component : recordClass.getRecordComponents()) {
+        try {
+          Method accessor = component.getAccessor();
+          // Required for accessing records in different packages/modules
+          accessor.setAccessible(true);
+          MethodHandle handle =
+              MethodHandles.lookup()
+                  .unreflect(accessor)
+                  .asType(MethodType.methodType(Object.class, Object.class));
+          indexes.put(component.getName(), names.size());
+          names.add(component.getName());
+          accessors.add(handle);
+        } catch (IllegalAccessException | RuntimeException e) {
+          // This can happen if the record accessor is not accessible due to module restrictions
+          logger.warn(
+              "Cannot access record component '"
+                  + component.getName()
+                  + "' on record type "
+                  + recordClass.getName()
+                  + ": "
+                  + e.getMessage());
+        }
+      }
+      this.names = names.toArray(new String[0]);
+      this.accessors = accessors.toArray(new MethodHandle[0]);
+    }
+
+    private int indexOf(Object name) {
+      Integer index = indexes.get(name);
+      return index != null ? index : -1;
+    }
+
+    private Object read(Object record, int index) {
+      try {
+        return (Object) accessors[index].invokeExact(record);
+      } catch (Throwable e) {
+        // Unexpected error - log as error since this shouldn't happen with valid records
+        logger.error(
+            "Unexpected error accessing record component '"
+                + names[index]
+                + "' on record type "
+                + recordClass.getName(),
+            e);
+        return null;
+      }
+    }
+
+    private Method findNoArgMethod(String name) {
+      return noArgMethods
+          .computeIfAbsent(
+              name,
+              k -> {
+                try {
+                  Method method = recordClass.getMethod(k);
+                  method.setAccessible(true);
+                  return Optional.of(method);
+                } catch (NoSuchMethodException e) {
+                  return Optional.empty();
+                }
+              })
+          .orElse(null);
+    }
+  }
 }
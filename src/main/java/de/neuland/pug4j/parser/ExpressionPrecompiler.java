@@ -0,0 +1,119 @@
+package de.neuland.pug4j.parser;
+
+import de.neuland.pug4j.exceptions.ExpressionException;
+import de.neuland.pug4j.expression.CompiledExpression;
+import de.neuland.pug4j.expression.ExpressionHandler;
+import de.neuland.pug4j.parser.node.Attr;
+import de.neuland.pug4j.parser.node.AttrsNode;
+import de.neuland.pug4j.parser.node.CaseNode;
+import de.neuland.pug4j.parser.node.ConditionalNode;
+import de.neuland.pug4j.parser.node.EachNode;
+import de.neuland.pug4j.parser.node.ExpressionNode;
+import de.neuland.pug4j.parser.node.ExpressionString;
+import de.neuland.pug4j.parser.node.IfConditionNode;
+import de.neuland.pug4j.parser.node.Node;
+import de.neuland.pug4j.parser.node.WhileNode;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Post-parse pass that attaches compiled expressions to the nodes of a template, so rendering does
+ * not parse or look up expression sources again. Expressions the lexer already compiled while it
+ * checked them are taken from {@link Parser#getCompiledExpressions()}; the others, such as
+ * unbuffered code, which the lexer does not check, are compiled with {@link
+ * ExpressionHandler#compile(String)}. Those that fail to compile, like code that opens a block with
+ * a brace, are left alone; they are evaluated from source on render and report their error there,
+ * as before.
+ */
+public final class ExpressionPrecompiler {
+
+  private final ExpressionHandler expressionHandler;
+  private final Map<String, CompiledExpression> compiledExpressions;
+
+  private ExpressionPrecompiler(
+      ExpressionHandler expressionHandler, Map<String, CompiledExpression> compiledExpressions) {
+    this.expressionHandler = expressionHandler;
+    this.compiledExpressions = compiledExpressions;
+  }
+
+  /**
+   * Compiles the expressions of all nodes below a root node.
+   *
+   * @param rootNode the root node of a parsed template
+   * @param expressionHandler the expression handler the template is rendered with
+   */
+  public static void precompile(Node rootNode, ExpressionHandler expressionHandler) {
+    precompile(rootNode, expressionHandler, Collections.emptyMap());
+  }
+
+  /**
+   * Attaches the expressions the parser compiled to the nodes below a root node and compiles the
+   * remaining ones.
+   *
+   * @param rootNode the root node of a parsed template
+   * @param expressionHandler the expression handler the template is rendered with
+   * @param compiledExpressions the expressions compiled during parsing, by source
+   */
+  public static void precompile(
+      Node rootNode,
+      ExpressionHandler expressionHandler,
+      Map<String, CompiledExpression> compiledExpressions) {
+    new ExpressionPrecompiler(expressionHandler, compiledExpressions).visit(rootNode);
+  }
+
+  private void visit(Node node) {
+    if (node == null) {
+      return;
+    }
+    if (node instanceof ExpressionNode) {
+      // code with a block or a closing brace is concatenated with its siblings on render
+      if (!node.hasBlock() && !node.getValue().trim().startsWith("}")) {
+        node.setCompiledExpression(compile(node.getValue()));
+      }
+    } else if (node instanceof WhileNode) {
+      node.setCompiledExpression(compile(node.getValue()));
+    } else if (node instanceof EachNode) {
+      node.setCompiledExpression(compile(((EachNode) node).getCode()));
+      visit(((EachNode) node).getElseNode());
+    } else if (node instanceof ConditionalNode) {
+      for (IfConditionNode condition : ((ConditionalNode) node).getConditions()) {
+        if (!condition.isDefault()) {
+          condition.setCompiledExpression(compile(condition.getValue()));
+        }
+        visit(condition);
+      }
+    } else if (node instanceof CaseNode && node.hasBlock()) {
+      for (Node when : node.getBlock().getNodes()) {
+        if (!"default".equals(when.getValue())) {
+          when.setCompiledExpression(
+              compile(CaseNode.comparison(node.getValue(), when.getValue())));
+        }
+      }
+    } else if (node instanceof AttrsNode) {
+      for (Attr attribute : ((AttrsNode) node).getAttributes()) {
+        if (attribute.getValue() instanceof ExpressionString) {
+          ExpressionString expression = (ExpressionString) attribute.getValue();
+          expression.setCompiledExpression(compile(expression.getValue()));
+        }
+      }
+    }
+    for (Node child : node.getNodes()) {
+      visit(child);
+    }
+    visit(node.getBlock());
+  }
+
+  private CompiledExpression compile(String expression) {
+    if (expression == null) {
+      return null;
+    }
+    if (compiledExpressions.containsKey(expression)) {
+      return compiledExpressions.get(expression);
+    }
+    try {
+      return expressionHandler.compile(expression);
+    } catch (ExpressionException e) {
+      return null;
+    }
+  }
+}
@@ -2,6 +2,7 @@ package de.neuland.pug4j.parser;
 
 import de.neuland.pug4j.exceptions.PugParserException;
 import de.neuland.pug4j.exceptions.TemplateSource;
+import de.neuland.pug4j.expression.CompiledExpression;
 import de.neuland.pug4j.expression.ExpressionHandler;
 import de.neuland.pug4j.lexer.Lexer;
 import de.neuland.pug4j.lexer.token.*;
@@ -33,6 +34,8 @@ public class Parser {
   private Map<String, MixinNode> mixins = new HashMap<>();
   private final PathHelper pathHelper = new PathHelper();
   private Node extendingNode;
+  private LinkedHashMap<String, Long> dependencies = new LinkedHashMap<>();
+  private Map<String, CompiledExpression> compiledExpressions;
 
   public Parser(String filename, TemplateLoader templateLoader, ExpressionHandler expressionHandler)
       throws IOException {
@@ -40,6 +43,7 @@ public class Parser {
     this.templateLoader = templateLoader;
     this.expressionHandler = expressionHandler;
     lexer = new Lexer(filename, templateLoader, expressionHandler);
+    compiledExpressions = lexer.getCompiledExpressions();
     getContexts().push(this);
   }
 
@@ -53,6 +57,7 @@ public class Parser {
     this.templateLoader = templateLoader;
     this.expressionHandler = expressionHandler;
     lexer = new Lexer(src, filename, templateLoader, expressionHandler);
+    compiledExpressions = lexer.getCompiledExpressions();
     getContexts().push(this);
   }
 
@@ -419,6 +424,7 @@ public class Parser {
 
     try {
       if (!filters.isEmpty()) {
+        addDependency(path);
         Reader reader = templateLoader.getReader(path);
         FilterNode node = new FilterNode();
         node.setFilter(filters);
@@ -448,6 +454,7 @@ public class Parser {
     String extension = FilenameUtils.getExtension(path);
     if (!templateLoader.getExtension().equals(extension) && !extension.isEmpty()) {
       try {
+        addDependency(path);
         Reader reader = templateLoader.getReader(path);
         LiteralNode node = new LiteralNode();
         node.setLineNumber(pathToken.getStartLineNumber());
@@ -514,7 +521,12 @@ public class Parser {
                 + "] could not be opened. Maybe outside template path.",
             templateLines());
       }
-      return new Parser(resolvedPath, templateLoader, expressionHandler);
+      Parser parser = new Parser(resolvedPath, templateLoader, expressionHandler);
+      parser.dependencies = dependencies;
+      parser.compiledExpressions = compiledExpressions;
+      parser.lexer.setCompiledExpressions(compiledExpressions);
+      addDependency(resolvedPath);
+      return parser;
     } catch (IOException e) {
       throw new PugParserException(
           this.filename,
@@ -525,6 +537,14 @@ public class Parser {
     }
   }
 
+  private void addDependency(String path) {
+    try {
+      dependencies.put(path, templateLoader.getLastModified(path));
+    } catch (IOException e) {
+      // files without a modification time cannot be checked for changes
+    }
+  }
+
   private String ensurePugExtension(String templateName) {
     if (!templateLoader.getExtension().equals(FilenameUtils.getExtension(templateName))) {
       return templateName + "." + templateLoader.getExtension();
@@ -1144,6 +1164,26 @@ public class Parser {
     this.blocks = blocks;
   }
 
+  /**
+   * Returns the files this template pulled in through includes and extends, directly or through
+   * other included files, with their modification times at the time they were parsed.
+   *
+   * @return the modification times of the included and extended files by path
+   */
+  public LinkedHashMap<String, Long> getDependencies() {
+    return dependencies;
+  }
+
+  /**
+   * Returns the expressions the lexer compiled while it checked this template and the files it
+   * includes and extends, by source, for {@link ExpressionPrecompiler}.
+   *
+   * @return the compiled expressions by source
+   */
+  public Map<String, CompiledExpression> getCompiledExpressions() {
+    return compiledExpressions;
+  }
+
   public LinkedList<Parser> getContexts() {
     return contexts;
   }
@@ -1,5 +1,6 @@
 package de.neuland.pug4j.parser.node;
 
+import de.neuland.pug4j.compiler.StaticAttributes;
 import java.util.*;
 
 public abstract class AttrsNode extends Node {
@@ -10,6 +11,8 @@ public abstract class AttrsNode extends Node {
 
   protected boolean selfClosing = false;
   private boolean textOnly;
+  // Computed by the AttributesCompiler on first render.
+  private StaticAttributes staticAttributes;
 
   public void setAttribute(String key, Object value, boolean escaped) {
     if (!"class".equals(key) && this.attributeNames.contains(key)) {
@@ -18,6 +21,7 @@ public abstract class AttrsNode extends Node {
     this.attributeNames.add(key);
     Attr attr = new Attr(key, value, escaped);
     this.attributes.add(attr);
+    this.staticAttributes = null;
   }
 
   @Override
@@ -36,6 +40,7 @@ public abstract class AttrsNode extends Node {
 
   public void addAttributes(String src) {
     this.attributeBlocks.add(src);
+    this.staticAttributes = null;
   }
 
   public void setSelfClosing(boolean selfClosing) {
@@ -61,4 +66,23 @@ public abstract class AttrsNode extends Node {
   public LinkedList<String> getAttributeBlocks() {
     return attributeBlocks;
   }
+
+  /**
+   * Returns the rendered constant attributes, or null before the first render. Internal to the
+   * compiler, not part of the public API.
+   *
+   * @return the rendered constant attributes, or null
+   */
+  public StaticAttributes getStaticAttributes() {
+    return staticAttributes;
+  }
+
+  /**
+   * Keeps the rendered constant attributes. Internal to the compiler, not part of the public API.
+   *
+   * @param staticAttributes the rendered constant attributes
+   */
+  public void setStaticAttributes(StaticAttributes staticAttributes) {
+    this.staticAttributes = staticAttributes;
+  }
 }
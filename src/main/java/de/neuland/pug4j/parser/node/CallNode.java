@@ -14,6 +14,11 @@ public class CallNode extends AttrsNode {
   protected List<String> arguments = new ArrayList<>();
   private boolean call = false;
 
+  /**
+   * @deprecated The compiler binds the caller's block to the {@code block} statements of a mixin
+   *     when the mixin is rendered and no longer copies the mixin to inject it.
+   */
+  @Deprecated
   public List<MixinBlockNode> getInjectionPoints(Node block) {
     List<MixinBlockNode> result = new ArrayList<>();
     for (Node node : block.getNodes()) {
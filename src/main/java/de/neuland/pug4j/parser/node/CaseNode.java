@@ -3,6 +3,7 @@ package de.neuland.pug4j.parser.node;
 import de.neuland.pug4j.compiler.IndentWriter;
 import de.neuland.pug4j.compiler.NodeVisitor;
 import de.neuland.pug4j.exceptions.ExpressionException;
+import de.neuland.pug4j.expression.CompiledExpression;
 import de.neuland.pug4j.expression.ExpressionHandler;
 import de.neuland.pug4j.model.PugModel;
 
@@ -18,8 +19,17 @@ public class CaseNode extends Node {
   public Boolean checkCondition(
       PugModel model, Node caseConditionNode, ExpressionHandler expressionHandler)
       throws ExpressionException {
+    CompiledExpression compiledExpression = caseConditionNode.getCompiledExpression();
+    if (compiledExpression != null) {
+      return compiledExpression.evaluateBoolean(model);
+    }
     return expressionHandler.evaluateBooleanExpression(
-        value + " == " + caseConditionNode.getValue(), model);
+        comparison(value, caseConditionNode.getValue()), model);
+  }
+
+  /** Returns the expression that checks whether the case value matches a when value. */
+  public static String comparison(String caseValue, String whenValue) {
+    return caseValue + " == " + whenValue;
   }
 
   @Override
@@ -3,6 +3,7 @@ package de.neuland.pug4j.parser.node;
 import de.neuland.pug4j.compiler.IndentWriter;
 import de.neuland.pug4j.compiler.NodeVisitor;
 import de.neuland.pug4j.exceptions.ExpressionException;
+import de.neuland.pug4j.expression.CompiledExpression;
 import de.neuland.pug4j.expression.ExpressionHandler;
 import de.neuland.pug4j.model.PugModel;
 import java.util.Collections;
@@ -20,6 +21,17 @@ public class ConditionalNode extends Node {
     return value != null && value;
   }
 
+  public boolean checkCondition(
+      PugModel model, IfConditionNode condition, ExpressionHandler expressionHandler)
+      throws ExpressionException {
+    CompiledExpression compiledExpression = condition.getCompiledExpression();
+    if (compiledExpression == null) {
+      return checkCondition(model, condition.getValue(), expressionHandler);
+    }
+    Boolean value = compiledExpression.evaluateBoolean(model);
+    return value != null && value;
+  }
+
   public List<IfConditionNode> getConditions() {
     return Collections.unmodifiableList(conditions);
   }
@@ -102,6 +102,7 @@ public class EachNode extends Node {
 
   public void setCode(String code) {
     this.code = code;
+    setCompiledExpression(null);
   }
 
   public String getKey() {
@@ -116,6 +117,10 @@ public class EachNode extends Node {
     this.elseNode = elseNode;
   }
 
+  public Node getElseNode() {
+    return elseNode;
+  }
+
   @Override
   public void accept(NodeVisitor visitor, IndentWriter writer, PugModel model) {
     visitor.visit(this, writer, model);
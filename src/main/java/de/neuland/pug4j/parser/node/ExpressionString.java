@@ -1,7 +1,10 @@
 package de.neuland.pug4j.parser.node;
 
+import de.neuland.pug4j.expression.CompiledExpression;
+
 public class ExpressionString {
   private String value = null;
+  private CompiledExpression compiledExpression;
 
   public ExpressionString(String value) {
     this.value = value;
@@ -13,5 +16,14 @@ public class ExpressionString {
 
   public void setValue(String value) {
     this.value = value;
+    this.compiledExpression = null;
+  }
+
+  public CompiledExpression getCompiledExpression() {
+    return compiledExpression;
+  }
+
+  public void setCompiledExpression(CompiledExpression compiledExpression) {
+    this.compiledExpression = compiledExpression;
   }
 }
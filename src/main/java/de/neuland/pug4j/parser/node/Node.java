@@ -2,6 +2,7 @@ package de.neuland.pug4j.parser.node;
 
 import de.neuland.pug4j.compiler.IndentWriter;
 import de.neuland.pug4j.compiler.NodeVisitor;
+import de.neuland.pug4j.expression.CompiledExpression;
 import de.neuland.pug4j.model.PugModel;
 import java.util.LinkedList;
 
@@ -14,6 +15,7 @@ public abstract class Node implements Cloneable {
   protected String value;
   protected Node block;
   protected String fileName;
+  private CompiledExpression compiledExpression;
 
   public boolean isTextNode(Node node) {
     return node instanceof TextNode
@@ -31,6 +33,7 @@ public abstract class Node implements Cloneable {
 
   public void setValue(String value) {
     this.value = value;
+    this.compiledExpression = null;
   }
 
   public String getValue() {
@@ -80,6 +83,18 @@ public abstract class Node implements Cloneable {
     this.block = block;
   }
 
+  /**
+   * Returns the compiled form of the expression this node evaluates on render, or null if it has
+   * not been compiled. Set by {@link de.neuland.pug4j.parser.ExpressionPrecompiler}.
+   */
+  public CompiledExpression getCompiledExpression() {
+    return compiledExpression;
+  }
+
+  public void setCompiledExpression(CompiledExpression compiledExpression) {
+    this.compiledExpression = compiledExpression;
+  }
+
   public String getFileName() {
     return fileName;
   }
@@ -3,6 +3,7 @@ package de.neuland.pug4j.parser.node;
 import de.neuland.pug4j.PugConfiguration;
 import de.neuland.pug4j.compiler.IndentWriter;
 import de.neuland.pug4j.compiler.NodeVisitor;
+import de.neuland.pug4j.compiler.StaticFragment;
 import de.neuland.pug4j.exceptions.ExpressionException;
 import de.neuland.pug4j.exceptions.PugCompilerException;
 import de.neuland.pug4j.exceptions.TemplateSource;
@@ -37,6 +38,7 @@ public class TagNode extends AttrsNode {
           "samp", "small", "span", "strong", "sub", "sup");
   private static final Set<String> whitespaceSensitiveTags = Set.of("pre", "textarea");
   private boolean interpolated = false;
+  private StaticFragment staticFragment;
 
   public TagNode() {
     this.block = new BlockNode();
@@ -130,6 +132,25 @@ public class TagNode extends AttrsNode {
     this.interpolated = interpolated;
   }
 
+  /**
+   * Returns the cached markup holder if this tag and its whole subtree are static, null otherwise.
+   * Internal to the compiler, not part of the public API.
+   *
+   * @return the cached markup holder, or null
+   */
+  public StaticFragment getStaticFragment() {
+    return staticFragment;
+  }
+
+  /**
+   * Marks this tag as static. Internal to the compiler, not part of the public API.
+   *
+   * @param staticFragment the cached markup holder
+   */
+  public void setStaticFragment(StaticFragment staticFragment) {
+    this.staticFragment = staticFragment;
+  }
+
   @Override
   public void accept(NodeVisitor visitor, IndentWriter writer, PugModel model) {
     visitor.visit(this, writer, model);
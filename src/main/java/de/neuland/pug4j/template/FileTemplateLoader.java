@@ -5,19 +5,26 @@ import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class FileTemplateLoader implements TemplateLoader {
+public class FileTemplateLoader implements TemplateLoader, Closeable {
 
   private final String separator = FileSystems.getDefault().getSeparator();
   private Charset encoding = StandardCharsets.UTF_8;
   private Path templateLoaderPath = null;
   private String extension = "pug";
   private String basePath = "";
+  private ModificationCheck modificationCheck = ModificationCheck.STAT;
+  private final ConcurrentHashMap<Path, Long> modificationTimes = new ConcurrentHashMap<>();
+  // only written by the watcher thread, read on every template lookup
+  private volatile long generation;
+  private WatchService watchService;
   private Logger logger = LoggerFactory.getLogger(this.getClass());
 
   public FileTemplateLoader() {}
@@ -75,9 +82,135 @@ public class FileTemplateLoader implements TemplateLoader {
 
   public long getLastModified(String name) throws IOException {
     Path filepath = getFilepath(name);
+    if (modificationCheck == ModificationCheck.STAT) {
+      return readLastModified(filepath);
+    }
+    try {
+      // computed under the map's lock, so a change event cannot slip in between the read and
+      // storing the time
+      return modificationTimes.computeIfAbsent(
+          filepath,
+          path -> {
+            try {
+              return readLastModified(path);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private long readLastModified(Path filepath) throws IOException {
     return Files.getLastModifiedTime(filepath).to(TimeUnit.MILLISECONDS);
   }
 
+  /**
+   * Returns how the loader finds out that template files were modified.
+   *
+   * @return the modification check
+   * @since 3.1.0
+   */
+  public ModificationCheck getModificationCheck() {
+    return modificationCheck;
+  }
+
+  /**
+   * Returns a counter that the loader increments when it watches the template directory and a
+   * template file, or a file a template was loaded from, changes. The engine compares it with the
+   * value it saw when it last checked a cached template, so as long as it is unchanged no template
+   * needs to be checked for modifications.
+   *
+   * @return the change counter, always 0 unless the loader watches for changes
+   * @see ModificationCheck#WATCH
+   * @since 3.1.0
+   */
+  public long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Stops watching the template directory, if the loader watches it for changes.
+   *
+   * @since 3.1.0
+   */
+  @Override
+  public void close() throws IOException {
+    if (watchService != null) {
+      watchService.close();
+    }
+  }
+
+  private void startWatching() {
+    try {
+      watchService = templateLoaderPath.getFileSystem().newWatchService();
+      register(templateLoaderPath);
+    } catch (IOException e) {
+      throw new PugTemplateLoaderException(
+          "Cannot watch template directory '" + templateLoaderPath + "': " + e.getMessage());
+    }
+    Thread watcher = new Thread(this::watch, "pug4j-template-watcher");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  private void register(Path directory) throws IOException {
+    Files.walkFileTree(
+        directory,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes)
+              throws IOException {
+            dir.register(
+                watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  private void watch() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            changed(templateLoaderPath);
+            continue;
+          }
+          Path path = directory.resolve((Path) event.context());
+          if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+            try {
+              register(path);
+            } catch (IOException e) {
+              logger.warn("Cannot watch template directory " + path, e);
+            }
+          }
+          changed(path);
+        }
+        if (!key.reset()) {
+          changed(directory);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      // closed by close()
+    }
+  }
+
+  void changed(Path path) {
+    boolean loaded = modificationTimes.keySet().removeIf(file -> file.startsWith(path));
+    // Other files, like editor swap files, do not affect the cached templates
+    if (loaded || extension.equals(FilenameUtils.getExtension(path.toString()))) {
+      generation++;
+    }
+  }
+
   @Override
   public Reader getReader(String name) throws IOException {
     if (name == null) {
@@ -148,6 +281,7 @@ public class FileTemplateLoader implements TemplateLoader {
     private Charset encoding = StandardCharsets.UTF_8;
     private String extension = "pug";
     private String basePath = "";
+    private ModificationCheck modificationCheck = ModificationCheck.STAT;
 
     /**
      * Sets the template loader path as a String. The path will be converted to an absolute Path.
@@ -220,11 +354,31 @@ public class FileTemplateLoader implements TemplateLoader {
       return this;
     }
 
+    /**
+     * Sets how the loader finds out that template files were modified. Defaults to {@link
+     * ModificationCheck#STAT}; {@link ModificationCheck#WATCH} requires a templateLoaderPath.
+     * A watching loader starts a daemon thread with a {@link java.nio.file.WatchService} that is
+     * only released by {@link FileTemplateLoader#close()}, so it must be closed when it is no
+     * longer used.
+     *
+     * @param modificationCheck the modification check
+     * @return this builder for method chaining
+     * @since 3.1.0
+     */
+    public Builder modificationCheck(ModificationCheck modificationCheck) {
+      if (modificationCheck == null) {
+        throw new IllegalArgumentException("modificationCheck cannot be null");
+      }
+      this.modificationCheck = modificationCheck;
+      return this;
+    }
+
     /**
      * Builds a new FileTemplateLoader instance with the configured settings.
      *
-     * @return a new FileTemplateLoader
-     * @throws PugTemplateLoaderException if templateLoaderPath is not set or is not a directory
+     * @return a new FileTemplateLoader, to be closed if it watches for modifications
+     * @throws PugTemplateLoaderException if templateLoaderPath is not set or is not a directory,
+     *     or if it cannot be watched for changes
      */
     public FileTemplateLoader build() {
       FileTemplateLoader loader;
@@ -239,6 +393,15 @@ public class FileTemplateLoader implements TemplateLoader {
         loader.setBase(basePath);
       }
 
+      loader.modificationCheck = modificationCheck;
+      if (modificationCheck == ModificationCheck.WATCH) {
+        if (templateLoaderPath == null) {
+          throw new PugTemplateLoaderException(
+              "templateLoaderPath cannot be null when watching for modifications");
+        }
+        loader.startWatching();
+      }
+
       return loader;
     }
   }
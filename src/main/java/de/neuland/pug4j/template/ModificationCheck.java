@@ -0,0 +1,27 @@
+package de.neuland.pug4j.template;
+
+/**
+ * How a {@link FileTemplateLoader} finds out that template files were modified, which decides when
+ * cached templates are parsed again.
+ *
+ * @see FileTemplateLoader.Builder#modificationCheck(ModificationCheck)
+ * @since 3.1.0
+ */
+public enum ModificationCheck {
+  /** Reads the modification time of a template file from the file system on every lookup. */
+  STAT,
+
+  /**
+   * Reads the modification time of a template file once and keeps it in memory. A {@link
+   * java.nio.file.WatchService} on the template directory drops the kept time when the file
+   * changes and increments the {@link FileTemplateLoader#getGeneration() generation} of the loader
+   * for template files, so lookups do not touch the file system.
+   */
+  WATCH,
+
+  /**
+   * Reads the modification time of a template file once and never again. For template directories
+   * that do not change while the application is running.
+   */
+  NEVER
+}
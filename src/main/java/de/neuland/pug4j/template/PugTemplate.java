@@ -4,20 +4,32 @@ import de.neuland.pug4j.Pug4J.Mode;
 import de.neuland.pug4j.PugConfiguration;
 import de.neuland.pug4j.PugEngine;
 import de.neuland.pug4j.RenderContext;
+import de.neuland.pug4j.compiler.CompilationMode;
+import de.neuland.pug4j.compiler.CompiledTemplate;
 import de.neuland.pug4j.compiler.Compiler;
+import de.neuland.pug4j.compiler.StaticFragment;
 import de.neuland.pug4j.exceptions.PugCompilerException;
 import de.neuland.pug4j.model.PugModel;
 import de.neuland.pug4j.parser.node.DoctypeNode;
 import de.neuland.pug4j.parser.node.Node;
+import java.io.IOException;
 import java.io.Writer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 @SuppressWarnings({"deprecation", "removal"})
 public class PugTemplate {
 
   private Node rootNode;
+  private String name;
   private boolean terse = false;
   private boolean xml = false;
   private boolean doctypePresent = false;
+  private Map<String, Long> dependencies = Collections.emptyMap();
+  // One slot per compilation mode and terse/xml/pretty print variant.
+  private final AtomicReferenceArray<CompiledTemplate> compiledTemplates =
+      new AtomicReferenceArray<>(CompilationMode.values().length << 3);
 
   public PugTemplate() {}
 
@@ -34,12 +46,33 @@ public class PugTemplate {
     return rootNode;
   }
 
+  /**
+   * Returns the name the template was loaded with by {@link PugEngine#getTemplate(String)}.
+   *
+   * @return the template name, or null if the template was not loaded by an engine
+   * @since 3.1.0
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Sets the name the template was loaded with. Called by {@link PugEngine#getTemplate(String)}.
+   *
+   * @param name the template name
+   * @since 3.1.0
+   */
+  public void setName(String name) {
+    this.name = name;
+  }
+
   private void setRootNode(Node rootNode) {
     final Node peek = rootNode.getNodes().peek();
     if (peek instanceof DoctypeNode) {
       DoctypeNode doctypeNode = (DoctypeNode) peek;
       setDoctype(doctypeNode.getValue());
     }
+    StaticFragment.fold(rootNode);
     this.rootNode = rootNode;
   }
 
@@ -68,6 +101,77 @@ public class PugTemplate {
     return doctypePresent;
   }
 
+  /**
+   * Returns the files this template includes or extends, with their modification times at the time
+   * the template was parsed.
+   *
+   * @return the modification times of the included and extended files by path
+   * @since 3.1.0
+   */
+  public Map<String, Long> getDependencies() {
+    return dependencies;
+  }
+
+  /**
+   * Sets the files this template includes or extends, with their modification times at the time
+   * the template was parsed. Called by {@link PugEngine#getTemplate(String)}.
+   *
+   * @param dependencies the modification times of the included and extended files by path
+   * @since 3.1.0
+   */
+  public void setDependencies(Map<String, Long> dependencies) {
+    if (dependencies == null) {
+      throw new IllegalArgumentException("Dependencies cannot be null");
+    }
+    this.dependencies = Collections.unmodifiableMap(dependencies);
+  }
+
+  /**
+   * Checks whether any file this template includes or extends was modified since the template was
+   * parsed. A file that cannot be read any more counts as modified.
+   *
+   * @param templateLoader the loader the template was parsed with
+   * @return true if the template has to be parsed again
+   * @since 3.1.0
+   */
+  public boolean hasModifiedDependencies(TemplateLoader templateLoader) {
+    for (Map.Entry<String, Long> dependency : dependencies.entrySet()) {
+      try {
+        if (templateLoader.getLastModified(dependency.getKey()) != dependency.getValue()) {
+          return true;
+        }
+      } catch (IOException e) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns this template compiled for the given output variant, compiling it on first use. The
+   * compiled form is kept with the template, so it is dropped together with it when the template
+   * is evicted from the engine's cache.
+   *
+   * @param mode the compilation mode, must not be {@link CompilationMode#NONE}
+   * @param terse whether the output uses HTML5 terse attributes and void tags
+   * @param xml whether the output is XML
+   * @param prettyPrint whether the output is pretty printed
+   * @return the compiled template
+   * @since 3.1.0
+   */
+  public CompiledTemplate getCompiledTemplate(
+      CompilationMode mode, boolean terse, boolean xml, boolean prettyPrint) {
+    int slot = mode.ordinal() << 3 | (terse ? 4 : 0) | (xml ? 2 : 0) | (prettyPrint ? 1 : 0);
+    CompiledTemplate compiledTemplate = compiledTemplates.get(slot);
+    if (compiledTemplate == null) {
+      // Compiling is idempotent, so concurrent first renders may race; the first result wins.
+      compiledTemplates.compareAndSet(
+          slot, null, CompiledTemplate.compile(rootNode, mode, terse, xml, prettyPrint));
+      compiledTemplate = compiledTemplates.get(slot);
+    }
+    return compiledTemplate;
+  }
+
   /**
    * Deprecated in favor of rendering via PugEngine/RenderContext.
    *
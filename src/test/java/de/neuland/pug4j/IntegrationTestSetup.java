@@ -2,6 +2,7 @@ package de.neuland.pug4j;
 
 import static org.junit.Assert.assertEquals;
 
+import de.neuland.pug4j.compiler.CompilationMode;
 import de.neuland.pug4j.expression.ExpressionHandler;
 import de.neuland.pug4j.expression.JexlExpressionHandler;
 import de.neuland.pug4j.filter.CDATAFilter;
@@ -132,6 +133,24 @@ public class IntegrationTestSetup {
     return forPug4JTests("cases");
   }
 
+  /**
+   * Creates an integration test setup for cases tests that renders in the given compilation mode.
+   *
+   * @param compilationMode the compilation mode of the engine
+   * @return configured IntegrationTestSetup for cases
+   * @throws FileNotFoundException if the resource path cannot be found
+   * @throws URISyntaxException if the URI syntax is invalid
+   */
+  public static IntegrationTestSetup forCases(CompilationMode compilationMode)
+      throws FileNotFoundException, URISyntaxException {
+    return new IntegrationTestSetup(
+        TestFileHelper.getPug4JTestsResourcePath(""),
+        "cases",
+        "pug",
+        new JexlExpressionHandler(),
+        builder -> builder.compilationMode(compilationMode));
+  }
+
   /**
    * Gets the configured PugEngine instance.
    *
@@ -216,4 +235,22 @@ public class IntegrationTestSetup {
     }
     return data;
   }
+
+  /**
+   * Repeats the test data of parameterized tests for every compilation mode, so each case is
+   * rendered by the interpreter, the render plan and the generated bytecode.
+   *
+   * @param data the test data, one template filename per entry
+   * @return the test data with the compilation mode as second parameter
+   */
+  @NotNull
+  public static Collection<Object[]> withCompilationModes(Collection<String[]> data) {
+    Collection<Object[]> modeData = new ArrayList<Object[]>();
+    for (String[] entry : data) {
+      for (CompilationMode compilationMode : CompilationMode.values()) {
+        modeData.add(new Object[] {entry[0], compilationMode});
+      }
+    }
+    return modeData;
+  }
 }
@@ -4,10 +4,24 @@ import static org.junit.Assert.*;
 
 import de.neuland.pug4j.expression.JexlExpressionHandler;
 import de.neuland.pug4j.template.FileTemplateLoader;
+import de.neuland.pug4j.template.ModificationCheck;
+import de.neuland.pug4j.template.PugTemplate;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class PugEngineCacheTest {
 
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
   @Test
   public void testDefaultCacheSize() {
     PugEngine engine = PugEngine.builder().build();
@@ -117,4 +131,99 @@ public class PugEngineCacheTest {
     // Engine configuration should remain unchanged
     assertTrue(engine.isCaching());
   }
+
+  @Test
+  public void testChangedIncludeInvalidatesCachedTemplate() throws Exception {
+    Path dir = folder.getRoot().toPath();
+    write(dir.resolve("page.pug"), "include header\ninclude:cdata raw.txt\n", 1000);
+    write(dir.resolve("header.pug"), "h1 old", 1000);
+    write(dir.resolve("raw.txt"), "raw", 1000);
+    PugEngine engine = PugEngine.forPath(dir);
+
+    PugTemplate template = engine.getTemplate("page.pug");
+    assertEquals(2, template.getDependencies().size());
+    assertSame(template, engine.getTemplate("page.pug"));
+    assertEquals("<h1>old</h1><![CDATA[raw]]>", engine.render(template, new HashMap<>()));
+
+    write(dir.resolve("header.pug"), "h1 new", 2000);
+    PugTemplate reloaded = engine.getTemplate("page.pug");
+    assertNotSame(template, reloaded);
+    assertEquals("<h1>new</h1><![CDATA[raw]]>", engine.render(reloaded, new HashMap<>()));
+    assertSame(reloaded, engine.getTemplate("page.pug"));
+  }
+
+  @Test
+  public void testChangedLayoutInvalidatesCachedTemplate() throws Exception {
+    Path dir = folder.getRoot().toPath();
+    write(dir.resolve("page.pug"), "extends layout\nblock content\n  p page", 1000);
+    write(dir.resolve("layout.pug"), "div\n  block content", 1000);
+    PugEngine engine = PugEngine.forPath(dir);
+
+    PugTemplate template = engine.getTemplate("page.pug");
+    assertEquals("<div><p>page</p></div>", engine.render(template, new HashMap<>()));
+
+    write(dir.resolve("layout.pug"), "main\n  block content", 2000);
+    assertEquals(
+        "<main><p>page</p></main>",
+        engine.render(engine.getTemplate("page.pug"), new HashMap<>()));
+  }
+
+  @Test
+  public void testTemplateUpdateDelaySkipsModificationChecks() throws Exception {
+    Path dir = folder.getRoot().toPath();
+    write(dir.resolve("page.pug"), "include header", 1000);
+    write(dir.resolve("header.pug"), "h1 old", 1000);
+    PugEngine engine =
+        PugEngine.builder()
+            .templateLoader(new FileTemplateLoader(dir))
+            .templateUpdateDelay(ChronoUnit.FOREVER.getDuration())
+            .build();
+
+    PugTemplate template = engine.getTemplate("page.pug");
+    write(dir.resolve("page.pug"), "p new", 2000);
+    write(dir.resolve("header.pug"), "h1 new", 2000);
+    assertSame(template, engine.getTemplate("page.pug"));
+
+    engine.clearCache();
+    assertEquals("<p>new</p>", engine.render(engine.getTemplate("page.pug"), new HashMap<>()));
+  }
+
+  @Test
+  public void testWatchedIncludeChangeReachesGetTemplate() throws Exception {
+    Path dir = folder.getRoot().toPath();
+    write(dir.resolve("page.pug"), "include header", 1000);
+    write(dir.resolve("header.pug"), "h1 old", 1000);
+    try (FileTemplateLoader templateLoader =
+        FileTemplateLoader.builder()
+            .templateLoaderPath(dir)
+            .modificationCheck(ModificationCheck.WATCH)
+            .build()) {
+      PugEngine engine = PugEngine.builder().templateLoader(templateLoader).build();
+
+      PugTemplate template = engine.getTemplate("page.pug");
+      assertSame(template, engine.getTemplate("page.pug"));
+
+      write(dir.resolve("header.pug"), "h1 new", 2000);
+      // some platforms poll for changes instead of being notified
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+      PugTemplate reloaded = engine.getTemplate("page.pug");
+      while (reloaded == template) {
+        assertTrue(System.nanoTime() < deadline);
+        Thread.sleep(10);
+        reloaded = engine.getTemplate("page.pug");
+      }
+      assertEquals("<h1>new</h1>", engine.render(reloaded, new HashMap<>()));
+      assertSame(reloaded, engine.getTemplate("page.pug"));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTemplateUpdateDelayNegative() {
+    PugEngine.builder().templateUpdateDelay(Duration.ofSeconds(-1));
+  }
+
+  private void write(Path file, String content, long lastModified) throws IOException {
+    Files.writeString(file, content);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+  }
 }
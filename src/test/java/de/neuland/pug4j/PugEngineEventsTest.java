@@ -0,0 +1,90 @@
+package de.neuland.pug4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import de.neuland.pug4j.template.FileTemplateLoader;
+import de.neuland.pug4j.template.PugTemplate;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+public class PugEngineEventsTest {
+
+  @Test
+  public void recordsParseCacheMissAndRender() throws Exception {
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("pug4j.TemplateParse");
+      recording.enable("pug4j.CacheMiss");
+      recording.enable("pug4j.TemplateRender");
+      recording.start();
+
+      PugEngine engine = engine();
+      PugTemplate template = engine.getTemplate("nested_tags");
+      engine.getTemplate("nested_tags");
+      String html = engine.render(template, new HashMap<>());
+
+      recording.stop();
+      events = events(recording);
+
+      RecordedEvent render = single(events, "pug4j.TemplateRender");
+      assertEquals("nested_tags", render.getString("template"));
+      assertEquals(html.length(), render.getLong("charsWritten"));
+    }
+
+    RecordedEvent parse = single(events, "pug4j.TemplateParse");
+    assertEquals("nested_tags", parse.getString("template"));
+    assertTrue(parse.getInt("nodeCount") > 1);
+    assertEquals(0, parse.getInt("includeCount"));
+    assertEquals("nested_tags", single(events, "pug4j.CacheMiss").getString("template"));
+  }
+
+  @Test
+  public void countsIncludes() throws Exception {
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable("pug4j.TemplateParse");
+      recording.start();
+
+      engine().getTemplate("include_1");
+
+      recording.stop();
+      events = events(recording);
+    }
+
+    assertEquals(1, single(events, "pug4j.TemplateParse").getInt("includeCount"));
+  }
+
+  private static PugEngine engine() throws Exception {
+    return PugEngine.builder()
+        .templateLoader(
+            new FileTemplateLoader(TestFileHelper.getCompilerResourcePath(""), "jade"))
+        .build();
+  }
+
+  private static List<RecordedEvent> events(Recording recording) throws Exception {
+    Path file = Files.createTempFile("pug4j", ".jfr");
+    try {
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static RecordedEvent single(List<RecordedEvent> events, String name) {
+    List<RecordedEvent> matching =
+        events.stream()
+            .filter(event -> event.getEventType().getName().equals(name))
+            .collect(Collectors.toList());
+    assertEquals(name + " in " + events, 1, matching.size());
+    return matching.get(0);
+  }
+}
@@ -0,0 +1,152 @@
+package de.neuland.pug4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import de.neuland.pug4j.template.FileTemplateLoader;
+import de.neuland.pug4j.template.PugTemplate;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class PugEngineListenerTest {
+
+  private final RecordingListener listener = new RecordingListener();
+
+  @Test
+  public void reportsCacheMissesAndHits() throws Exception {
+    PugEngine engine = engine().build();
+
+    engine.getTemplate("nested_tags");
+    engine.getTemplate("nested_tags");
+
+    assertEquals(
+        Arrays.asList("miss nested_tags", "parsed nested_tags", "hit nested_tags"),
+        listener.events);
+    assertEquals(1, engine.getCacheStats().hitCount());
+  }
+
+  @Test
+  public void reportsParseTimes() throws Exception {
+    engine().build().getTemplate("nested_tags");
+
+    assertEquals(1, listener.parseNanos.size());
+    assertTrue(listener.parseNanos.get(0) > 0);
+  }
+
+  @Test
+  public void reportsEveryParseWithoutCache() throws Exception {
+    PugEngine engine = engine().caching(false).build();
+
+    engine.getTemplate("nested_tags");
+    engine.getTemplate("nested_tags");
+
+    assertEquals(Arrays.asList("parsed nested_tags", "parsed nested_tags"), listener.events);
+  }
+
+  @Test
+  public void reportsEvictions() throws Exception {
+    PugEngine engine = engine().maxCacheSize(1).build();
+
+    engine.getTemplate("nested_tags");
+    engine.getTemplate("comment");
+    engine.getTemplate("nested_tags");
+    engine.getTemplate("comment");
+
+    assertTrue(
+        listener.events.toString(),
+        listener.events.stream().anyMatch(event -> event.startsWith("evicted ")));
+  }
+
+  @Test
+  public void reportsRenders() throws Exception {
+    PugEngine engine = engine().build();
+    PugTemplate template = engine.getTemplate("each");
+    Map<String, Object> model = new HashMap<>();
+    model.put("array", Arrays.asList("say", "hello", "world"));
+    model.put("object", Collections.singletonMap("hello", "world"));
+    listener.events.clear();
+
+    String html = engine.render(template, model);
+
+    assertEquals(Collections.singletonList("rendered each"), listener.events);
+    assertEquals(html.length(), listener.outputChars);
+    assertTrue(listener.expressionEvaluations > 0);
+  }
+
+  @Test
+  public void reportsRendersToOutputStream() throws Exception {
+    PugEngine engine = engine().build();
+    PugTemplate template = engine.getTemplate("nested_tags");
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    engine.render(template, new HashMap<>(), RenderContext.defaults(), output);
+
+    String html = engine.render(template, new HashMap<>());
+    assertEquals(html, output.toString(StandardCharsets.UTF_8));
+    assertEquals(html.length(), listener.outputChars);
+  }
+
+  @Test
+  public void engineWithoutListener() {
+    PugEngine engine = PugEngine.builder().build();
+
+    assertSame(PugEngineListener.NONE, engine.getListener());
+    assertEquals(0, engine.getCacheStats().requestCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void listenerCannotBeNull() {
+    PugEngine.builder().listener(null);
+  }
+
+  private PugEngine.Builder engine() throws Exception {
+    return PugEngine.builder()
+        .templateLoader(
+            new FileTemplateLoader(TestFileHelper.getCompilerResourcePath(""), "jade"))
+        .listener(listener);
+  }
+
+  private static final class RecordingListener implements PugEngineListener {
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> parseNanos = new ArrayList<>();
+    private long outputChars;
+    private long expressionEvaluations;
+
+    @Override
+    public void templateCacheHit(String name) {
+      events.add("hit " + name);
+    }
+
+    @Override
+    public void templateCacheMiss(String name) {
+      events.add("miss " + name);
+    }
+
+    @Override
+    public void templateEvicted(String name) {
+      events.add("evicted " + name);
+    }
+
+    @Override
+    public void templateParsed(String name, long loadNanos, long parseNanos, long compileNanos) {
+      events.add("parsed " + name);
+      this.parseNanos.add(parseNanos);
+    }
+
+    @Override
+    public void templateRendered(
+        String name, long renderNanos, long outputChars, long expressionEvaluations) {
+      events.add("rendered " + name);
+      this.outputChars = outputChars;
+      this.expressionEvaluations = expressionEvaluations;
+    }
+  }
+}
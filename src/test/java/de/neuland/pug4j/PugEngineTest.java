@@ -2,9 +2,16 @@ package de.neuland.pug4j;
 
 import static org.junit.Assert.*;
 
+import de.neuland.pug4j.compiler.CompilationMode;
 import de.neuland.pug4j.template.FileTemplateLoader;
 import de.neuland.pug4j.template.PugTemplate;
+import de.neuland.pug4j.template.ReaderTemplateLoader;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import org.junit.Test;
@@ -126,4 +133,52 @@ public class PugEngineTest {
     assertTrue("Template 'layout' should exist", engine.templateExists("layout"));
     assertFalse("Template 'nonexistent' should not exist", engine.templateExists("nonexistent"));
   }
+
+  @Test
+  public void testRenderToOutputStream() throws Exception {
+    String template =
+        "doctype html\n"
+            + "html\n"
+            + "  body\n"
+            + "    h1.title Gr\u00fc\u00dfe \uD83D\uDE00\n"
+            + "    p= greeting\n"
+            + "    each item in items\n"
+            + "      a(href='/' + item)= item\n";
+    Map<String, Object> model = new HashMap<>();
+    model.put("greeting", "\u00dcn\u00efc\u00f6d\u00e9 & <ascii>");
+    model.put("items", Arrays.asList("a", "\u20ac"));
+
+    for (CompilationMode compilationMode : CompilationMode.values()) {
+      for (boolean prettyPrint : new boolean[] {false, true}) {
+        PugEngine engine =
+            PugEngine.builder()
+                .templateLoader(new ReaderTemplateLoader(new StringReader(template), "utf8"))
+                .compilationMode(compilationMode)
+                .build();
+        PugTemplate pugTemplate = engine.getTemplate("utf8");
+        RenderContext context = RenderContext.builder().prettyPrint(prettyPrint).build();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // twice, so static tags are written from their cached markup
+        engine.render(pugTemplate, model, context, output);
+        output.reset();
+        engine.render(pugTemplate, model, context, output);
+
+        assertEquals(
+            compilationMode + " " + prettyPrint,
+            engine.render(pugTemplate, model, context),
+            output.toString(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRenderToNullOutputStream() throws Exception {
+    PugEngine engine = PugEngine.forPath(RESOURCES_PATH + "compiler");
+    engine.render(
+        engine.getTemplate("layout"),
+        new HashMap<>(),
+        RenderContext.defaults(),
+        (OutputStream) null);
+  }
 }
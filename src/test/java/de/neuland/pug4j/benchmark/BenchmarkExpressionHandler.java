@@ -0,0 +1,23 @@
+package de.neuland.pug4j.benchmark;
+
+import de.neuland.pug4j.expression.ExpressionHandler;
+import de.neuland.pug4j.expression.GraalJsExpressionHandler;
+import de.neuland.pug4j.expression.JexlExpressionHandler;
+
+/** The expression handlers the benchmarks compare. */
+public enum BenchmarkExpressionHandler {
+  JEXL {
+    @Override
+    ExpressionHandler create() {
+      return new JexlExpressionHandler();
+    }
+  },
+  GRAALJS {
+    @Override
+    ExpressionHandler create() {
+      return new GraalJsExpressionHandler();
+    }
+  };
+
+  abstract ExpressionHandler create();
+}
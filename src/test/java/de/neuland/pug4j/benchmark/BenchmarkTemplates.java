@@ -0,0 +1,128 @@
+package de.neuland.pug4j.benchmark;
+
+import de.neuland.pug4j.PugEngine;
+import de.neuland.pug4j.TestFileHelper;
+import de.neuland.pug4j.compiler.CompilationMode;
+import de.neuland.pug4j.expression.ExpressionHandler;
+import de.neuland.pug4j.filter.CDATAFilter;
+import de.neuland.pug4j.filter.PlainFilter;
+import de.neuland.pug4j.template.FileTemplateLoader;
+import de.neuland.pug4j.template.TemplateLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The templates the benchmarks run on: a small page, the kitchen-sink template of {@link
+ * de.neuland.pug4j.integration.KitchenSinkIntegrationTest} and a table with 10,000 rows.
+ */
+public enum BenchmarkTemplates {
+  SMALL("/benchmark", "simple1") {
+    @Override
+    Map<String, Object> model() {
+      Map<String, Object> model = new HashMap<>();
+      model.put("pageName", "Jade");
+      model.put("books", Arrays.asList("booka", "bookb", "bookc"));
+      return model;
+    }
+  },
+  KITCHEN_SINK("/kitchensink", "kitchen-sink") {
+    @Override
+    Map<String, Object> model() {
+      Map<String, Object> user = new LinkedHashMap<>();
+      user.put("id", 42);
+      user.put("name", "Alice");
+      user.put("age", 35);
+      user.put("admin", true);
+      user.put("tags", Arrays.asList("vip", "beta-tester"));
+
+      List<Map<String, Object>> products = new ArrayList<>();
+      products.add(product("Keyboard", 49, true, Arrays.asList("mechanical", "rgb")));
+      products.add(product("Mouse", 25, false, Arrays.asList("wireless")));
+      products.add(product("Monitor", 199, true, Arrays.asList("27 inch", "4k", "hdr")));
+
+      Map<String, Object> userProperties = new LinkedHashMap<>();
+      userProperties.put("plan", "premium");
+      userProperties.put("since", "2020");
+
+      Map<String, Object> model = new HashMap<>();
+      model.put("pageTitle", "Kitchen Sink");
+      model.put("user", user);
+      model.put("products", products);
+      model.put("productCount", products.size());
+      model.put("userProperties", userProperties);
+      model.put("emptyList", new ArrayList<>());
+      model.put("htmlSnippet", "<em>raw emphasis</em>");
+      return model;
+    }
+  },
+  ROWS_10K("/benchmark", "rows") {
+    @Override
+    Map<String, Object> model() {
+      List<Map<String, Object>> rows = new ArrayList<>();
+      for (int i = 0; i < 10000; i++) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", i);
+        row.put("name", "Row <" + i + ">");
+        row.put("price", i % 100);
+        row.put("inStock", i % 3 != 0);
+        rows.add(row);
+      }
+      Map<String, Object> model = new HashMap<>();
+      model.put("pageName", "Rows");
+      model.put("rows", rows);
+      return model;
+    }
+  };
+
+  private final String directory;
+  private final String name;
+
+  BenchmarkTemplates(String directory, String name) {
+    this.directory = directory;
+    this.name = name;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  abstract Map<String, Object> model();
+
+  String source() throws Exception {
+    return Files.readString(
+        Path.of(TestFileHelper.getResourcePath(directory + "/" + name + ".pug")),
+        StandardCharsets.UTF_8);
+  }
+
+  TemplateLoader templateLoader() throws Exception {
+    return new FileTemplateLoader(Path.of(TestFileHelper.getResourcePath(directory)), "pug");
+  }
+
+  PugEngine engine(ExpressionHandler expressionHandler, CompilationMode compilationMode)
+      throws Exception {
+    return PugEngine.builder()
+        .templateLoader(templateLoader())
+        .expressionHandler(expressionHandler)
+        .compilationMode(compilationMode)
+        .filter("plain", new PlainFilter())
+        .filter("cdata", new CDATAFilter())
+        .build();
+  }
+
+  private static Map<String, Object> product(
+      String name, int price, boolean inStock, List<String> features) {
+    Map<String, Object> product = new LinkedHashMap<>();
+    product.put("name", name);
+    product.put("price", price);
+    product.put("inStock", inStock);
+    product.put("features", features);
+    return product;
+  }
+}
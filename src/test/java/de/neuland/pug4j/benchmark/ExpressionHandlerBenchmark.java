@@ -0,0 +1,55 @@
+package de.neuland.pug4j.benchmark;
+
+import de.neuland.pug4j.expression.CompiledExpression;
+import de.neuland.pug4j.expression.ExpressionHandler;
+import de.neuland.pug4j.model.PugModel;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Evaluates single expressions against the kitchen-sink model, once from source through the
+ * handler's expression cache and once as an expression compiled up front, the way rendering a
+ * cached template evaluates them.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ExpressionHandlerBenchmark {
+
+  @Param({"JEXL", "GRAALJS"})
+  public BenchmarkExpressionHandler expressionHandler;
+
+  @Param({"user.name", "user.age + 1", "'/users/' + user.id", "user.admin ? 'admin' : 'user'"})
+  public String expression;
+
+  ExpressionHandler handler;
+
+  CompiledExpression compiledExpression;
+
+  PugModel model;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    handler = expressionHandler.create();
+    compiledExpression = handler.compile(expression);
+    model = new PugModel(BenchmarkTemplates.KITCHEN_SINK.model());
+  }
+
+  @Benchmark
+  public Object evaluate() throws Exception {
+    return handler.evaluateExpression(expression, model);
+  }
+
+  @Benchmark
+  public Object evaluateCompiled() throws Exception {
+    return compiledExpression.evaluate(model);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Main.main(args);
+  }
+}
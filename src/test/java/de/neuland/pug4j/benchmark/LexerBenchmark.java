@@ -0,0 +1,55 @@
+package de.neuland.pug4j.benchmark;
+
+import de.neuland.pug4j.expression.JexlExpressionHandler;
+import de.neuland.pug4j.lexer.Lexer;
+import de.neuland.pug4j.lexer.token.Token;
+import de.neuland.pug4j.template.ClasspathTemplateLoader;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Lexes generated templates of increasing size. The time per line should stay about the same
+ * across sizes.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class LexerBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  public int lines;
+
+  ClasspathTemplateLoader templateLoader = new ClasspathTemplateLoader();
+
+  JexlExpressionHandler expressionHandler = new JexlExpressionHandler();
+
+  String template;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    StringBuilder builder = new StringBuilder("table.admin\n");
+    // every row is five lines long
+    for (int i = 0; i < lines / 5; i++) {
+      builder.append("  tr.row(data-id=\"").append(i).append("\" class=rowClass)\n");
+      builder.append("    td= item.name\n");
+      builder.append("    td: a(href=\"/items/\" + item.id) Edit #{item.name}\n");
+      builder.append("    td\n");
+      builder.append("      | Created at #{item.created}\n");
+    }
+    template = builder.toString();
+  }
+
+  @Benchmark
+  public LinkedList<Token> lex() throws Exception {
+    return new Lexer(template, "benchmark", templateLoader, expressionHandler).getTokens();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Main.main(args);
+  }
+}
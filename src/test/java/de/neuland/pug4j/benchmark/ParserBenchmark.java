@@ -0,0 +1,55 @@
+package de.neuland.pug4j.benchmark;
+
+import de.neuland.pug4j.expression.JexlExpressionHandler;
+import de.neuland.pug4j.lexer.Lexer;
+import de.neuland.pug4j.lexer.token.Token;
+import de.neuland.pug4j.parser.Parser;
+import de.neuland.pug4j.parser.node.Node;
+import de.neuland.pug4j.template.TemplateLoader;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Lexes and parses the {@link BenchmarkTemplates}. Parsing includes lexing the template and
+ * parsing the templates it includes or extends, so it measures a template cache miss without
+ * compiling expressions.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+  @Param({"SMALL", "KITCHEN_SINK", "ROWS_10K"})
+  public BenchmarkTemplates template;
+
+  JexlExpressionHandler expressionHandler = new JexlExpressionHandler();
+
+  TemplateLoader templateLoader;
+
+  String source;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    templateLoader = template.templateLoader();
+    source = template.source();
+  }
+
+  @Benchmark
+  public LinkedList<Token> lex() throws Exception {
+    return new Lexer(source, template.getName(), templateLoader, expressionHandler).getTokens();
+  }
+
+  @Benchmark
+  public Node parse() throws Exception {
+    return new Parser(source, template.getName(), templateLoader, expressionHandler).parse();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Main.main(args);
+  }
+}
@@ -0,0 +1,72 @@
+package de.neuland.pug4j.benchmark;
+
+import de.neuland.pug4j.model.PugModel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the scope operations of {@link PugModel} that loops and mixin calls do for every
+ * iteration or call: pushing a scope, setting local variables and looking up variables of outer
+ * scopes.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class PugModelBenchmark {
+
+  @Param({"1", "5", "20"})
+  public int depth;
+
+  PugModel model;
+
+  String innermostLocal;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Map<String, Object> defaults = new HashMap<>();
+    for (int i = 0; i < 20; i++) {
+      defaults.put("global" + i, i);
+    }
+    model = new PugModel(defaults);
+    for (int i = 0; i < depth; i++) {
+      model.pushScope();
+      model.setLocal("local" + i, i);
+    }
+    innermostLocal = "local" + (depth - 1);
+  }
+
+  @Benchmark
+  public Object getLocal() {
+    return model.get(innermostLocal);
+  }
+
+  @Benchmark
+  public Object getGlobal() {
+    return model.get("global10");
+  }
+
+  @Benchmark
+  public Object getMissing() {
+    return model.get("missing");
+  }
+
+  @Benchmark
+  public Object loopIteration() {
+    model.pushScope();
+    model.setLocal("item", "value");
+    model.setLocal("index", 1);
+    Object item = model.get("item");
+    model.popScope();
+    return item;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Main.main(args);
+  }
+}
@@ -0,0 +1,56 @@
+package de.neuland.pug4j.benchmark;
+
+import de.neuland.pug4j.PugEngine;
+import de.neuland.pug4j.RenderContext;
+import de.neuland.pug4j.compiler.CompilationMode;
+import de.neuland.pug4j.template.PugTemplate;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Renders the {@link BenchmarkTemplates} with a warm engine: the template is parsed and compiled
+ * once before the measurement, so every operation is a template cache hit followed by a render.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+
+  @Param({"SMALL", "KITCHEN_SINK", "ROWS_10K"})
+  public BenchmarkTemplates template;
+
+  @Param({"JEXL", "GRAALJS"})
+  public BenchmarkExpressionHandler expressionHandler;
+
+  @Param({"NONE", "RENDER_PLAN", "BYTECODE"})
+  public CompilationMode compilationMode;
+
+  PugEngine pugEngine;
+
+  Map<String, Object> model;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    pugEngine = template.engine(expressionHandler.create(), compilationMode);
+    model = template.model();
+    render();
+  }
+
+  @Benchmark
+  public String render() throws Exception {
+    StringWriter writer = new StringWriter();
+    PugTemplate pugTemplate = pugEngine.getTemplate(template.getName());
+    pugEngine.render(pugTemplate, model, RenderContext.defaults(), writer);
+    return writer.toString();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Main.main(args);
+  }
+}
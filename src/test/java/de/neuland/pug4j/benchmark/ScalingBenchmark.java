@@ -0,0 +1,360 @@
+package de.neuland.pug4j.benchmark;
+
+import de.neuland.pug4j.PugEngine;
+import de.neuland.pug4j.RenderContext;
+import de.neuland.pug4j.compiler.CompilationMode;
+import de.neuland.pug4j.template.PugTemplate;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Renders one of the {@link BenchmarkTemplates} with a single shared engine from a growing number
+ * of platform threads, and on Java 21 and later of virtual threads, and reports for every step the
+ * throughput, its scaling efficiency and the lock contention JFR recorded meanwhile ({@code
+ * jdk.JavaMonitorEnter}, {@code jdk.ThreadPark} and {@code jdk.VirtualThreadPinned} events).
+ * Finally the contended call sites of all steps are listed.
+ *
+ * <p>Run it with the {@code benchmarks} profile:
+ *
+ * <pre>
+ * mvn -Pbenchmarks test -Dbenchmark.main=de.neuland.pug4j.benchmark.ScalingBenchmark \
+ *     -Dbenchmark.args="KITCHEN_SINK JEXL NONE 2"
+ * </pre>
+ *
+ * <p>The arguments are the template, the expression handler, the compilation mode and the seconds
+ * measured per step. The steps are also written as CSV to {@code target/scaling-result.csv}, or to
+ * the file set with {@code -Dscaling.result}.
+ */
+public class ScalingBenchmark {
+
+  private static final Duration CONTENTION_THRESHOLD = Duration.ofNanos(10_000);
+  private static final int[] VIRTUAL_THREADS = {1, 10, 100, 1000, 10000};
+  private static final int SITES = 15;
+
+  private final PugEngine engine;
+  private final PugTemplate template;
+  private final Map<String, Object> model;
+  private final long stepMillis;
+  private final int cores = Runtime.getRuntime().availableProcessors();
+  private final Map<String, Contention> sites = new HashMap<>();
+  private final List<Step> steps = new ArrayList<>();
+  private double singleThreadThroughput;
+
+  ScalingBenchmark(BenchmarkTemplates template, PugEngine engine, long stepMillis)
+      throws Exception {
+    this.engine = engine;
+    this.template = engine.getTemplate(template.getName());
+    this.model = template.model();
+    this.stepMillis = stepMillis;
+  }
+
+  public static void main(String[] args) throws Exception {
+    BenchmarkTemplates template =
+        args.length > 0 ? BenchmarkTemplates.valueOf(args[0]) : BenchmarkTemplates.KITCHEN_SINK;
+    BenchmarkExpressionHandler expressionHandler =
+        args.length > 1
+            ? BenchmarkExpressionHandler.valueOf(args[1])
+            : BenchmarkExpressionHandler.JEXL;
+    CompilationMode compilationMode =
+        args.length > 2 ? CompilationMode.valueOf(args[2]) : CompilationMode.NONE;
+    long stepMillis = args.length > 3 ? Long.parseLong(args[3]) * 1000 : 2000;
+
+    System.out.printf(
+        "%s with %s, compilation mode %s, %d processors%n",
+        template, expressionHandler, compilationMode, Runtime.getRuntime().availableProcessors());
+    ScalingBenchmark benchmark =
+        new ScalingBenchmark(
+            template, template.engine(expressionHandler.create(), compilationMode), stepMillis);
+    benchmark.run();
+    benchmark.writeCsv(Path.of(System.getProperty("scaling.result", "target/scaling-result.csv")));
+  }
+
+  void run() throws Exception {
+    // Warm up the render path and JFR before the single thread step that the other steps are
+    // compared to.
+    try (Recording recording = contentionRecording()) {
+      recording.start();
+      long warmUpEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(2 * stepMillis);
+      while (System.nanoTime() < warmUpEnd) {
+        engine.render(template, model, RenderContext.defaults(), new StringWriter());
+      }
+    }
+    System.out.printf(
+        "%-9s %7s %12s %8s %10s %9s %12s %9s %12s%n",
+        "kind",
+        "threads",
+        "renders/s",
+        "speedup",
+        "efficiency",
+        "monitors",
+        "blocked ms",
+        "parks",
+        "parked ms");
+    for (int threads = 1; threads <= 2 * cores; threads *= 2) {
+      measure("platform", threads, Executors.newFixedThreadPool(threads));
+    }
+    if (hasVirtualThreads()) {
+      for (int threads : VIRTUAL_THREADS) {
+        measure("virtual", threads, virtualThreadExecutor());
+      }
+    } else {
+      System.out.println("virtual threads need Java 21 or later, skipped");
+    }
+    printSites();
+  }
+
+  private void measure(String kind, int threads, ExecutorService executor) throws Exception {
+    LongAdder renders = new LongAdder();
+    Worker worker = new Worker(renders);
+    try {
+      for (int i = 0; i < threads; i++) {
+        executor.execute(worker);
+      }
+      // Let the threads start and the JIT settle before measuring.
+      Thread.sleep(stepMillis / 2);
+      Path recordingFile = Files.createTempFile("pug4j-scaling", ".jfr");
+      long count;
+      long nanos;
+      try (Recording recording = contentionRecording()) {
+        recording.start();
+        long startCount = renders.sum();
+        long start = System.nanoTime();
+        Thread.sleep(stepMillis);
+        count = renders.sum() - startCount;
+        nanos = System.nanoTime() - start;
+        recording.stop();
+        recording.dump(recordingFile);
+      }
+      worker.stop = true;
+      if (worker.failure != null) {
+        throw new IllegalStateException("render failed", worker.failure);
+      }
+      Step step = new Step(kind, threads, count * 1e9 / nanos);
+      readContention(recordingFile, step);
+      Files.delete(recordingFile);
+      print(step);
+      steps.add(step);
+    } finally {
+      worker.stop = true;
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+  private static Recording contentionRecording() {
+    Recording recording = new Recording();
+    recording.enable("jdk.JavaMonitorEnter").withThreshold(CONTENTION_THRESHOLD).withStackTrace();
+    recording.enable("jdk.ThreadPark").withThreshold(CONTENTION_THRESHOLD).withStackTrace();
+    recording
+        .enable("jdk.VirtualThreadPinned")
+        .withThreshold(CONTENTION_THRESHOLD)
+        .withStackTrace();
+    // The pug4j events are enabled by default, but production renders do not record them.
+    recording.disable("pug4j.TemplateParse");
+    recording.disable("pug4j.TemplateRender");
+    recording.disable("pug4j.CacheMiss");
+    return recording;
+  }
+
+  private void readContention(Path recordingFile, Step step) throws IOException {
+    for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile)) {
+      String type = event.getEventType().getName();
+      long nanos = event.getDuration().toNanos();
+      if (type.equals("jdk.JavaMonitorEnter")) {
+        step.monitors++;
+        step.monitorNanos += nanos;
+        site("monitor " + className(event, "monitorClass"), event).add(nanos);
+      } else if (type.equals("jdk.ThreadPark")) {
+        step.parks++;
+        step.parkNanos += nanos;
+        site("park " + className(event, "parkedClass"), event).add(nanos);
+      } else if (type.equals("jdk.VirtualThreadPinned")) {
+        site("pinned", event).add(nanos);
+      }
+    }
+  }
+
+  private static String className(RecordedEvent event, String field) {
+    RecordedClass recordedClass = event.hasField(field) ? event.getClass(field) : null;
+    return recordedClass != null ? recordedClass.getName() : "?";
+  }
+
+  // Groups events by their cause and the first frame outside the JDK, which is where pug4j or a
+  // library it uses waits.
+  private Contention site(String cause, RecordedEvent event) {
+    String frame = "?";
+    RecordedStackTrace stackTrace = event.getStackTrace();
+    if (stackTrace != null) {
+      for (RecordedFrame recordedFrame : stackTrace.getFrames()) {
+        String type = recordedFrame.getMethod().getType().getName();
+        if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+          frame =
+              type
+                  + "."
+                  + recordedFrame.getMethod().getName()
+                  + ":"
+                  + recordedFrame.getLineNumber();
+          break;
+        }
+      }
+    }
+    return sites.computeIfAbsent(cause + " at " + frame, Contention::new);
+  }
+
+  private void print(Step step) {
+    if (step.kind.equals("platform") && step.threads == 1) {
+      singleThreadThroughput = step.throughput;
+    }
+    step.speedup = step.throughput / singleThreadThroughput;
+    step.efficiency = step.speedup / Math.min(step.threads, cores);
+    System.out.printf(
+        Locale.ROOT,
+        "%-9s %7d %12.0f %8.2f %9.0f%% %9d %12.1f %9d %12.1f%n",
+        step.kind,
+        step.threads,
+        step.throughput,
+        step.speedup,
+        step.efficiency * 100,
+        step.monitors,
+        step.monitorNanos / 1e6,
+        step.parks,
+        step.parkNanos / 1e6);
+  }
+
+  private void printSites() {
+    List<Contention> contentions = new ArrayList<>(sites.values());
+    contentions.sort(Comparator.comparingLong((Contention c) -> c.nanos).reversed());
+    System.out.println();
+    System.out.printf("%10s %12s  %s%n", "events", "waited ms", "contended site");
+    for (Contention contention : contentions.subList(0, Math.min(SITES, contentions.size()))) {
+      System.out.printf(
+          Locale.ROOT,
+          "%10d %12.1f  %s%n",
+          contention.count,
+          contention.nanos / 1e6,
+          contention.site);
+    }
+    if (contentions.isEmpty()) {
+      System.out.println(
+          "no waits longer than " + CONTENTION_THRESHOLD.toNanos() / 1000 + " microseconds");
+    }
+  }
+
+  private void writeCsv(Path file) throws IOException {
+    StringBuilder csv =
+        new StringBuilder(
+            "kind,threads,renders_per_second,speedup,efficiency,"
+                + "monitor_enters,monitor_nanos,parks,park_nanos\n");
+    for (Step step : steps) {
+      csv.append(
+          String.format(
+              Locale.ROOT,
+              "%s,%d,%.1f,%.3f,%.3f,%d,%d,%d,%d%n",
+              step.kind,
+              step.threads,
+              step.throughput,
+              step.speedup,
+              step.efficiency,
+              step.monitors,
+              step.monitorNanos,
+              step.parks,
+              step.parkNanos));
+    }
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+    Files.writeString(file, csv, StandardCharsets.UTF_8);
+    System.out.println("\nresults written to " + file.toAbsolutePath());
+  }
+
+  // The benchmarks are compiled for Java 17, so virtual threads are looked up reflectively.
+  private static boolean hasVirtualThreads() {
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private static ExecutorService virtualThreadExecutor() throws ReflectiveOperationException {
+    return (ExecutorService)
+        Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+  }
+
+  private final class Worker implements Runnable {
+    private final LongAdder renders;
+    private volatile boolean stop;
+    private volatile Throwable failure;
+
+    private Worker(LongAdder renders) {
+      this.renders = renders;
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!stop) {
+          engine.render(template, model, RenderContext.defaults(), new StringWriter());
+          renders.increment();
+        }
+      } catch (Throwable e) {
+        failure = e;
+        stop = true;
+      }
+    }
+  }
+
+  private static final class Step {
+    private final String kind;
+    private final int threads;
+    private final double throughput;
+    private double speedup;
+    private double efficiency;
+    private long monitors;
+    private long monitorNanos;
+    private long parks;
+    private long parkNanos;
+
+    private Step(String kind, int threads, double throughput) {
+      this.kind = kind;
+      this.threads = threads;
+      this.throughput = throughput;
+    }
+  }
+
+  private static final class Contention {
+    private final String site;
+    private long count;
+    private long nanos;
+
+    private Contention(String site) {
+      this.site = site;
+    }
+
+    private void add(long nanos) {
+      count++;
+      this.nanos += nanos;
+    }
+  }
+}
@@ -12,6 +12,10 @@ import java.util.List;
 import org.openjdk.jmh.Main;
 import org.openjdk.jmh.annotations.*;
 
+/**
+ * Renders templates with a new engine, so every operation parses and compiles the template before
+ * rendering it. {@link RenderBenchmark} measures renders with a warm engine.
+ */
 @Fork(1)
 @Warmup(iterations = 10)
 @BenchmarkMode(Mode.Throughput)
@@ -28,17 +32,15 @@ public class TemplateBenchmark {
 
   HashMap<String, Object> model = new HashMap<>();
 
-  PugEngine pugEngine;
-
-  @Setup(Level.Invocation)
+  @Setup(Level.Trial)
   public void setUp() {
-    pugEngine = PugEngine.builder().templateLoader(templateLoader).build();
     model.put("pageName", "Jade");
     model.put("books", books);
   }
 
   @Benchmark
   public void templates() throws Exception {
+    PugEngine pugEngine = PugEngine.builder().templateLoader(templateLoader).build();
     Writer writer = new StringWriter();
     PugTemplate template = pugEngine.getTemplate("benchmark/simple" + templateId);
     pugEngine.render(template, model, RenderContext.defaults(), writer);
@@ -0,0 +1,70 @@
+package de.neuland.pug4j.compiler;
+
+import de.neuland.pug4j.PugEngine;
+import de.neuland.pug4j.model.PugModel;
+import de.neuland.pug4j.parser.node.AttrsNode;
+import de.neuland.pug4j.template.ReaderTemplateLoader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Renders the attributes of a single tag: only constant attributes, only expressions, and
+ * expressions mixed with an attribute block.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class AttributesCompilerBenchmark {
+
+  @Param({
+    "a.btn.btn-primary(href=\"/home\" title=\"Home\" data-toggle=\"nav\")",
+    "a(href=url class=classes data-id=id title=title)",
+    "a.btn(href=url class=classes disabled=false)&attributes(extra)"
+  })
+  public String tag;
+
+  AttributesCompiler attributesCompiler;
+
+  AttrsNode node;
+
+  PugModel model;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    PugEngine engine =
+        PugEngine.builder()
+            .templateLoader(new ReaderTemplateLoader(new StringReader(tag), "tag"))
+            .build();
+    node = (AttrsNode) engine.getTemplate("tag").getRootNode().getNodes().getFirst();
+    attributesCompiler = new AttributesCompiler(engine);
+
+    Map<String, Object> variables = new HashMap<>();
+    variables.put("url", "/users/42?tab=profile&sort=name");
+    variables.put("classes", Arrays.asList("active", "large"));
+    variables.put("id", 42);
+    variables.put("title", "Alice's <profile>");
+    variables.put("extra", Collections.singletonMap("data-tracking", "profile-link"));
+    model = new PugModel(variables);
+
+    // the first render precomputes the constant attributes of the node
+    visitAttributes();
+  }
+
+  @Benchmark
+  public String visitAttributes() {
+    return attributesCompiler.visitAttributes(model, node, true);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Main.main(args);
+  }
+}
@@ -0,0 +1,57 @@
+package de.neuland.pug4j.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import de.neuland.pug4j.Pug4J;
+import de.neuland.pug4j.PugEngine;
+import de.neuland.pug4j.RenderContext;
+import de.neuland.pug4j.UnitTestSetup;
+import de.neuland.pug4j.parser.node.TagNode;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class AttributesCompilerTest {
+
+  @Test
+  public void rendersConstantAttributesFromPrecomputedString() throws Exception {
+    PugEngine engine = engine("li.item(class=\"row\" data-id=\"1\" hidden)");
+
+    assertEquals("<li class=\"item row\" data-id=\"1\" hidden></li>", render(engine, true));
+    assertEquals(
+        "<li class=\"item row\" data-id=\"1\" hidden=\"hidden\"></li>", render(engine, false));
+    TagNode tag = (TagNode) engine.getTemplate("inline").getRootNode().getNodes().get(0);
+    assertNotNull(tag.getStaticAttributes());
+  }
+
+  @Test
+  public void appendsDynamicAttributesToConstantPrefix() throws Exception {
+    PugEngine engine = engine("a.link(href=\"/\" title=title data-flag=flag)");
+
+    assertEquals("<a class=\"link\" href=\"/\" title=\"Home\"></a>", render(engine, true));
+    assertEquals("<a class=\"link\" href=\"/\" title=\"Home\"></a>", render(engine, true));
+  }
+
+  @Test
+  public void mergesDynamicClassesIntoFirstAttribute() throws Exception {
+    PugEngine engine = engine("a(href=\"/\" class=title)");
+
+    assertEquals("<a class=\"Home\" href=\"/\"></a>", render(engine, true));
+    assertEquals("<a class=\"Home\" href=\"/\"></a>", render(engine, true));
+  }
+
+  private String render(PugEngine engine, boolean terse) throws Exception {
+    Map<String, Object> model = new HashMap<>();
+    model.put("title", "Home");
+    model.put("flag", false);
+    RenderContext context =
+        RenderContext.builder().defaultMode(terse ? Pug4J.Mode.HTML : Pug4J.Mode.XHTML).build();
+    return engine.render(engine.getTemplate("inline"), model, context);
+  }
+
+  private PugEngine engine(String pug) {
+    return UnitTestSetup.createEngineFromReader(new StringReader(pug), "inline");
+  }
+}
@@ -0,0 +1,164 @@
+package de.neuland.pug4j.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import de.neuland.pug4j.PugEngine;
+import de.neuland.pug4j.RenderContext;
+import de.neuland.pug4j.TestFileHelper;
+import de.neuland.pug4j.template.FileTemplateLoader;
+import de.neuland.pug4j.template.PugTemplate;
+import de.neuland.pug4j.template.ReaderTemplateLoader;
+import java.io.File;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class CompiledTemplateTest {
+
+  @Test
+  public void staticTags() throws Exception {
+    run("nested_tags", false);
+  }
+
+  @Test
+  public void tagsWithAttributes() throws Exception {
+    run("tags_with_attributes", false);
+  }
+
+  @Test
+  public void selfClosingTags() throws Exception {
+    run("self_closing_tag", false);
+  }
+
+  @Test
+  public void comments() throws Exception {
+    run("comment", false);
+    run("conditional_comment", false);
+  }
+
+  @Test
+  public void prettyPrint() throws Exception {
+    run("prettyprint", true);
+    run("complex_indent_outdent_file", true);
+  }
+
+  @Test
+  public void mixins() throws Exception {
+    run("mixin_blocks", true);
+    run("mixin_attrs", true);
+  }
+
+  @Test
+  public void controlFlow() throws Exception {
+    run("case", false);
+    run("while", false);
+    run("condition", false, Collections.singletonMap("hallo", "Welt"));
+    run("each_else", false, Collections.singletonMap("books", Collections.emptyList()));
+
+    Map<String, Object> model = new HashMap<>();
+    model.put("array", Arrays.asList("say", "hello", "world"));
+    Map<String, Object> object = new LinkedHashMap<>();
+    object.put("hello", "world");
+    model.put("object", object);
+    run("each", false, model);
+  }
+
+  @Test
+  public void compiledTemplateIsCachedPerVariant() throws Exception {
+    PugTemplate template = engine().getTemplate("nested_tags");
+
+    CompiledTemplate compiled =
+        template.getCompiledTemplate(CompilationMode.BYTECODE, false, false, false);
+
+    assertSame(
+        compiled, template.getCompiledTemplate(CompilationMode.BYTECODE, false, false, false));
+    assertNotSame(
+        compiled, template.getCompiledTemplate(CompilationMode.BYTECODE, false, false, true));
+  }
+
+  @Test
+  public void largeTemplatesAreSplitIntoMethods() throws Exception {
+    // a conditional body above the inline limit and a top level above the method size limit
+    StringBuilder source = new StringBuilder("div\n  if show\n");
+    StringBuilder expected = new StringBuilder("<div>");
+    for (int i = 0; i < 150; i++) {
+      source.append("    p= name + ").append(i).append('\n');
+      expected.append("<p>pug").append(i).append("</p>");
+    }
+    for (int i = 0; i < 600; i++) {
+      source.append("  span= name + ").append(i).append('\n');
+      expected.append("<span>pug").append(i).append("</span>");
+    }
+    expected.append("</div>");
+    Map<String, Object> model = new HashMap<>();
+    model.put("show", true);
+    model.put("name", "pug");
+
+    for (CompilationMode mode : CompilationMode.values()) {
+      PugEngine engine =
+          PugEngine.builder()
+              .templateLoader(
+                  new ReaderTemplateLoader(new StringReader(source.toString()), "large"))
+              .compilationMode(mode)
+              .build();
+      PugTemplate template = engine.getTemplate("large");
+
+      assertEquals(mode.name(), expected.toString(), engine.render(template, model));
+
+      if (mode == CompilationMode.BYTECODE) {
+        RenderProgram program =
+            BytecodeGenerator.generate(
+                new RenderPlanner(false, false, false).plan(template.getRootNode()));
+        long methods =
+            Arrays.stream(program.getClass().getDeclaredMethods())
+                .filter(method -> method.getName().matches("render\\d+"))
+                .count();
+        // the outlined body, at least two chunks of the top level and the method calling them
+        assertTrue(String.valueOf(methods), methods >= 4);
+      }
+    }
+  }
+
+  private void run(String testName, boolean pretty) throws Exception {
+    run(testName, pretty, new HashMap<>());
+  }
+
+  private void run(String testName, boolean pretty, Map<String, Object> model) throws Exception {
+    String expected =
+        FileUtils.readFileToString(
+            new File(TestFileHelper.getCompilerResourcePath(testName + ".html")), "UTF-8");
+    for (CompilationMode mode : EnumSet.of(CompilationMode.RENDER_PLAN, CompilationMode.BYTECODE)) {
+      PugEngine engine = engine(mode);
+      PugTemplate template = engine.getTemplate(testName);
+      RenderContext context = RenderContext.builder().prettyPrint(pretty).build();
+
+      String html = engine.render(template, new HashMap<>(model), context);
+
+      assertEquals(
+          testName + " " + mode,
+          expected.trim().replaceAll("\r", ""),
+          html.trim().replaceAll("\r", ""));
+    }
+  }
+
+  private PugEngine engine() throws Exception {
+    return engine(CompilationMode.BYTECODE);
+  }
+
+  private PugEngine engine(CompilationMode mode) throws Exception {
+    return PugEngine.builder()
+        .templateLoader(
+            new FileTemplateLoader(TestFileHelper.getCompilerResourcePath(""), "jade"))
+        .compilationMode(mode)
+        .build();
+  }
+}
@@ -28,15 +28,33 @@ import java.io.IOException;
 import java.lang.reflect.Type;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 
+@RunWith(Parameterized.class)
 public class CompilerTest {
 
   private String expectedFileNameExtension = ".html";
+  private final CompilationMode compilationMode;
+
+  public CompilerTest(CompilationMode compilationMode) {
+    this.compilationMode = compilationMode;
+  }
+
+  @Parameterized.Parameters(name = "{0}")
+  public static Collection<Object[]> data() {
+    Collection<Object[]> data = new ArrayList<Object[]>();
+    for (CompilationMode compilationMode : CompilationMode.values()) {
+      data.add(new Object[] {compilationMode});
+    }
+    return data;
+  }
 
   @Test
   public void oneTag() {
@@ -244,6 +262,11 @@ public class CompilerTest {
     run("mixin_blocks", true);
   }
 
+  @Test
+  public void mixinBlockPassthrough() {
+    run("mixin_block_passthrough");
+  }
+
   @Test
   public void mixinMultipleBlocks() {
     run("mixin_multiple_blocks");
@@ -448,6 +471,7 @@ public class CompilerTest {
         de.neuland.pug4j.PugEngine.builder()
             .templateLoader(loader)
             .expressionHandler(expressionHandler)
+            .compilationMode(compilationMode)
             .build();
 
     RenderContext context = RenderContext.builder().prettyPrint(pretty).build();
@@ -465,7 +489,9 @@ public class CompilerTest {
     try {
       html = compiler.compileToString(model);
       assertEquals(
-          testName, expected.trim().replaceAll("\r", ""), html.trim().replaceAll("\r", ""));
+          testName + " " + compilationMode,
+          expected.trim().replaceAll("\r", ""),
+          html.trim().replaceAll("\r", ""));
     } catch (PugCompilerException e) {
       e.printStackTrace();
       fail(e.getMessage());
@@ -0,0 +1,47 @@
+package de.neuland.pug4j.compiler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class CountingWriterTest {
+
+  @Test
+  public void countsCharacters() throws Exception {
+    StringWriter output = new StringWriter();
+    CountingWriter writer = new CountingWriter(output);
+
+    writer.write("Grüße");
+    writer.write('!');
+    writer.append("😀");
+
+    assertEquals("Grüße!😀", output.toString());
+    assertEquals(8, writer.getCount());
+  }
+
+  @Test
+  public void passesPreEncodedMarkupToUtf8Writer() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    CountingWriter counting = new CountingWriter(new Utf8Writer(output));
+    IndentWriter writer = new IndentWriter(counting);
+    String markup = "<p>Grüße</p>";
+
+    assertTrue(writer.isUtf8());
+    writer.appendUtf8(markup, markup.getBytes(StandardCharsets.UTF_8)).append(" ü");
+    counting.flush();
+
+    assertArrayEquals((markup + " ü").getBytes(StandardCharsets.UTF_8), output.toByteArray());
+    assertEquals(markup.length() + 2, counting.getCount());
+  }
+
+  @Test
+  public void otherWritersTakeNoPreEncodedMarkup() {
+    assertFalse(new IndentWriter(new CountingWriter(new StringWriter())).isUtf8());
+  }
+}
@@ -0,0 +1,40 @@
+package de.neuland.pug4j.compiler;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.text.StringEscapeUtils;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Escapes text that needs no escaping, text with markup characters and non-ASCII text, with
+ * {@link HtmlEscaping} and with the commons-text translator it falls back to.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class HtmlEscapingBenchmark {
+
+  @Param({
+    "Hello Alice, you have 3 new messages in your inbox.",
+    "<em>Tom & Jerry</em> say \"hello\"",
+    "Gr\u00fc\u00dfe aus K\u00f6ln, 5 \u20ac pro St\u00fcck"
+  })
+  public String text;
+
+  @Benchmark
+  public String escapeHtml4() {
+    return HtmlEscaping.escapeHtml4(text);
+  }
+
+  @Benchmark
+  public String commonsText() {
+    return StringEscapeUtils.escapeHtml4(text);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Main.main(args);
+  }
+}
@@ -0,0 +1,151 @@
+package de.neuland.pug4j.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import de.neuland.pug4j.PugEngine;
+import de.neuland.pug4j.RenderContext;
+import de.neuland.pug4j.template.PugTemplate;
+import de.neuland.pug4j.template.ReaderTemplateLoader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RenderProfileTest {
+
+  private static final String TEMPLATE =
+      "ul\n" + "  each item in items\n" + "    li= item\n" + "if show\n" + "  p many";
+
+  private final Map<String, Object> model = new HashMap<>();
+
+  @Before
+  public void setUp() {
+    model.put("items", Arrays.asList("a", "b", "c"));
+    model.put("show", true);
+  }
+
+  @Test
+  public void countsNodesAndExpressions() throws Exception {
+    RenderProfile profile = new RenderProfile();
+
+    String html = render(CompilationMode.NONE, profile);
+
+    assertEquals("<ul><li>a</li><li>b</li><li>c</li></ul><p>many</p>", html);
+    assertEquals(1, profile.getRenderCount());
+    assertEquals(3, node(profile, 3, "li").getCount());
+    assertEquals(1, node(profile, 2, "each").getCount());
+    assertEquals(1, node(profile, 5, "p").getCount());
+    assertEquals(3, expression(profile, "item").getCount());
+    assertEquals(1, expression(profile, "items").getCount());
+    assertEquals(1, expression(profile, "show").getCount());
+  }
+
+  @Test
+  public void nodeTimeIncludesNestedNodes() throws Exception {
+    RenderProfile profile = new RenderProfile();
+
+    render(CompilationMode.NONE, profile);
+
+    RenderProfile.Entry list = node(profile, 1, "ul");
+    RenderProfile.Entry item = node(profile, 3, "li");
+    assertTrue(list.getTotalNanos() >= item.getTotalNanos());
+    RenderProfile.Entry loop = node(profile, 2, "each");
+    assertTrue(list.getTotalNanos() >= loop.getTotalNanos());
+    assertTrue(list.getSelfNanos() <= list.getTotalNanos() - loop.getTotalNanos());
+  }
+
+  @Test
+  public void profilesEveryNodeOfCompiledTemplates() throws Exception {
+    RenderProfile interpreted = new RenderProfile();
+    RenderProfile compiled = new RenderProfile();
+
+    String html = render(CompilationMode.NONE, interpreted);
+
+    assertEquals(html, render(CompilationMode.BYTECODE, compiled));
+    assertEquals(interpreted.getNodes().size(), compiled.getNodes().size());
+    assertEquals(3, node(compiled, 3, "li").getCount());
+  }
+
+  @Test
+  public void addsRenders() throws Exception {
+    RenderProfile profile = new RenderProfile();
+
+    render(CompilationMode.NONE, profile);
+    render(CompilationMode.NONE, profile);
+
+    assertEquals(2, profile.getRenderCount());
+    assertEquals(6, node(profile, 3, "li").getCount());
+
+    profile.reset();
+
+    assertEquals(0, profile.getRenderCount());
+    assertTrue(profile.getNodes().isEmpty());
+  }
+
+  @Test
+  public void collapsedStacksNestNodes() throws Exception {
+    RenderProfile profile = new RenderProfile();
+
+    render(CompilationMode.NONE, profile);
+
+    String stacks = profile.toCollapsedStacks();
+    assertTrue(stacks, stacks.contains("inline:1 ul;inline:2 each;inline:3 li;inline:3 =;item "));
+    for (String line : stacks.split("\n")) {
+      assertTrue(line, line.matches("[^ ].* \\d+"));
+    }
+  }
+
+  @Test
+  public void table() throws Exception {
+    RenderProfile profile = new RenderProfile();
+
+    render(CompilationMode.NONE, profile);
+
+    String table = profile.toTable();
+    assertTrue(table, table.contains("inline:3 li"));
+    assertTrue(table, table.contains("show"));
+  }
+
+  @Test
+  public void rendersAreNotProfiledByDefault() {
+    assertNull(RenderContext.defaults().getProfile());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void profileCannotBeNull() {
+    RenderContext.builder().profile(null);
+  }
+
+  private String render(CompilationMode compilationMode, RenderProfile profile) throws Exception {
+    PugEngine engine =
+        PugEngine.builder()
+            .templateLoader(new ReaderTemplateLoader(new StringReader(TEMPLATE), "inline"))
+            .compilationMode(compilationMode)
+            .build();
+    PugTemplate template = engine.getTemplate("inline");
+    return engine.render(template, model, RenderContext.builder().profile(profile).build());
+  }
+
+  private static RenderProfile.Entry node(RenderProfile profile, int lineNumber, String name) {
+    return find(profile.getNodes(), lineNumber, name);
+  }
+
+  private static RenderProfile.Entry expression(RenderProfile profile, String source) {
+    return find(profile.getExpressions(), 0, source);
+  }
+
+  private static RenderProfile.Entry find(
+      List<RenderProfile.Entry> entries, int lineNumber, String name) {
+    for (RenderProfile.Entry entry : entries) {
+      if (entry.getLineNumber() == lineNumber && entry.getName().equals(name)) {
+        return entry;
+      }
+    }
+    throw new AssertionError(name + " at line " + lineNumber + " not profiled in " + entries);
+  }
+}
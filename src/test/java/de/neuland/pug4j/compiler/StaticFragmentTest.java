@@ -0,0 +1,78 @@
+package de.neuland.pug4j.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import de.neuland.pug4j.PugEngine;
+import de.neuland.pug4j.RenderContext;
+import de.neuland.pug4j.UnitTestSetup;
+import de.neuland.pug4j.parser.node.Node;
+import de.neuland.pug4j.parser.node.TagNode;
+import de.neuland.pug4j.template.PugTemplate;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class StaticFragmentTest {
+
+  @Test
+  public void marksOutermostStaticTags() throws Exception {
+    PugTemplate template = template("div.static\n  p text\ndiv(title=name)\n  p text");
+
+    TagNode staticDiv = (TagNode) template.getRootNode().getNodes().get(0);
+    TagNode dynamicDiv = (TagNode) template.getRootNode().getNodes().get(1);
+    TagNode nestedInStatic = (TagNode) staticDiv.getBlock().getNodes().get(0);
+    TagNode nestedInDynamic = (TagNode) dynamicDiv.getBlock().getNodes().get(0);
+
+    assertNotNull(staticDiv.getStaticFragment());
+    assertNull(nestedInStatic.getStaticFragment());
+    assertNull(dynamicDiv.getStaticFragment());
+    assertNotNull(nestedInDynamic.getStaticFragment());
+  }
+
+  @Test
+  public void tagsWithExpressionsAreNotStatic() throws Exception {
+    PugTemplate template = template("div\n  p= name\nul\n  li #{name}\n#{name} text");
+
+    for (Node node : template.getRootNode().getNodes()) {
+      assertNull(((TagNode) node).getStaticFragment());
+    }
+  }
+
+  @Test
+  public void rendersCachedMarkupOnRepeatedRenders() throws Exception {
+    String pug = "each name in names\n  div.row(data-static=\"1\")\n    span= name\n    br\n";
+    PugEngine engine = engine(pug);
+    Map<String, Object> model = new HashMap<>();
+    model.put("names", new String[] {"a", "b"});
+
+    String expected =
+        "<div class=\"row\" data-static=\"1\"><span>a</span><br/></div>"
+            + "<div class=\"row\" data-static=\"1\"><span>b</span><br/></div>";
+    assertEquals(expected, engine.render(engine.getTemplate("inline"), model));
+    assertEquals(expected, engine.render(engine.getTemplate("inline"), model));
+  }
+
+  @Test
+  public void prettyPrintedMarkupDependsOnIndentation() throws Exception {
+    String pug = "mixin item\n  li\n    span static\nul\n  +item\n  li\n    ul\n      +item\n";
+    PugEngine engine = engine(pug);
+    RenderContext context = RenderContext.builder().prettyPrint(true).build();
+
+    String expected =
+        "\n<ul>\n  <li><span>static</span></li>\n  <li>\n    <ul>\n"
+            + "      <li><span>static</span></li>\n    </ul>\n  </li>\n</ul>";
+    assertEquals(expected, engine.render(engine.getTemplate("inline"), new HashMap<>(), context));
+    assertEquals(expected, engine.render(engine.getTemplate("inline"), new HashMap<>(), context));
+  }
+
+  private PugTemplate template(String pug) throws Exception {
+    return engine(pug).getTemplate("inline");
+  }
+
+  private PugEngine engine(String pug) {
+    return UnitTestSetup.createEngineFromReader(new StringReader(pug), "inline");
+  }
+}
@@ -0,0 +1,106 @@
+package de.neuland.pug4j.compiler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class Utf8WriterTest {
+
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private final Utf8Writer writer = new Utf8Writer(output);
+
+  @Test
+  public void encodesLikeString() throws Exception {
+    String text = "ascii äß € 😀 end";
+
+    writer.write(text);
+    writer.flush();
+
+    assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), output.toByteArray());
+  }
+
+  @Test
+  public void writesUnpairedSurrogatesAsQuestionMarks() throws Exception {
+    String text = "a\uD83Db\uDE00c\uD83D";
+
+    writer.write(text);
+    writer.flush();
+
+    assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), output.toByteArray());
+  }
+
+  @Test
+  public void encodesSurrogatePairsSplitBetweenWrites() throws Exception {
+    String text = "a😀b😀";
+
+    for (int i = 0; i < text.length(); i++) {
+      writer.write(text.charAt(i));
+    }
+    writer.write("c\uD83D");
+    writer.write(new char[] {'\uDE00', 'd'}, 0, 2);
+    writer.flush();
+
+    assertEquals(text + "c😀d", output.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void writesHighSurrogatesWithoutLowSurrogateAsQuestionMarks() throws Exception {
+    writer.write('\uD83D');
+    writer.write("a");
+    writer.write('\uD83D');
+    writer.writeUtf8("b".getBytes(StandardCharsets.UTF_8));
+    writer.write('\uD83D');
+    writer.flush();
+
+    assertEquals("?a?b?", output.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void encodesTextLargerThanTheBuffer() throws Exception {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      text.append("row ").append(i).append(" ü😀 ");
+    }
+
+    writer.write(text.toString());
+    writer.write(text.toString().toCharArray(), 3, 20000);
+    writer.flush();
+
+    String expected = text + text.substring(3, 20003);
+    assertEquals(expected, output.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void writesEncodedBytes() throws Exception {
+    byte[] large = new byte[20000];
+    Arrays.fill(large, (byte) 'x');
+
+    writer.write("<p>");
+    writer.writeUtf8("ü".getBytes(StandardCharsets.UTF_8));
+    writer.writeUtf8(large);
+    writer.write("</p>");
+    writer.flush();
+
+    assertEquals("<p>ü" + "x".repeat(20000) + "</p>", output.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void buffersUntilFlush() throws Exception {
+    writer.write("buffered");
+
+    assertEquals(0, output.size());
+
+    writer.flush();
+
+    assertEquals("buffered", output.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void outputStreamCannotBeNull() {
+    new Utf8Writer(null);
+  }
+}
@@ -5,12 +5,15 @@ import static org.junit.Assert.*;
 import de.neuland.pug4j.exceptions.ExpressionException;
 import de.neuland.pug4j.model.PugModel;
 import de.neuland.pug4j.parser.node.BlockNode;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.graalvm.polyglot.Value;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -356,7 +359,9 @@ public class GraalJsExpressionHandlerTest {
     } catch (ExpressionException e) {
       fail("host exception should not be wrapped as ExpressionException");
     }
-    assertTrue(graalJsExpressionHandler.resolverStack.get().isEmpty());
+    for (GraalJsExpressionHandler.PooledContext pooled : graalJsExpressionHandler.idleContexts) {
+      assertTrue(pooled.resolverStack.isEmpty());
+    }
   }
 
   @Test
@@ -371,4 +376,297 @@ public class GraalJsExpressionHandlerTest {
     assertEquals("Image 1", o);
     assertEquals("Image 1", ((List) ((Map) pugModel.get("product")).get("images")).get(0));
   }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void contextPoolSizeMustBePositive() {
+    new GraalJsExpressionHandler(0);
+  }
+
+  @Test
+  public void contextsAreReusedAcrossThreads() throws Exception {
+    GraalJsExpressionHandler handler = new GraalJsExpressionHandler(2);
+    List<Thread> threads = new ArrayList<>();
+    List<Object> results = Collections.synchronizedList(new ArrayList<>());
+    for (int i = 0; i < 8; i++) {
+      int n = i;
+      threads.add(
+          new Thread(
+              () -> {
+                PugModel model = new PugModel(new HashMap<>());
+                model.put("n", n);
+                try {
+                  results.add(handler.evaluateExpression("n * 2", model));
+                } catch (ExpressionException e) {
+                  results.add(e);
+                }
+              }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(8, results.size());
+    assertFalse(results.stream().anyMatch(result -> result instanceof Exception));
+    assertTrue(handler.idleContexts.size() <= 2);
+    assertEquals(2, handler.getContextPoolSize());
+  }
+
+  @Test
+  public void rendersDoNotWaitForIdleContexts() throws Exception {
+    GraalJsExpressionHandler handler = new GraalJsExpressionHandler(1);
+    List<Object> results = Collections.synchronizedList(new ArrayList<>());
+    handler.beginRender();
+    try {
+      Thread thread = evaluateInThread(handler, results);
+      thread.join(10_000);
+      assertFalse(thread.isAlive());
+      assertEquals(Collections.singletonList(2), results);
+      assertEquals(1, handler.idleContexts.size());
+    } finally {
+      handler.endRender();
+    }
+    // The context of the render is closed, the pool is full
+    assertEquals(1, handler.idleContexts.size());
+  }
+
+  @Test
+  public void waitingForAContextTimesOut() throws Exception {
+    GraalJsExpressionHandler handler = new GraalJsExpressionHandler(1, 1, Duration.ofMillis(10));
+    assertEquals(1, handler.getMaxContexts());
+    List<Object> results = Collections.synchronizedList(new ArrayList<>());
+    handler.beginRender();
+    try {
+      evaluateInThread(handler, results).join();
+    } finally {
+      handler.endRender();
+    }
+    assertEquals(1, results.size());
+    assertTrue(results.get(0) instanceof IllegalStateException);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void maxContextsMustNotBeLessThanPoolSize() {
+    new GraalJsExpressionHandler(2, 1, Duration.ZERO);
+  }
+
+  private static Thread evaluateInThread(GraalJsExpressionHandler handler, List<Object> results) {
+    Thread thread =
+        new Thread(
+            () -> {
+              PugModel model = new PugModel(new HashMap<>());
+              model.put("n", 1);
+              try {
+                results.add(handler.evaluateExpression("n * 2", model));
+              } catch (ExpressionException | RuntimeException e) {
+                results.add(e);
+              }
+            });
+    thread.start();
+    return thread;
+  }
+
+  @Test
+  public void nestedBlockEvaluationUsesLeasedContext() throws Exception {
+    GraalJsExpressionHandler handler = new GraalJsExpressionHandler(1);
+    List<Object> captured = new ArrayList<>();
+    pugModel.put(
+        "pug4j__runnable_test",
+        handler.createBlockCallback(
+            () -> {
+              try {
+                captured.add(handler.evaluateExpression("item", pugModel));
+              } catch (ExpressionException e) {
+                throw new IllegalStateException(e);
+              }
+            },
+            pugModel));
+    handler.evaluateExpression(
+        "[7].forEach(function(item){"
+            + handler.getBlockInvocation("pug4j__runnable_test")
+            + "})",
+        pugModel);
+    assertEquals(Arrays.asList(7), captured);
+    assertEquals(1, handler.idleContexts.size());
+  }
+
+  @Test
+  public void parsedExpressionsAreCachedPerContext() throws Exception {
+    GraalJsExpressionHandler handler = new GraalJsExpressionHandler(1);
+    pugModel.put("n", 1);
+    handler.evaluateExpression("n + 1", pugModel);
+    handler.evaluateExpression("n + 1", pugModel);
+    assertEquals(1, handler.getCacheStats().missCount());
+    assertEquals(1, handler.getCacheStats().hitCount());
+
+    handler.clearCache();
+    handler.evaluateExpression("n + 1", pugModel);
+    assertEquals(2, handler.getCacheStats().missCount());
+  }
+
+  @Test
+  public void disabledCacheParsesEveryEvaluation() throws Exception {
+    GraalJsExpressionHandler handler = new GraalJsExpressionHandler(1);
+    handler.setCache(false);
+    pugModel.put("n", 1);
+    assertEquals(2, handler.evaluateExpression("n + 1", pugModel));
+    assertEquals(2, handler.evaluateExpression("n + 1", pugModel));
+    assertEquals(0, handler.getCacheSize());
+    assertEquals(0, handler.getCacheStats().requestCount());
+
+    handler.setCacheSize(10);
+    assertEquals(10, handler.getCacheSize());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void cacheSizeMustNotBeNegative() {
+    graalJsExpressionHandler.setCacheSize(-1);
+  }
+
+  @Test
+  public void renderHoldsOneContext() throws Exception {
+    GraalJsExpressionHandler handler = new GraalJsExpressionHandler(1);
+    pugModel.put("n", 1);
+
+    handler.beginRender();
+    try {
+      assertEquals(2, handler.evaluateExpression("n + 1", pugModel));
+      assertEquals(3, handler.evaluateExpression("n + 2", pugModel));
+      assertTrue(handler.idleContexts.isEmpty());
+    } finally {
+      handler.endRender();
+    }
+    assertEquals(1, handler.idleContexts.size());
+  }
+
+  @Test
+  public void undefinedVariablesResolveToUndefined() throws Exception {
+    assertNull(graalJsExpressionHandler.evaluateExpression("avatar", pugModel));
+    assertEquals(
+        "undefined", graalJsExpressionHandler.evaluateExpression("typeof avatar", pugModel));
+    assertNull(graalJsExpressionHandler.evaluateExpression("user.avatar", pugModel));
+    assertEquals(3, graalJsExpressionHandler.evaluateExpression("Math.max(1, 3)", pugModel));
+  }
+
+  @Test
+  public void memberChainsOnUndefinedVariablesDoNotThrow() throws Exception {
+    GraalJsExpressionHandler handler = new GraalJsExpressionHandler(1);
+    handler.evaluateExpression("1", pugModel);
+    GraalJsExpressionHandler.PooledContext pooled = handler.idleContexts.peekFirst();
+    pooled.modelProxy.swap(pugModel);
+    // Runs the statement the handler evaluates without its error handling, so any exception
+    // fails the test
+    for (String expression :
+        new String[] {"user.avatar", "user.avatar.url", "user['avatar'].url", "user.name()"}) {
+      String statement = handler.statement(expression, pooled.context);
+      Value result =
+          pooled.context.eval("js", GraalJsExpressionHandler.wrapInModelScope(statement));
+      assertTrue(expression, result.isNull());
+      assertNull(handler.evaluateExpression(expression, pugModel));
+    }
+  }
+
+  @Test
+  public void memberChainsAreRewritten() {
+    String invoke = GraalJsExpressionHandler.INVOKE_BINDING;
+    assertEquals("user?.avatar.url", MemberAccessRewriter.rewrite("user.avatar.url", invoke));
+    assertEquals("items?.[i].name", MemberAccessRewriter.rewrite("items[i].name", invoke));
+    assertEquals(
+        "items?.[user?.index]", MemberAccessRewriter.rewrite("items[user.index]", invoke));
+    assertEquals(
+        "(person == null ? undefined : " + invoke + "(" + invoke + "(person, \"name\"), \"trim\"))",
+        MemberAccessRewriter.rewrite("person.name().trim()", invoke));
+    assertEquals(
+        "list?.map(i => i?.label).join(', ')",
+        MemberAccessRewriter.rewrite("list.map(i => i.label).join(', ')", invoke));
+    assertEquals("`${user?.name}.x`", MemberAccessRewriter.rewrite("`${user.name}.x`", invoke));
+    // Left alone: strings, regular expressions, numbers, keywords, assignments and new
+    for (String expression :
+        new String[] {
+          "'user.name'",
+          "/a.b/.test(x)",
+          "1.5",
+          "this.x",
+          "user.name = 'x'",
+          "user.count += 1",
+          "user.count++",
+          "new Foo.Bar()",
+          "fn(1)",
+          "user?.name()"
+        }) {
+      assertEquals(expression, MemberAccessRewriter.rewrite(expression, invoke));
+    }
+  }
+
+  @Test
+  public void recordAccessorCallsResolveWithoutRetry() throws Exception {
+    pugModel.put("person", new Person("Ada"));
+    assertEquals("Ada", graalJsExpressionHandler.evaluateExpression("person.name()", pugModel));
+    assertEquals(
+        "ADA",
+        graalJsExpressionHandler.evaluateExpression("person.name().toUpperCase()", pugModel));
+    // A retry would have replaced the statement with the property access rewrite
+    String statement =
+        graalJsExpressionHandler.statement(
+            "person.name()", graalJsExpressionHandler.idleContexts.peekFirst().context);
+    assertTrue(statement, statement.contains(GraalJsExpressionHandler.INVOKE_BINDING));
+  }
+
+  public record Person(String name) {}
+
+  @Test
+  public void assignmentToUndeclaredVariableReachesModel() throws Exception {
+    graalJsExpressionHandler.evaluateExpression("counter = 5", pugModel);
+    assertEquals(5, pugModel.get("counter"));
+  }
+
+  @Test
+  public void compiledSimpleExpressionsMatchEvaluation() throws Exception {
+    Map<String, Object> user = new HashMap<>();
+    user.put("name", "Alice");
+    user.put("size", 5);
+    user.put("address", null);
+    user.put("active", Boolean.FALSE);
+    user.put("visits", 7L);
+    user.put("score", 2.0);
+    user.put("tags", new String[] {"a"});
+    user.put("since", new java.util.Date(0));
+    user.put("friends", Arrays.asList("Bob"));
+    pugModel.put("user", user);
+    pugModel.put("nothing", null);
+    pugModel.put("Math", "shadowed");
+
+    String[] expressions = {
+      "user", "user.name", "user.size", "user.missing", "user.get", "user.address", "!user.active",
+      "user.visits", "user.score", "user.tags", "user.since", "user.friends", "missing",
+      "missing.name", "!missing", "nothing", "Math", "JSON", "'text'", "\"text\"", "42", "true",
+      "false", "null", "!nothing"
+    };
+    for (String expression : expressions) {
+      CompiledExpression compiled = graalJsExpressionHandler.compile(expression);
+      Object expected = graalJsExpressionHandler.evaluateExpression(expression, pugModel);
+      assertEquals(
+          expression, String.valueOf(expected), String.valueOf(compiled.evaluate(pugModel)));
+      assertEquals(expression, classOf(expected), classOf(compiled.evaluate(pugModel)));
+    }
+  }
+
+  @Test
+  public void compiledPropertyPathsOfMapsDoNotRunJs() throws Exception {
+    Map<String, Object> user = new HashMap<>();
+    user.put("name", "Alice");
+    pugModel.put("user", user);
+    pugModel.put("visible", true);
+
+    assertEquals("Alice", graalJsExpressionHandler.compile("user.name").evaluate(pugModel));
+    assertEquals(false, graalJsExpressionHandler.compile("!visible").evaluate(pugModel));
+    assertEquals(42, graalJsExpressionHandler.compile("42").evaluate(pugModel));
+    assertTrue(graalJsExpressionHandler.idleContexts.isEmpty());
+  }
+
+  private static Class<?> classOf(Object value) {
+    return value == null ? null : value.getClass();
+  }
 }
@@ -55,6 +55,77 @@ public class JexlExpressionHandlerTest {
     assertTrue((Boolean) object);
   }
 
+  @Test
+  public void compiledExpressionCanBeEvaluatedRepeatedly() throws Exception {
+    CompiledExpression compiled = jexlExpressionHandler.compile("count + 1");
+
+    pugModel.put("count", 1);
+    assertEquals(2, compiled.evaluate(pugModel));
+    pugModel.put("count", 2);
+    assertEquals(3, compiled.evaluate(pugModel));
+    assertTrue(compiled.evaluateBoolean(pugModel));
+    assertEquals("3", compiled.evaluateString(pugModel));
+  }
+
+  @Test
+  public void compiledDeclarationRegistersLocalVariable() throws Exception {
+    CompiledExpression compiled = jexlExpressionHandler.compile("var list = [1,2,3]");
+
+    compiled.evaluate(pugModel);
+
+    int[] list = (int[]) pugModel.get("list");
+    assertEquals(1, list[0]);
+  }
+
+  @Test(expected = ExpressionException.class)
+  public void compileRejectsInvalidExpression() throws Exception {
+    jexlExpressionHandler.compile("1 +");
+  }
+
+  @Test
+  public void compiledSimpleExpressionsMatchEvaluation() throws Exception {
+    Level2TestBean level2 = new Level2TestBean();
+    level2.setName("bean");
+    TestBean bean = new TestBean();
+    bean.setLevel2(level2);
+    Map<String, Object> user = new HashMap<>();
+    user.put("name", "Alice");
+    user.put("address", null);
+    user.put("active", Boolean.FALSE);
+    pugModel.put("bean", bean);
+    pugModel.put("user", user);
+    pugModel.put("items", new ArrayList<>());
+    pugModel.put("nothing", null);
+
+    String[] expressions = {
+      "user.name", "user.missing", "user.address", "user.address.city", "!user.active",
+      "bean.level2.name", "bean.missing", "missing", "missing.name", "!missing", "nothing",
+      "nothing.name", "!items", "'text'", "\"text\"", "42", "true", "false", "null", "!nothing"
+    };
+    for (String expression : expressions) {
+      CompiledExpression compiled = jexlExpressionHandler.compile(expression);
+      Object expected = jexlExpressionHandler.evaluateExpression(expression, pugModel);
+      assertEquals(expression, expected, compiled.evaluate(pugModel));
+      assertEquals(expression, expected, compiled.evaluate(pugModel));
+    }
+  }
+
+  @Test
+  public void compiledPropertyPathFollowsChangingTypes() throws Exception {
+    CompiledExpression compiled = jexlExpressionHandler.compile("item.name");
+    Map<String, Object> map = new HashMap<>();
+    map.put("name", "map");
+    Level2TestBean bean = new Level2TestBean();
+    bean.setName("bean");
+
+    pugModel.put("item", map);
+    assertEquals("map", compiled.evaluate(pugModel));
+    pugModel.put("item", bean);
+    assertEquals("bean", compiled.evaluate(pugModel));
+    pugModel.put("item", map);
+    assertEquals("map", compiled.evaluate(pugModel));
+  }
+
   @Test
   public void testArrayList() throws ExpressionException {
     jexlExpressionHandler.evaluateExpression("var list = [1,2,3]", pugModel);
@@ -0,0 +1,46 @@
+package de.neuland.pug4j.expression;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SimpleExpressionTest {
+
+  @Test
+  public void propertyPath() {
+    SimpleExpression expression = SimpleExpression.parse(" user.address.city ");
+    assertFalse(expression.isLiteral());
+    assertFalse(expression.isNegated());
+    assertEquals("user", expression.getVariable());
+    assertArrayEquals(new String[] {"address", "city"}, expression.getProperties());
+  }
+
+  @Test
+  public void negatedVariable() {
+    SimpleExpression expression = SimpleExpression.parse("!flag");
+    assertTrue(expression.isNegated());
+    assertEquals("flag", expression.getVariable());
+    assertEquals(0, expression.getProperties().length);
+  }
+
+  @Test
+  public void literals() {
+    assertEquals("text", SimpleExpression.parse("'text'").getValue());
+    assertEquals("it's", SimpleExpression.parse("\"it's\"").getValue());
+    assertEquals(42, SimpleExpression.parse("42").getValue());
+    assertEquals(Boolean.TRUE, SimpleExpression.parse("true").getValue());
+    assertTrue(SimpleExpression.parse("null").isLiteral());
+    assertNull(SimpleExpression.parse("null").getValue());
+  }
+
+  @Test
+  public void otherExpressionsAreNotSimple() {
+    String[] expressions = {
+      "", "a + b", "a.b()", "a[0]", "a.0", "1.5", "010", "12345678901", "'a' + 'b'", "'a\\'b'",
+      "!!a", "!true", "empty", "size.x", "a.size", "a..b", "a.", ".a", "var a", "a = 1"
+    };
+    for (String expression : expressions) {
+      assertNull(expression, SimpleExpression.parse(expression));
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package de.neuland.pug4j.filter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class CachingFilterTest {
+
+  private final Map<String, Object> model = Collections.emptyMap();
+
+  @Test
+  public void convertsOncePerSourceAndAttributes() {
+    CountingFilter filter = new CountingFilter();
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put("lang", "en");
+
+    assertEquals("[a]", filter.convert("a", attributes, model));
+    assertEquals("[a]", filter.convert("a", new HashMap<>(attributes), model));
+    assertEquals(1, filter.conversions);
+
+    filter.convert("a", Collections.emptyMap(), model);
+    filter.convert("b", attributes, model);
+    assertEquals(3, filter.conversions);
+  }
+
+  @Test
+  public void cachedResultIgnoresLaterChangesOfTheAttributes() {
+    CountingFilter filter = new CountingFilter();
+    Map<String, Object> attributes = new HashMap<>();
+    filter.convert("a", attributes, model);
+
+    attributes.put("lang", "en");
+    filter.convert("a", attributes, model);
+
+    assertEquals(2, filter.conversions);
+  }
+
+  @Test
+  public void filtersDoNotShareResults() {
+    Map<String, Object> attributes = Collections.emptyMap();
+
+    assertEquals(
+        "<script type=\"text/javascript\">x</script>",
+        new JsFilter().convert("x", attributes, model));
+    assertEquals(
+        "<style type=\"text/css\">x</style>", new CssFilter().convert("x", attributes, model));
+  }
+
+  private static final class CountingFilter extends CachingFilter {
+    private int conversions;
+
+    @Override
+    protected String convert(String source, Map<String, Object> attributes) {
+      conversions++;
+      return "[" + source + "]";
+    }
+  }
+}
@@ -4,11 +4,14 @@ import static org.junit.Assert.assertEquals;
 
 import de.neuland.pug4j.IntegrationTestSetup;
 import de.neuland.pug4j.TestFileHelper;
+import de.neuland.pug4j.compiler.CompilationMode;
 import de.neuland.pug4j.expression.JexlExpressionHandler;
 import java.io.*;
 import java.net.URISyntaxException;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Map;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -35,52 +38,62 @@ public class AdjustedPug2Test {
         "filters.coffeescript" // missing filter
       };
 
-  private static final IntegrationTestSetup testSetup;
+  private static final Map<CompilationMode, IntegrationTestSetup> testSetups =
+      new EnumMap<>(CompilationMode.class);
 
   static {
     try {
-      testSetup =
-          new IntegrationTestSetup(
-              TestFileHelper.getAdjustedPug2ResourcePath(""),
-              "cases",
-              "pug",
-              new JexlExpressionHandler(),
-              builder ->
-                  builder.filter(
-                      "custom2",
-                      (source, attributes, model) -> {
-                        Object opt = attributes.get("opt");
-                        Object num = attributes.get("num");
-                        assertEquals("val", opt);
-                        assertEquals(2, num);
-                        return "START" + source + "STOP";
-                      }));
+      for (CompilationMode mode : CompilationMode.values()) {
+        testSetups.put(
+            mode,
+            new IntegrationTestSetup(
+                TestFileHelper.getAdjustedPug2ResourcePath(""),
+                "cases",
+                "pug",
+                new JexlExpressionHandler(),
+                builder ->
+                    builder
+                        .compilationMode(mode)
+                        .filter(
+                            "custom2",
+                            (source, attributes, model) -> {
+                              Object opt = attributes.get("opt");
+                              Object num = attributes.get("num");
+                              assertEquals("val", opt);
+                              assertEquals(2, num);
+                              return "START" + source + "STOP";
+                            })));
+      }
     } catch (FileNotFoundException | URISyntaxException e) {
       throw new RuntimeException("Failed to initialize test setup", e);
     }
   }
 
   private String file;
+  private CompilationMode compilationMode;
 
-  public AdjustedPug2Test(String file) {
+  public AdjustedPug2Test(String file, CompilationMode compilationMode) {
     this.file = file;
+    this.compilationMode = compilationMode;
   }
 
   @Test
   public void shouldCompilePugToHtml() throws Exception {
+    IntegrationTestSetup testSetup = testSetups.get(compilationMode);
     HashMap<String, Object> model = new HashMap<String, Object>();
     model.put("title", "Pug");
 
     String actual = testSetup.getActualHtml(file, model);
     String expected = testSetup.getExpectedHtml(file);
 
-    assertEquals(file, expected, actual);
+    assertEquals(file + " " + compilationMode, expected, actual);
   }
 
-  @Parameterized.Parameters(name = "{0}")
-  public static Collection<String[]> data() throws FileNotFoundException, URISyntaxException {
+  @Parameterized.Parameters(name = "{0} {1}")
+  public static Collection<Object[]> data() throws FileNotFoundException, URISyntaxException {
     String resourcePath = TestFileHelper.getAdjustedPug2ResourcePath("/cases");
     String extension = "pug";
-    return IntegrationTestSetup.createTestFileData(resourcePath, extension, ignoredCases);
+    return IntegrationTestSetup.withCompilationModes(
+        IntegrationTestSetup.createTestFileData(resourcePath, extension, ignoredCases));
   }
 }
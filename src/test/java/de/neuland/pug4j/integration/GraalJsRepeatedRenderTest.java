@@ -7,14 +7,18 @@ import de.neuland.pug4j.TestFileHelper;
 import de.neuland.pug4j.expression.GraalJsExpressionHandler;
 import java.io.FileNotFoundException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.junit.Test;
 
 /**
- * Renders templates twice on the same thread. The GraalVM context is thread-local and persistent,
- * so state leaking from the first render (e.g. global lexical bindings from top-level let/const)
- * only shows up on the second render — the parameterized suites render each case exactly once and
- * never catch this.
+ * Renders templates repeatedly. The GraalVM contexts are pooled and persistent, so state leaking
+ * from the first render (e.g. global lexical bindings from top-level let/const) only shows up on
+ * later renders, and renders that share contexts only interfere when they run concurrently — the
+ * parameterized suites render each case exactly once on one thread and never catch this.
  */
 public class GraalJsRepeatedRenderTest {
 
@@ -43,4 +47,51 @@ public class GraalJsRepeatedRenderTest {
           file + " (second render)", expected, testSetup.getActualHtml(file, new HashMap<>()));
     }
   }
+
+  /**
+   * Functions and objects created by one expression belong to the JS context it ran in. With more
+   * threads than pooled contexts, a render that got another context for a later expression would
+   * lose its functions or call into a context that another thread has entered.
+   */
+  @Test
+  public void shouldRenderFromMoreThreadsThanContexts() throws Exception {
+    IntegrationTestSetup pooledSetup =
+        new IntegrationTestSetup(
+            TestFileHelper.getPug4JGraalVMTestsResourcePath(""),
+            "cases",
+            "pug",
+            new GraalJsExpressionHandler(2));
+    String[] files = {"buffered-code.pug", "data-types.pug"};
+    Map<String, String> expected = new HashMap<>();
+    for (String file : files) {
+      expected.put(file, pooledSetup.getExpectedHtml(file));
+    }
+    List<String> failures = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      threads.add(
+          new Thread(
+              () -> {
+                for (int n = 0; n < 25; n++) {
+                  String file = files[n % files.length];
+                  try {
+                    String actual = pooledSetup.getActualHtml(file, new HashMap<>());
+                    if (!expected.get(file).equals(actual)) {
+                      failures.add(file + ": " + actual);
+                    }
+                  } catch (Exception e) {
+                    failures.add(file + ": " + e);
+                  }
+                }
+              }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(Collections.emptyList(), failures);
+  }
 }
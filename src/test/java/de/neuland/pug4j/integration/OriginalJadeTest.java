@@ -4,11 +4,14 @@ import static org.junit.Assert.assertEquals;
 
 import de.neuland.pug4j.IntegrationTestSetup;
 import de.neuland.pug4j.TestFileHelper;
+import de.neuland.pug4j.compiler.CompilationMode;
 import de.neuland.pug4j.expression.JexlExpressionHandler;
 import java.io.*;
 import java.net.URISyntaxException;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Map;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -50,39 +53,51 @@ public class OriginalJadeTest {
         "html5"
       };
 
-  private static final IntegrationTestSetup testSetup;
+  private static final Map<CompilationMode, IntegrationTestSetup> testSetups =
+      new EnumMap<>(CompilationMode.class);
 
   static {
     try {
-      testSetup =
-          new IntegrationTestSetup(
-              TestFileHelper.getOriginalResourcePath(""), "", "jade", new JexlExpressionHandler());
+      for (CompilationMode mode : CompilationMode.values()) {
+        testSetups.put(
+            mode,
+            new IntegrationTestSetup(
+                TestFileHelper.getOriginalResourcePath(""),
+                "",
+                "jade",
+                new JexlExpressionHandler(),
+                builder -> builder.compilationMode(mode)));
+      }
     } catch (FileNotFoundException | URISyntaxException e) {
       throw new RuntimeException("Failed to initialize test setup", e);
     }
   }
 
   private String file;
+  private CompilationMode compilationMode;
 
-  public OriginalJadeTest(String file) {
+  public OriginalJadeTest(String file, CompilationMode compilationMode) {
     this.file = file;
+    this.compilationMode = compilationMode;
   }
 
   @Test
   public void shouldCompileJadeToHtml() throws Exception {
+    IntegrationTestSetup testSetup = testSetups.get(compilationMode);
     HashMap<String, Object> model = new HashMap<String, Object>();
     model.put("title", "Pug");
 
     String actual = testSetup.getActualHtml(file, model, false);
     String expected = testSetup.getExpectedHtml(file);
 
-    assertEquals(file, expected, actual);
+    assertEquals(file + " " + compilationMode, expected, actual);
   }
 
-  @Parameterized.Parameters(name = "{0}")
-  public static Collection<String[]> data() throws FileNotFoundException, URISyntaxException {
+  @Parameterized.Parameters(name = "{0} {1}")
+  public static Collection<Object[]> data() throws FileNotFoundException, URISyntaxException {
     String resourcePath = TestFileHelper.getOriginalResourcePath("");
     String extension = "jade";
-    return IntegrationTestSetup.createTestFileData(resourcePath, extension, ignoredCases);
+    return IntegrationTestSetup.withCompilationModes(
+        IntegrationTestSetup.createTestFileData(resourcePath, extension, ignoredCases));
   }
 }
@@ -4,10 +4,13 @@ import static org.junit.Assert.assertEquals;
 
 import de.neuland.pug4j.IntegrationTestSetup;
 import de.neuland.pug4j.TestFileHelper;
+import de.neuland.pug4j.compiler.CompilationMode;
 import de.neuland.pug4j.expression.JexlExpressionHandler;
 import java.io.*;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.EnumMap;
+import java.util.Map;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -38,42 +41,51 @@ public class OriginalPug2Test {
         "filters.coffeescript" // missing filter
       };
 
-  private static final IntegrationTestSetup testSetup;
+  private static final Map<CompilationMode, IntegrationTestSetup> testSetups =
+      new EnumMap<>(CompilationMode.class);
 
   static {
     try {
-      testSetup =
-          new IntegrationTestSetup(
-              TestFileHelper.getOriginalPug2ResourcePath(""),
-              "cases",
-              "pug",
-              new JexlExpressionHandler());
+      for (CompilationMode mode : CompilationMode.values()) {
+        testSetups.put(
+            mode,
+            new IntegrationTestSetup(
+                TestFileHelper.getOriginalPug2ResourcePath(""),
+                "cases",
+                "pug",
+                new JexlExpressionHandler(),
+                builder -> builder.compilationMode(mode)));
+      }
     } catch (FileNotFoundException | URISyntaxException e) {
       throw new RuntimeException("Failed to initialize test setup", e);
     }
   }
 
   private String file;
+  private CompilationMode compilationMode;
 
-  public OriginalPug2Test(String file) {
+  public OriginalPug2Test(String file, CompilationMode compilationMode) {
     this.file = file;
+    this.compilationMode = compilationMode;
   }
 
   @Test
   public void shouldCompileJadeToHtml() throws Exception {
+    IntegrationTestSetup testSetup = testSetups.get(compilationMode);
     HashMap<String, Object> model = new HashMap<String, Object>();
     model.put("title", "Pug");
 
     String actual = testSetup.getActualHtml(file, model);
     String expected = testSetup.getExpectedHtml(file);
 
-    assertEquals(file, expected, actual);
+    assertEquals(file + " " + compilationMode, expected, actual);
   }
 
-  @Parameterized.Parameters(name = "{0}")
-  public static Collection<String[]> data() throws FileNotFoundException, URISyntaxException {
+  @Parameterized.Parameters(name = "{0} {1}")
+  public static Collection<Object[]> data() throws FileNotFoundException, URISyntaxException {
     String resourcePath = TestFileHelper.getOriginalPug2ResourcePath("/cases");
     String extension = "pug";
-    return IntegrationTestSetup.createTestFileData(resourcePath, extension, ignoredCases);
+    return IntegrationTestSetup.withCompilationModes(
+        IntegrationTestSetup.createTestFileData(resourcePath, extension, ignoredCases));
   }
 }
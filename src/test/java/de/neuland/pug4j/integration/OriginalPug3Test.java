@@ -4,11 +4,14 @@ import static org.junit.Assert.assertEquals;
 
 import de.neuland.pug4j.IntegrationTestSetup;
 import de.neuland.pug4j.TestFileHelper;
+import de.neuland.pug4j.compiler.CompilationMode;
 import de.neuland.pug4j.expression.GraalJsExpressionHandler;
 import java.io.*;
 import java.net.URISyntaxException;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Map;
 import org.apache.commons.lang3.ArrayUtils;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -34,29 +37,37 @@ public class OriginalPug3Test {
 
   private static String[] casesWithoutLinebreak = new String[] {"filters.nested"};
 
-  private static final IntegrationTestSetup testSetup;
+  private static final Map<CompilationMode, IntegrationTestSetup> testSetups =
+      new EnumMap<>(CompilationMode.class);
 
   static {
     try {
-      testSetup =
-          new IntegrationTestSetup(
-              TestFileHelper.getOriginalPug3ResourcePath(""),
-              "cases",
-              "pug",
-              new GraalJsExpressionHandler());
+      for (CompilationMode mode : CompilationMode.values()) {
+        testSetups.put(
+            mode,
+            new IntegrationTestSetup(
+                TestFileHelper.getOriginalPug3ResourcePath(""),
+                "cases",
+                "pug",
+                new GraalJsExpressionHandler(),
+                builder -> builder.compilationMode(mode)));
+      }
     } catch (FileNotFoundException | URISyntaxException e) {
       throw new RuntimeException("Failed to initialize test setup", e);
     }
   }
 
   private String file;
+  private CompilationMode compilationMode;
 
-  public OriginalPug3Test(String file) {
+  public OriginalPug3Test(String file, CompilationMode compilationMode) {
     this.file = file;
+    this.compilationMode = compilationMode;
   }
 
   @Test
   public void shouldCompileJadeToHtml() throws Exception {
+    IntegrationTestSetup testSetup = testSetups.get(compilationMode);
     HashMap<String, Object> model = new HashMap<String, Object>();
     model.put("title", "Pug");
 
@@ -68,13 +79,14 @@ public class OriginalPug3Test {
       expected = expected.replaceAll("\\n| ", "");
     }
 
-    assertEquals(file, expected, actual);
+    assertEquals(file + " " + compilationMode, expected, actual);
   }
 
-  @Parameterized.Parameters(name = "{0}")
-  public static Collection<String[]> data() throws FileNotFoundException, URISyntaxException {
+  @Parameterized.Parameters(name = "{0} {1}")
+  public static Collection<Object[]> data() throws FileNotFoundException, URISyntaxException {
     String resourcePath = TestFileHelper.getOriginalPug3ResourcePath("/cases");
     String extension = "pug";
-    return IntegrationTestSetup.createTestFileData(resourcePath, extension, ignoredCases);
+    return IntegrationTestSetup.withCompilationModes(
+        IntegrationTestSetup.createTestFileData(resourcePath, extension, ignoredCases));
   }
 }
@@ -4,11 +4,14 @@ import static org.junit.Assert.assertEquals;
 
 import de.neuland.pug4j.IntegrationTestSetup;
 import de.neuland.pug4j.TestFileHelper;
+import de.neuland.pug4j.compiler.CompilationMode;
 import de.neuland.pug4j.expression.GraalJsExpressionHandler;
 import java.io.*;
 import java.net.URISyntaxException;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Map;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -17,42 +20,51 @@ import org.junit.runners.Parameterized;
 public class Pug4JGraalVMIntegrationTest {
 
   private static String[] ignoredCases = new String[] {};
-  private static final IntegrationTestSetup testSetup;
+  private static final Map<CompilationMode, IntegrationTestSetup> testSetups =
+      new EnumMap<>(CompilationMode.class);
 
   static {
     try {
-      testSetup =
-          new IntegrationTestSetup(
-              TestFileHelper.getPug4JGraalVMTestsResourcePath(""),
-              "cases",
-              "pug",
-              new GraalJsExpressionHandler());
+      for (CompilationMode mode : CompilationMode.values()) {
+        testSetups.put(
+            mode,
+            new IntegrationTestSetup(
+                TestFileHelper.getPug4JGraalVMTestsResourcePath(""),
+                "cases",
+                "pug",
+                new GraalJsExpressionHandler(),
+                builder -> builder.compilationMode(mode)));
+      }
     } catch (FileNotFoundException | URISyntaxException e) {
       throw new RuntimeException("Failed to initialize test setup", e);
     }
   }
 
   private String file;
+  private CompilationMode compilationMode;
 
-  public Pug4JGraalVMIntegrationTest(String file) {
+  public Pug4JGraalVMIntegrationTest(String file, CompilationMode compilationMode) {
     this.file = file;
+    this.compilationMode = compilationMode;
   }
 
   @Test
   public void shouldCompilePugToHtml() throws Exception {
+    IntegrationTestSetup testSetup = testSetups.get(compilationMode);
     HashMap<String, Object> model = new HashMap<String, Object>();
     model.put("title", "Pug");
 
     String actual = testSetup.getActualHtml(file, model);
     String expected = testSetup.getExpectedHtml(file);
 
-    assertEquals(file, expected, actual);
+    assertEquals(file + " " + compilationMode, expected, actual);
   }
 
-  @Parameterized.Parameters(name = "{0}")
-  public static Collection<String[]> data() throws FileNotFoundException, URISyntaxException {
+  @Parameterized.Parameters(name = "{0} {1}")
+  public static Collection<Object[]> data() throws FileNotFoundException, URISyntaxException {
     String resourcePath = TestFileHelper.getPug4JGraalVMTestsResourcePath("/cases");
     String extension = "pug";
-    return IntegrationTestSetup.createTestFileData(resourcePath, extension, ignoredCases);
+    return IntegrationTestSetup.withCompilationModes(
+        IntegrationTestSetup.createTestFileData(resourcePath, extension, ignoredCases));
   }
 }
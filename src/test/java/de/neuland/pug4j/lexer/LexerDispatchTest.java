@@ -0,0 +1,171 @@
+package de.neuland.pug4j.lexer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import de.neuland.pug4j.exceptions.PugLexerException;
+import de.neuland.pug4j.expression.JexlExpressionHandler;
+import de.neuland.pug4j.lexer.token.Token;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * {@link Lexer#next()} only tries the scanners that can match the next character. These cases
+ * start with characters that more than one scanner matches; the expected tokens are the ones the
+ * lexer produced when it tried every scanner in turn.
+ */
+public class LexerDispatchTest {
+
+  @Test
+  public void dash() throws Exception {
+    assertTokens("-var x = 1", "Expression(var x = 1)", "Eos");
+    assertTokens("- var x = 1", "Expression(var x = 1)", "Eos");
+    assertTokens(
+        "-\n  var x = 1\n  x++",
+        "BlockCode",
+        "StartPipelessText",
+        "Text(var x = 1)",
+        "Newline",
+        "Text(x++)",
+        "EndPipelessText",
+        "Eos");
+    assertTokens(
+        "- if (a) {\n  p x\n- }",
+        "Expression(if (a) {)",
+        "Indent(2)",
+        "Tag(p)",
+        "Text(x)",
+        "Outdent",
+        "Expression(})",
+        "Eos");
+    assertError("-each item in items", "Pug each and for should no longer be prefixed");
+  }
+
+  @Test
+  public void pipe() throws Exception {
+    assertTokens("| text", "Text(text)", "Eos");
+    assertTokens("|", "Text()", "Eos");
+    assertTokens("p\n  | piped", "Tag(p)", "Indent(2)", "Text(piped)", "Outdent", "Eos");
+    assertTokens("p |not piped", "Tag(p)", "Text(|not piped)", "Eos");
+  }
+
+  @Test
+  public void dot() throws Exception {
+    assertTokens(".", "Dot", "Eos");
+    assertTokens(".class", "CssClass(class)", "Eos");
+    assertTokens("p.a.b", "Tag(p)", "CssClass(a)", "CssClass(b)", "Eos");
+    assertTokens(
+        "p.\n  text block",
+        "Tag(p)",
+        "Dot",
+        "StartPipelessText",
+        "Text(text block)",
+        "EndPipelessText",
+        "Eos");
+    assertError(". text", "\" text\" is not a valid class name.");
+  }
+
+  @Test
+  public void hash() throws Exception {
+    assertTokens("#id", "CssId(id)", "Eos");
+    assertTokens("#{name}", "Interpolation(name)", "Eos");
+    assertTokens("#{a} b", "Interpolation(a)", "Text(b)", "Eos");
+    assertTokens("p#{x}", "Tag(p)", "Interpolation(x)", "Eos");
+    assertTokens(
+        "p #[em inline] text",
+        "Tag(p)",
+        "Text()",
+        "StartPugInterpolation",
+        "Tag(em)",
+        "Text(inline)",
+        "EndPugInterpolation",
+        "Text( text)",
+        "Eos");
+    assertError("#[strong hi]", "\"#[strong\" is not a valid ID.");
+    assertError("# not id", "\"#\" is not a valid ID.");
+  }
+
+  @Test
+  public void plus() throws Exception {
+    assertTokens("+mixin", "Call(mixin)", "Eos");
+    assertTokens("+mixin(1, 2)", "Call(mixin)", "Eos");
+    assertTokens("+#{name}()", "Call(#{name})", "Eos");
+    assertTokens("p: +mixin", "Tag(p)", "Colon", "Call(mixin)", "Eos");
+  }
+
+  @Test
+  public void ampersand() throws Exception {
+    assertTokens("&attributes(attrs)", "AttributesBlock(attrs)", "Eos");
+    assertTokens("p&attributes(attrs)", "Tag(p)", "AttributesBlock(attrs)", "Eos");
+  }
+
+  @Test
+  public void openingParenthesis() throws Exception {
+    assertTokens("(a=1)", "StartAttributes", "Attribute[a]", "EndAttributes", "Eos");
+    assertTokens(
+        "p(a=1 b)",
+        "Tag(p)",
+        "StartAttributes",
+        "Attribute[a]",
+        "Attribute[b]",
+        "EndAttributes",
+        "Eos");
+  }
+
+  @Test
+  public void colon() throws Exception {
+    assertTokens(
+        ":markdown\n  text",
+        "Filter(markdown)",
+        "StartPipelessText",
+        "Text(text)",
+        "EndPipelessText",
+        "Eos");
+    assertTokens("p: em hi", "Tag(p)", "Colon", "Tag(em)", "Text(hi)", "Eos");
+  }
+
+  @Test
+  public void lessThan() throws Exception {
+    assertTokens("<div>raw</div>", "TextHtml(<div>raw</div>)", "Eos");
+    assertTokens(
+        "p\n  <b>raw</b>", "Tag(p)", "Indent(2)", "TextHtml(<b>raw</b>)", "Outdent", "Eos");
+  }
+
+  @Test
+  public void slash() throws Exception {
+    assertTokens("// comment", "Comment( comment)", "Eos");
+    assertTokens("//- silent", "Comment( silent)", "Eos");
+    assertTokens("p/", "Tag(p)", "Slash", "Eos");
+  }
+
+  private void assertTokens(String pug, String... expected) throws Exception {
+    List<String> tokens = new ArrayList<>();
+    for (Token token : lexer(pug).getTokens()) {
+      tokens.add(describe(token));
+    }
+    assertEquals(Arrays.asList(expected), tokens);
+  }
+
+  private void assertError(String pug, String message) throws Exception {
+    Lexer lexer = lexer(pug);
+    PugLexerException exception = assertThrows(PugLexerException.class, lexer::getTokens);
+    assertTrue(exception.getMessage(), exception.getMessage().startsWith(message));
+  }
+
+  private static String describe(Token token) {
+    if (token.getName() != null) {
+      return token.getType() + "[" + token.getName() + "]";
+    }
+    if (token.getValue() != null) {
+      return token.getType() + "(" + token.getValue() + ")";
+    }
+    return token.getType();
+  }
+
+  private static Lexer lexer(String pug) throws Exception {
+    return new Lexer(pug, "inline", null, new JexlExpressionHandler());
+  }
+}
@@ -1,6 +1,8 @@
 package de.neuland.pug4j.lexer;
 
 import java.io.StringReader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import junit.framework.TestCase;
 
 public class ScannerTest extends TestCase {
@@ -10,4 +12,37 @@ public class ScannerTest extends TestCase {
     String input = scanner.getInput();
     assertEquals("hallo\nwelt", input);
   }
+
+  public void testConsumeKeepsRemainingInput() {
+    Scanner scanner = new Scanner("div\n  p text");
+    scanner.consume(4);
+    assertEquals("  p text", scanner.getInput());
+    assertEquals(8, scanner.length());
+    assertEquals('p', scanner.charAt(2));
+    assertEquals("p", scanner.substring(2, 3));
+    assertEquals(-1, scanner.indexOf('\n', 0));
+  }
+
+  public void testMatcherSeesInputAtTimeOfCreation() {
+    Scanner scanner = new Scanner("div.item");
+    Matcher matcher = scanner.getMatcherForPattern(Pattern.compile("^(\\w+)"));
+    scanner.consume(3);
+    assertTrue(matcher.find(0));
+    assertEquals("div", matcher.group(1));
+    assertEquals(".item", scanner.getRemainingInput().toString());
+  }
+
+  public void testUnreadMovesOffsetBackOverConsumedText() {
+    Scanner scanner = new Scanner("a] rest\nnext");
+    scanner.consume(7);
+    scanner.unread(" rest");
+    assertEquals(" rest\nnext", scanner.getInput());
+  }
+
+  public void testUnreadCopiesOtherText() {
+    Scanner scanner = new Scanner("abc\ndef");
+    scanner.consume(4);
+    scanner.unread("xy");
+    assertEquals("xydef", scanner.getInput());
+  }
 }
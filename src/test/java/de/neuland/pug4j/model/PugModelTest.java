@@ -2,6 +2,7 @@ package de.neuland.pug4j.model;
 
 import static org.junit.Assert.*;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import org.junit.Before;
@@ -50,4 +51,111 @@ public class PugModelTest {
     assertTrue(model.containsKey("new"));
     assertEquals(model.get("hello"), "world");
   }
+
+  @Test
+  public void popScopeForgetsLocalsOfReusedScope() throws Exception {
+    for (int i = 0; i < 20; i++) {
+      model.pushScope();
+    }
+    model.putLocalVariableName("item");
+    model.put("item", "deep");
+    assertEquals("deep", model.get("item"));
+    for (int i = 0; i < 20; i++) {
+      model.popScope();
+    }
+    assertFalse(model.containsKey("item"));
+
+    model.put("item", "outer");
+    for (int i = 0; i < 20; i++) {
+      model.pushScope();
+    }
+    model.put("item", "changed");
+    for (int i = 0; i < 20; i++) {
+      model.popScope();
+    }
+    assertEquals("changed", model.get("item"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void popScopeWithoutScope() throws Exception {
+    model.popScope();
+  }
+
+  @Test
+  public void popRootScopeAfterPushedScope() throws Exception {
+    model.pushScope();
+    model.popScope();
+    try {
+      model.popScope();
+      fail("Popping the root scope should fail");
+    } catch (IllegalStateException expected) {
+      // the root scope is kept
+    }
+    model.put("hello", "again");
+    assertEquals("again", model.get("hello"));
+  }
+
+  @Test
+  public void clear() throws Exception {
+    model.clear();
+    assertNull(model.get("hello"));
+    model.put("hello", "again");
+    assertEquals("again", model.get("hello"));
+  }
+
+  @Test
+  public void layersAreReadByReference() throws Exception {
+    Map<String, Object> globals = new HashMap<String, Object>();
+    globals.put("hello", "global");
+    globals.put("site", "pug4j");
+    Map<String, Object> user = new HashMap<String, Object>();
+    user.put("site", "user");
+
+    model = new PugModel(null);
+    model.addLayer(globals);
+    model.addLayer(user);
+
+    assertEquals("global", model.get("hello"));
+    assertEquals("user", model.get("site"));
+    assertTrue(model.containsKey("hello"));
+    assertTrue(model.keySet().containsAll(globals.keySet()));
+
+    model.pushScope();
+    model.put("site", "changed");
+    model.popScope();
+    assertEquals("changed", model.get("site"));
+    assertEquals("user", user.get("site"));
+    assertEquals("pug4j", globals.get("site"));
+  }
+
+  @Test
+  public void removeLayeredVariable() throws Exception {
+    Map<String, Object> globals = new HashMap<String, Object>();
+    globals.put("hello", "global");
+    Map<String, Object> user = new HashMap<String, Object>();
+    user.put("hello", "user");
+
+    model = new PugModel(null);
+    model.addLayer(globals);
+    model.addLayer(user);
+
+    assertEquals("user", model.remove("hello"));
+    assertFalse(model.containsKey("hello"));
+    assertEquals("user", user.get("hello"));
+  }
+
+  @Test
+  public void layerShadowsRootVariables() throws Exception {
+    model.addLayer(Collections.singletonMap("hello", "layer"));
+    assertEquals("layer", model.get("hello"));
+    assertEquals("bar", model.get("foo"));
+  }
+
+  @Test
+  public void layeredRecordsAreWrappedOnce() throws Exception {
+    model.addLayer(Collections.singletonMap("person", new RecordWrapperTest.Person("Ada", 36)));
+    Object person = model.get("person");
+    assertTrue(person instanceof RecordWrapper);
+    assertSame(person, model.get("person"));
+  }
 }
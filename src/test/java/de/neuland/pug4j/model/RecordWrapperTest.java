@@ -12,6 +12,21 @@ public class RecordWrapperTest {
 
   record PersonWithAddress(String name, int age, Address address) {}
 
+  record CountingRecord(String name, String unused) {
+    static int nameReads;
+    static int unusedReads;
+
+    public String name() {
+      nameReads++;
+      return name;
+    }
+
+    public String unused() {
+      unusedReads++;
+      return unused;
+    }
+  }
+
   @Test
   public void testWrapSimpleRecord() {
     Person person = new Person("Alice", 42);
@@ -60,4 +75,27 @@ public class RecordWrapperTest {
   public void testWrapNonRecord() {
     new RecordWrapper("not a record");
   }
+
+  @Test
+  public void testComponentsAreReadOnFirstAccess() {
+    CountingRecord.nameReads = 0;
+    CountingRecord.unusedReads = 0;
+    RecordWrapper wrapper = new RecordWrapper(new CountingRecord("Carol", "x"));
+
+    assertEquals(0, CountingRecord.nameReads);
+    assertEquals("Carol", wrapper.get("name"));
+    assertEquals("Carol", wrapper.get("name"));
+    assertEquals(1, CountingRecord.nameReads);
+    assertEquals(0, CountingRecord.unusedReads);
+    assertArrayEquals(new Object[] {"name", "unused"}, wrapper.keySet().toArray());
+  }
+
+  @Test
+  public void testFindNoArgMethod() {
+    RecordWrapper wrapper = new RecordWrapper(new Person("Dave", 7));
+    assertEquals("name", wrapper.findNoArgMethod("name").getName());
+    assertNull(wrapper.findNoArgMethod("missing"));
+    assertNull(wrapper.get("missing"));
+    assertFalse(wrapper.containsKey("missing"));
+  }
 }
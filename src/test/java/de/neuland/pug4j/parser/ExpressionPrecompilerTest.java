@@ -0,0 +1,136 @@
+package de.neuland.pug4j.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import de.neuland.pug4j.PugEngine;
+import de.neuland.pug4j.exceptions.ExpressionException;
+import de.neuland.pug4j.exceptions.PugLexerException;
+import de.neuland.pug4j.expression.CompiledExpression;
+import de.neuland.pug4j.expression.JexlExpressionHandler;
+import de.neuland.pug4j.model.PugModel;
+import de.neuland.pug4j.parser.node.Attr;
+import de.neuland.pug4j.parser.node.ConditionalNode;
+import de.neuland.pug4j.parser.node.EachNode;
+import de.neuland.pug4j.parser.node.ExpressionString;
+import de.neuland.pug4j.parser.node.Node;
+import de.neuland.pug4j.parser.node.TagNode;
+import de.neuland.pug4j.template.ReaderTemplateLoader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class ExpressionPrecompilerTest {
+
+  private int evaluations;
+  private final List<String> compiled = new ArrayList<>();
+  private final List<String> asserted = new ArrayList<>();
+
+  private final JexlExpressionHandler handler =
+      new JexlExpressionHandler() {
+        @Override
+        public Object evaluateExpression(String expression, PugModel model)
+            throws ExpressionException {
+          evaluations++;
+          return super.evaluateExpression(expression, model);
+        }
+
+        @Override
+        public CompiledExpression compile(String expression) throws ExpressionException {
+          compiled.add(expression);
+          return model -> super.evaluateExpression(expression, model);
+        }
+
+        @Override
+        public void assertExpression(String expression) throws ExpressionException {
+          asserted.add(expression);
+          super.assertExpression(expression);
+        }
+      };
+
+  @Test
+  public void attachesCompiledExpressionsToNodes() throws Exception {
+    Node root = template("if visible\n  a(href=url)= label\neach item in items\n  li= item");
+
+    ConditionalNode conditional = (ConditionalNode) root.getNodes().get(0);
+    assertNotNull(conditional.getConditions().get(0).getCompiledExpression());
+    TagNode link = (TagNode) conditional.getConditions().get(0).getBlock().getNodes().get(0);
+    Attr href = link.getAttributes().get(0);
+    assertNotNull(((ExpressionString) href.getValue()).getCompiledExpression());
+    assertNotNull(link.getBlock().getNodes().get(0).getCompiledExpression());
+    EachNode each = (EachNode) root.getNodes().get(1);
+    assertNotNull(each.getCompiledExpression());
+  }
+
+  @Test
+  public void rendersWithoutEvaluatingExpressionSources() throws Exception {
+    PugEngine engine = engine("if visible\n  a(href=url)= label\neach item in items\n  li= item");
+    Map<String, Object> model = new HashMap<>();
+    model.put("visible", true);
+    model.put("url", "/home");
+    model.put("label", "Home");
+    model.put("items", Arrays.asList("a", "b"));
+
+    String html = engine.render(engine.getTemplate("inline"), model);
+
+    assertEquals("<a href=\"/home\">Home</a><li>a</li><li>b</li>", html);
+    assertEquals(0, evaluations);
+  }
+
+  @Test
+  public void compilesExpressionsCheckedByTheLexerOnce() throws Exception {
+    template("if visible\n  a(href=url)= label\neach item in items\n  li= item\n- var x = 1");
+
+    assertEquals(Arrays.asList("visible", "url", "label", "items", "item", "var x = 1"), compiled);
+    assertFalse(asserted.contains("visible"));
+    assertFalse(asserted.contains("label"));
+  }
+
+  @Test
+  public void reportsInvalidExpressionsWhenParsing() throws Exception {
+    try {
+      PugEngine.builder()
+          .templateLoader(new ReaderTemplateLoader(new StringReader("p= a +"), "inline"))
+          .expressionHandler(new JexlExpressionHandler())
+          .build()
+          .getTemplate("inline");
+      fail();
+    } catch (PugLexerException e) {
+      assertTrue(e.getMessage().startsWith("Syntax Error"));
+    }
+  }
+
+  @Test
+  public void leavesUnbufferedCodeBlocksUncompiled() throws Exception {
+    Node root = template("- if (true) {\n  p yes\n- }");
+
+    assertNull(root.getNodes().get(0).getCompiledExpression());
+  }
+
+  @Test
+  public void leavesIndentedClosingBracesUncompiled() throws Exception {
+    Node root = template("- if (true) {\n  p yes\n-   }");
+
+    assertNull(root.getNodes().get(0).getCompiledExpression());
+    assertNull(root.getNodes().get(1).getCompiledExpression());
+  }
+
+  private Node template(String pug) throws Exception {
+    return engine(pug).getTemplate("inline").getRootNode();
+  }
+
+  private PugEngine engine(String pug) {
+    return PugEngine.builder()
+        .templateLoader(new ReaderTemplateLoader(new StringReader(pug), "inline"))
+        .expressionHandler(handler)
+        .build();
+  }
+}
@@ -3,11 +3,19 @@ package de.neuland.pug4j.template;
 import static org.junit.Assert.*;
 
 import de.neuland.pug4j.TestFileHelper;
+import de.neuland.pug4j.exceptions.PugTemplateLoaderException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class FileTemplateLoaderTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
   private String RESOURCE_PATH;
 
   @Before
@@ -41,4 +49,75 @@ public class FileTemplateLoaderTest {
     FileTemplateLoader fileTemplateLoader = new FileTemplateLoader(RESOURCE_PATH);
     fileTemplateLoader.getReader("/pages/subdir/test.pug");
   }
+
+  @Test
+  public void shouldKeepModificationTimeWithoutCheck() throws IOException {
+    Path template = folder.getRoot().toPath().resolve("page.pug");
+    Files.writeString(template, "p");
+    Files.setLastModifiedTime(template, FileTime.fromMillis(1000));
+    FileTemplateLoader fileTemplateLoader =
+        FileTemplateLoader.builder()
+            .templateLoaderPath(folder.getRoot().toPath())
+            .modificationCheck(ModificationCheck.NEVER)
+            .build();
+
+    assertEquals(1000, fileTemplateLoader.getLastModified("page.pug"));
+    Files.setLastModifiedTime(template, FileTime.fromMillis(2000));
+    assertEquals(1000, fileTemplateLoader.getLastModified("page"));
+  }
+
+  @Test
+  public void shouldDropModificationTimeWhenWatchedFileChanges() throws Exception {
+    Path template = folder.getRoot().toPath().resolve("page.pug");
+    Files.writeString(template, "p");
+    Files.setLastModifiedTime(template, FileTime.fromMillis(1000));
+    try (FileTemplateLoader fileTemplateLoader =
+        FileTemplateLoader.builder()
+            .templateLoaderPath(folder.getRoot().toPath())
+            .modificationCheck(ModificationCheck.WATCH)
+            .build()) {
+      assertEquals(1000, fileTemplateLoader.getLastModified("page.pug"));
+
+      Files.writeString(template, "p changed");
+      Files.setLastModifiedTime(template, FileTime.fromMillis(2000));
+
+      // some platforms poll for changes instead of being notified
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+      while (fileTemplateLoader.getLastModified("page.pug") != 2000) {
+        assertTrue(System.nanoTime() < deadline);
+        Thread.sleep(10);
+      }
+      assertTrue(fileTemplateLoader.getGeneration() > 0);
+    }
+  }
+
+  @Test
+  public void shouldOnlyCountChangesOfTemplateFiles() throws Exception {
+    Path root = folder.getRoot().toPath();
+    Path style = root.resolve("style.css");
+    Files.writeString(style, "p {}");
+    FileTemplateLoader fileTemplateLoader =
+        FileTemplateLoader.builder()
+            .templateLoaderPath(root)
+            .modificationCheck(ModificationCheck.NEVER)
+            .build();
+
+    fileTemplateLoader.changed(root.resolve(".DS_Store"));
+    fileTemplateLoader.changed(root.resolve(".page.pug.swp"));
+    fileTemplateLoader.changed(style);
+    assertEquals(0, fileTemplateLoader.getGeneration());
+
+    fileTemplateLoader.changed(root.resolve("page.pug"));
+    assertEquals(1, fileTemplateLoader.getGeneration());
+
+    // a file that was loaded, like an included stylesheet, counts whatever its extension
+    fileTemplateLoader.getLastModified("style.css");
+    fileTemplateLoader.changed(style);
+    assertEquals(2, fileTemplateLoader.getGeneration());
+  }
+
+  @Test(expected = PugTemplateLoaderException.class)
+  public void shouldRequireTemplateLoaderPathToWatch() {
+    FileTemplateLoader.builder().modificationCheck(ModificationCheck.WATCH).build();
+  }
 }